@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal;
+
+/** May be implemented by a ManagedObject that can provide a consistent
+ * view of several of its attributes at once.  When a client reads several
+ * attributes in one getAttributes call, gmbal reads all of them inside
+ * a single call to snapshot, so the object can hold one lock for the whole
+ * read instead of one per attribute.
+ */
+public interface AttributeSnapshot {
+    /** Run reader while the attributes of this object are consistent,
+     * typically while holding the lock that guards them.  reader calls
+     * the attribute getters of this object, and must be run exactly once
+     * on the calling thread.
+     *
+     * @param reader The code that reads the attributes.
+     */
+    void snapshot( Runnable reader ) ;
+}
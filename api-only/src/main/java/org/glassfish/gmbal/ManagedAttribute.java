@@ -52,6 +52,12 @@ import java.lang.annotation.Target;
  * cannot change after an instance of the containing class has completed its
  * constructor.  Note that Date is not truly immutable (it should be!), but it's
  * one of the Open MBean simple types, so it is included here.
+ * <p>
+ * The value of an expensive getter in a ManagedObject may be cached by giving
+ * the getter a maxAge descriptor field, for example
+ * {@code @DescriptorFields("maxAge=500")}.  The converted value is then
+ * returned to all clients for up to maxAge milliseconds after it was read, and
+ * is discarded whenever the attribute is set through the MBean.
  */
 @Documented 
 @Target({ElementType.METHOD,ElementType.FIELD})
@@ -13,10 +13,13 @@ package org.glassfish.gmbal ;
 import java.io.Closeable;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
+import java.util.Collection;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
+import javax.management.remote.MBeanServerForwarder;
 
 import org.glassfish.pfl.tf.timer.spi.ObjectRegistrationManager;
 
@@ -26,7 +29,7 @@ import org.glassfish.pfl.tf.timer.spi.ObjectRegistrationManager;
  * <ol>
  * <li> Methods suspendJMXRegistration, resumeJMXRegistration,
  * getDomain, getMBeanServer, getResourceBundle, setRuntimeDebug, 
- * setRegistrationDebugLevel, setTypelibDebug, and close may be 
+ * setRegistrationDebugLevel, setTypelibDebug, close, and discard may be 
  * called at any time.
  * <li> All calls to addAnnotation, stripPrefix, and
  * stripPackageName must occur before any call to a createRoot method.
@@ -173,6 +176,27 @@ public interface ManagedObjectManager extends Closeable {
      * called successfully.
      */
     GmbalMBean registerAtRoot( Object obj ) ;
+
+    /** Register an MBean for each object in objs as a child of parent, in
+     * the same way as register( parent, obj ).  All of the MBeans are
+     * constructed first, and then added to the tree and registered with the
+     * MBeanServer as one batch.  This is much faster than calling register
+     * for each object when many children are created at once.
+     * <p>
+     * A failure to register one object does not affect the others.
+     * <p>
+     * Must be called after a successful createRoot call.
+     * @param parent The parent object that contains all of the objects.
+     * @param objs The managed objects we are registering.
+     * @return A map from each object that could not be registered to the
+     * exception that describes the failure.  Keys are compared by identity.
+     * The map is empty if all of the objects were registered.
+     * @exception IllegalStateException if called before a createRoot method is
+     * called successfully.
+     * @exception IllegalArgumentException if parent is not registered.
+     */
+    Map<Object,RuntimeException> registerAll( Object parent,
+        Collection<?> objs ) ;
     
 
     /** Unregister the Open MBean corresponding to obj from the
@@ -362,6 +386,75 @@ public interface ManagedObjectManager extends Closeable {
      */
     void suppressDuplicateRootReport( boolean suppressReport ) ;
 
+    /** Return the MOM to the pre-createRoot state like close, but without
+     * unregistering any MBeans from the MBeanServer.  Use this instead of
+     * close when the MBeanServer is private to this ManagedObjectManager and
+     * is discarded along with it: unregistering a large tree one MBean at a
+     * time is then wasted work.
+     * <p>
+     * Can be called at any time.
+     */
+    void discard() ;
+
+    /** Switch this ManagedObjectManager to virtual registration, in which its
+     * MBeans are never registered with the MBeanServer.  Instead, the
+     * returned MBeanServerForwarder answers all requests for them directly
+     * from the ManagedObjectManager, and forwards all other requests to the
+     * MBeanServer.  Registering an MBean then only updates gmbal's own
+     * index.  Clients see the MBeans only through the forwarder, which may
+     * for example be installed with JMXConnectorServer.setMBeanServerForwarder.
+     * In this mode getMBeanServer returns the forwarder.
+     * <p>
+     * Must be called before a successful call to a createRoot method.
+     * @return The MBeanServerForwarder through which the MBeans are visible.
+     * @exception IllegalStateException if called after a createRoot method.
+     */
+    MBeanServerForwarder enableVirtualRegistration() ;
+
+    /** Return the progress and timing of the deferred registrations that
+     * are flushed by resumeJMXRegistration.
+     * <p>
+     * Can be called at any time.
+     * @return The statistics for this ManagedObjectManager.
+     */
+    RegistrationStatistics getRegistrationStatistics() ;
+
+    /** Analyze classes before instances of them are registered.  The
+     * first registration of an instance of a class builds the MBean
+     * skeleton and the TypeConverter of the class, which can take tens of
+     * milliseconds.  This method builds them ahead of time, for all classes
+     * in parallel, and waits until all are done.  At most
+     * org.glassfish.gmbal.warmUpThreads classes (by default the number of
+     * processors, up to 8) are analyzed at once.
+     * Classes that share a superclass or an attribute type share the work
+     * for it.  No lock on the ManagedObjectManager is held while a class
+     * is analyzed, so registrations may proceed during the warm up.
+     * A failure to analyze one class does not affect the others.
+     * <p>
+     * The analysis depends on the annotations added with addAnnotation,
+     * on the prefixes to strip, and on the resource bundle, so this should
+     * be called after these are set up, and before createRoot.  It may be
+     * called at any time.
+     * @param classes The classes to analyze: typically @ManagedObject or
+     * @ManagedData classes.
+     * @return The time taken by each class, and the failures.
+     */
+    WarmUpReport warmUp( Collection<Class<?>> classes ) ;
+
+    /** Analyze all classes listed in the META-INF/gmbal/managed-classes
+     * resources visible to loader, as in warmUp( Collection ).  Each
+     * resource lists one binary class name per line; empty lines and lines
+     * starting with # are ignored.  The gmbal annotation processor writes
+     * this resource for all @ManagedObject and @ManagedData classes that
+     * it compiles.
+     * @param loader The ClassLoader used to find the resources and to load
+     * the classes.
+     * @return The time taken by each class, and the failures, including
+     * the classes that could not be loaded.
+     * @exception IllegalArgumentException if a resource cannot be read.
+     */
+    WarmUpReport warmUp( ClassLoader loader ) ;
+
     /** Return an ObjectRegistrationManager as required in the pfl timer services.
      * <p>
      * Can be called at any time.
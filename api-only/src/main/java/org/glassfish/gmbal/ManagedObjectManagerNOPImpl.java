@@ -18,10 +18,14 @@ package org.glassfish.gmbal;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
+import javax.management.remote.MBeanServerForwarder;
 
 import org.glassfish.pfl.tf.timer.spi.ObjectRegistrationManager;
 
@@ -37,6 +41,25 @@ class ManagedObjectManagerNOPImpl implements ManagedObjectManager {
         new ManagedObjectManagerNOPImpl() ;
     private static final GmbalMBean gmb = 
         new GmbalMBeanNOPImpl() ;
+    private static final RegistrationStatistics stats =
+        new RegistrationStatistics() {
+            public int getDeferredRegistrationCount() { return 0 ; }
+            public int getFlushSize() { return 0 ; }
+            public int getFlushProgress() { return 0 ; }
+            public int getFlushCount() { return 0 ; }
+            public long getLastFlushTime() { return 0 ; }
+            public long getTotalFlushTime() { return 0 ; }
+        } ;
+    private static final WarmUpReport warmUpReport =
+        new WarmUpReport() {
+            public Map<String,Long> getTimes() {
+                return Collections.emptyMap() ;
+            }
+            public Map<String,RuntimeException> getErrors() {
+                return Collections.emptyMap() ;
+            }
+            public long getTotalTime() { return 0 ; }
+        } ;
 
     private ManagedObjectManagerNOPImpl() {}
 
@@ -84,6 +107,11 @@ class ManagedObjectManagerNOPImpl implements ManagedObjectManager {
         return gmb ;
     }
 
+    public Map<Object,RuntimeException> registerAll(Object parent,
+        Collection<?> objs) {
+        return Collections.emptyMap() ;
+    }
+
     public void unregister(Object obj) {
         // NOP
     }
@@ -164,6 +192,26 @@ class ManagedObjectManagerNOPImpl implements ManagedObjectManager {
         // NOP
     }
 
+    public void discard() {
+        // NOP
+    }
+
+    public MBeanServerForwarder enableVirtualRegistration() {
+        return null ;
+    }
+
+    public RegistrationStatistics getRegistrationStatistics() {
+        return stats ;
+    }
+
+    public WarmUpReport warmUp( Collection<Class<?>> classes ) {
+        return warmUpReport ;
+    }
+
+    public WarmUpReport warmUp( ClassLoader loader ) {
+        return warmUpReport ;
+    }
+
     public ObjectRegistrationManager getObjectRegistrationManager() {
 	return null ;
     }
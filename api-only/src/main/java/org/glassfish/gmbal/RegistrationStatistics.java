@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal;
+
+/** Progress and timing of deferred JMX registration.  While JMX registration
+ * is suspended (see {@link ManagedObjectManager#suspendJMXRegistration}),
+ * registered MBeans are queued; they are flushed to the MBeanServer when
+ * registration is resumed.
+ */
+public interface RegistrationStatistics {
+    /** Return the number of MBeans currently waiting for JMX registration
+     * to be resumed.
+     * @return The number of queued MBeans.
+     */
+    int getDeferredRegistrationCount() ;
+
+    /** Return the number of MBeans in the current flush, or in the last
+     * one if no flush is running.
+     * @return The size of the flush.
+     */
+    int getFlushSize() ;
+
+    /** Return the number of MBeans of the current or last flush that
+     * have been handled so far.  The flush is complete when this is equal
+     * to getFlushSize().
+     * @return The progress of the flush.
+     */
+    int getFlushProgress() ;
+
+    /** Return the number of completed flushes.
+     * @return The number of flushes.
+     */
+    int getFlushCount() ;
+
+    /** Return the duration of the last completed flush.
+     * @return The time in milliseconds.
+     */
+    long getLastFlushTime() ;
+
+    /** Return the total duration of all completed flushes.
+     * @return The time in milliseconds.
+     */
+    long getTotalFlushTime() ;
+}
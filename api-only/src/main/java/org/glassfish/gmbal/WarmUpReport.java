@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal;
+
+import java.util.Map;
+
+/** The result of {@link ManagedObjectManager#warmUp(java.util.Collection)}:
+ * which classes were analyzed, and how long each one took.
+ */
+public interface WarmUpReport {
+    /** Return the time taken to analyze each class that was analyzed
+     * successfully.  Classes are given by name.  Classes that were analyzed
+     * by earlier calls take almost no time.
+     * @return A map from class name to time in nanoseconds.
+     */
+    Map<String,Long> getTimes() ;
+
+    /** Return the failure for each class that could not be loaded or
+     * analyzed.  The same failure will occur again when an instance of the
+     * class is registered.  A LinkageError, such as a NoClassDefFoundError
+     * for a class that is referred to, is reported as the cause of an
+     * IllegalArgumentException.
+     * @return A map from class name to exception.  Empty if all classes
+     * were analyzed.
+     */
+    Map<String,RuntimeException> getErrors() ;
+
+    /** Return the time taken by the whole warm up.  This is usually less
+     * than the sum of the times of the classes, because the classes are
+     * analyzed in parallel.
+     * @return The time in nanoseconds.
+     */
+    long getTotalTime() ;
+}
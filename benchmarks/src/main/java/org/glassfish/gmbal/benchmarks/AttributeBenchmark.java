@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import javax.management.AttributeList;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.glassfish.gmbal.ManagedObjectManager;
+import org.glassfish.gmbal.benchmarks.Beans.Leaf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Latency of attribute access and operation invocation through the
+ * MBeanServer.  All threads use the same MBean.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations=3, time=2 )
+@Measurement( iterations=5, time=2 )
+@Fork( 1 )
+public class AttributeBenchmark {
+    private static final String[] ATTRIBUTES = { "Counter", "State", "Order" } ;
+    private static final Object[] ARGS = { 1 } ;
+    private static final String[] SIGNATURE = {
+        Integer.class.getName() } ;
+
+    private ManagedObjectManager mom ;
+    private MBeanServer server ;
+    private ObjectName oname ;
+
+    @Setup( Level.Trial )
+    public void setup() {
+        mom = Beans.createMOM() ;
+        final Leaf leaf = new Leaf( "leaf" ) ;
+        mom.registerAtRoot( leaf ) ;
+        server = mom.getMBeanServer() ;
+        oname = mom.getObjectName( leaf ) ;
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() throws Exception {
+        mom.close() ;
+    }
+
+    @Benchmark
+    public Object getSimpleAttribute() throws JMException {
+        return server.getAttribute( oname, "Counter" ) ;
+    }
+
+    /** The Order attribute is converted to CompositeData on each call.
+     */
+    @Benchmark
+    public Object getCompositeAttribute() throws JMException {
+        return server.getAttribute( oname, "Order" ) ;
+    }
+
+    @Benchmark
+    public AttributeList getAttributes() throws JMException {
+        return server.getAttributes( oname, ATTRIBUTES ) ;
+    }
+
+    @Benchmark
+    public Object invoke() throws JMException {
+        return server.invoke( oname, "add", ARGS, SIGNATURE ) ;
+    }
+}
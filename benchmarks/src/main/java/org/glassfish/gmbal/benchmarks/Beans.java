@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.MBeanServerFactory;
+import org.glassfish.gmbal.Description;
+import org.glassfish.gmbal.ManagedAttribute;
+import org.glassfish.gmbal.ManagedData;
+import org.glassfish.gmbal.ManagedObject;
+import org.glassfish.gmbal.ManagedObjectManager;
+import org.glassfish.gmbal.ManagedObjectManagerFactory;
+import org.glassfish.gmbal.ManagedOperation;
+import org.glassfish.gmbal.NameValue;
+import org.glassfish.gmbal.impl.TimerAnnotationHelper.ManagedControllable;
+import org.glassfish.gmbal.impl.TimerAnnotationHelper.ManagedTimer;
+import org.glassfish.gmbal.impl.TimerAnnotationHelper.ManagedTimerGroup;
+import org.glassfish.pfl.tf.timer.spi.Controllable;
+import org.glassfish.pfl.tf.timer.spi.Timer;
+import org.glassfish.pfl.tf.timer.spi.TimerFactory;
+import org.glassfish.pfl.tf.timer.spi.TimerGroup;
+
+/** The managed classes used by the benchmarks.
+ */
+public final class Beans {
+    private Beans() {}
+
+    /** Create a standalone ManagedObjectManager with its root created.
+     * Each one uses its own MBeanServer, so that they can be used at the
+     * same time without name clashes.
+     * @return The new ManagedObjectManager.
+     */
+    public static ManagedObjectManager createMOM() {
+        final ManagedObjectManager mom =
+            ManagedObjectManagerFactory.createStandalone( "bench" ) ;
+        mom.setMBeanServer( MBeanServerFactory.newMBeanServer() ) ;
+        mom.stripPackagePrefix() ;
+        mom.createRoot() ;
+        return mom ;
+    }
+
+    @ManagedData
+    @Description( "An item in an order" )
+    public static class Item {
+        private final String name ;
+        private final double price ;
+        private final int quantity ;
+
+        public Item( String name, double price, int quantity ) {
+            this.name = name ;
+            this.price = price ;
+            this.quantity = quantity ;
+        }
+
+        @ManagedAttribute( id="ItemName" )
+        @Description( "The name of the item" )
+        public String getName() {
+            return name ;
+        }
+
+        @ManagedAttribute( id="Price" )
+        @Description( "The unit price of the item" )
+        public double getPrice() {
+            return price ;
+        }
+
+        @ManagedAttribute( id="Quantity" )
+        @Description( "The number of units ordered" )
+        public int getQuantity() {
+            return quantity ;
+        }
+    }
+
+    @ManagedData
+    @Description( "An order of several items" )
+    public static class Order {
+        private final String id ;
+        private final Item first ;
+        private final List<Item> items ;
+
+        public Order( String id, int size ) {
+            this.id = id ;
+            this.items = new ArrayList<Item>( size ) ;
+            for (int ctr=0; ctr<size; ctr++) {
+                items.add( new Item( "item" + ctr, ctr * 1.5, ctr ) ) ;
+            }
+            this.first = items.isEmpty() ? null : items.get( 0 ) ;
+        }
+
+        @ManagedAttribute( id="Id" )
+        @Description( "The order number" )
+        public String getId() {
+            return id ;
+        }
+
+        @ManagedAttribute( id="First" )
+        @Description( "The first item of the order" )
+        public Item getFirst() {
+            return first ;
+        }
+
+        @ManagedAttribute( id="Items" )
+        @Description( "All items of the order" )
+        public List<Item> getItems() {
+            return items ;
+        }
+    }
+
+    @ManagedObject
+    @Description( "A group of leaves" )
+    public static class Branch {
+        private final String name ;
+
+        public Branch( String name ) {
+            this.name = name ;
+        }
+
+        @NameValue
+        public String name() {
+            return name ;
+        }
+    }
+
+    @ManagedObject
+    @Description( "A typical MBean" )
+    public static class Leaf {
+        private final String name ;
+        private final AtomicInteger counter = new AtomicInteger() ;
+        private volatile String state = "running" ;
+        private final Order order ;
+
+        public Leaf( String name ) {
+            this.name = name ;
+            this.order = new Order( name, 4 ) ;
+        }
+
+        @NameValue
+        public String name() {
+            return name ;
+        }
+
+        @ManagedAttribute( id="Counter" )
+        @Description( "A counter" )
+        public int getCounter() {
+            return counter.get() ;
+        }
+
+        @ManagedAttribute( id="State" )
+        @Description( "The state of the leaf" )
+        public String getState() {
+            return state ;
+        }
+
+        @ManagedAttribute( id="State" )
+        public void setState( String state ) {
+            this.state = state ;
+        }
+
+        @ManagedAttribute( id="Order" )
+        @Description( "The current order" )
+        public Order getOrder() {
+            return order ;
+        }
+
+        @ManagedOperation
+        @Description( "Add delta to the counter" )
+        public int add( int delta ) {
+            return counter.addAndGet( delta ) ;
+        }
+    }
+
+    /** Delegates to a pfl-tf Controllable, so that it can be registered
+     * with the annotations of TimerAnnotationHelper.
+     */
+    private abstract static class ControllableBean<T extends Controllable>
+        implements ManagedControllable {
+
+        final T delegate ;
+
+        ControllableBean( T delegate ) {
+            this.delegate = delegate ;
+        }
+
+        public TimerFactory factory() {
+            return delegate.factory() ;
+        }
+
+        public String name() {
+            return delegate.name() ;
+        }
+
+        public String description() {
+            return delegate.description() ;
+        }
+
+        public int id() {
+            return delegate.id() ;
+        }
+
+        public Set<? extends Controllable> contents() {
+            return delegate.contents() ;
+        }
+
+        public void enable() {
+            delegate.enable() ;
+        }
+
+        public void disable() {
+            delegate.disable() ;
+        }
+
+        public boolean isEnabled() {
+            return delegate.isEnabled() ;
+        }
+    }
+
+    public static class TimerBean extends ControllableBean<Timer>
+        implements ManagedTimer {
+
+        public TimerBean( Timer timer ) {
+            super( timer ) ;
+        }
+
+        public boolean isActivated() {
+            return delegate.isActivated() ;
+        }
+    }
+
+    public static class TimerGroupBean extends ControllableBean<TimerGroup>
+        implements ManagedTimerGroup {
+
+        public TimerGroupBean( TimerGroup group ) {
+            super( group ) ;
+        }
+
+        public boolean add( Controllable con ) {
+            return delegate.add( con ) ;
+        }
+
+        public boolean remove( Controllable con ) {
+            return delegate.remove( con ) ;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Runs the benchmarks once for each thread count, and writes the results
+ * of each run as JSON to gmbal-benchmarks-t&lt;threads&gt;.json in the
+ * current directory.
+ * <P>
+ * Usage: java -jar benchmarks.jar [regexp]
+ * <P>
+ * The regexp selects the benchmarks to run (default: all of them).  The
+ * thread counts are given as a comma separated list in the system property
+ * gmbal.benchmark.threads (default: 1,2,4,8).
+ */
+public final class BenchmarkMain {
+    private BenchmarkMain() {}
+
+    public static void main( String[] args ) throws RunnerException {
+        final String include = args.length > 0 ? args[0]
+            : BenchmarkMain.class.getPackage().getName() + ".*" ;
+        final String threadCounts = System.getProperty(
+            "gmbal.benchmark.threads", "1,2,4,8" ) ;
+
+        for (String str : threadCounts.split( "," )) {
+            final int threads = Integer.parseInt( str.trim() ) ;
+            final Options opts = new OptionsBuilder()
+                .include( include )
+                .threads( threads )
+                .resultFormat( ResultFormatType.JSON )
+                .result( "gmbal-benchmarks-t" + threads + ".json" )
+                .build() ;
+
+            new Runner( opts ).run() ;
+        }
+    }
+}
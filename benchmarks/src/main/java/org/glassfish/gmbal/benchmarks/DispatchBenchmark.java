@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import javax.management.Attribute;
+import javax.management.JMException;
+import org.glassfish.gmbal.GmbalMBean;
+import org.glassfish.gmbal.ManagedObjectManager;
+import org.glassfish.gmbal.benchmarks.Beans.Leaf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Per-call cost of getAttribute, setAttribute and invoke on the MBean
+ * itself, without the MBeanServer, with and without the precompiled
+ * dispatcher (org.glassfish.gmbal.directDispatch).
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations=3, time=2 )
+@Measurement( iterations=5, time=2 )
+@Fork( 1 )
+public class DispatchBenchmark {
+    private static final String DIRECT_DISPATCH =
+        "org.glassfish.gmbal.directDispatch" ;
+    private static final Object[] ARGS = { 1 } ;
+    private static final String[] SIGNATURE = {
+        Integer.class.getName() } ;
+    private static final Attribute STATE =
+        new Attribute( "State", "running" ) ;
+
+    @Param( { "false", "true" } )
+    public boolean directDispatch ;
+
+    private ManagedObjectManager mom ;
+    private GmbalMBean mbean ;
+
+    @Setup( Level.Trial )
+    public void setup() {
+        // The property is read when the ManagedObjectManager is created.
+        System.setProperty( DIRECT_DISPATCH,
+            Boolean.toString( directDispatch ) ) ;
+        try {
+            mom = Beans.createMOM() ;
+        } finally {
+            System.clearProperty( DIRECT_DISPATCH ) ;
+        }
+
+        mbean = mom.registerAtRoot( new Leaf( "leaf" ) ) ;
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() throws Exception {
+        mom.close() ;
+    }
+
+    @Benchmark
+    public Object getAttribute() throws JMException {
+        return mbean.getAttribute( "Counter" ) ;
+    }
+
+    @Benchmark
+    public void setAttribute() throws JMException {
+        mbean.setAttribute( STATE ) ;
+    }
+
+    @Benchmark
+    public Object invoke() throws JMException {
+        return mbean.invoke( "add", ARGS, SIGNATURE ) ;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.gmbal.ManagedObjectManager;
+import org.glassfish.gmbal.benchmarks.Beans.Branch;
+import org.glassfish.gmbal.benchmarks.Beans.Leaf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/** Register and unregister throughput in a tree that already holds size
+ * MBeans.  Run with several thread counts to see contention on the tree.
+ */
+@State( Scope.Benchmark )
+@Warmup( iterations=3, time=2 )
+@Measurement( iterations=5, time=2 )
+@Fork( value=1, jvmArgsAppend={ "-Xmx8g" } )
+public class RegistrationBenchmark {
+    // Size of the batches used to fill the tree.
+    private static final int BATCH = 10000 ;
+
+    @Param( { "1000", "100000", "1000000" } )
+    public int size ;
+
+    ManagedObjectManager mom ;
+
+    private static final AtomicInteger branchCount = new AtomicInteger() ;
+
+    @Setup( Level.Trial )
+    public void setup() {
+        mom = Beans.createMOM() ;
+        final Branch filled = new Branch( "filled" ) ;
+        mom.registerAtRoot( filled ) ;
+
+        final List<Object> batch = new ArrayList<Object>( BATCH ) ;
+        for (int ctr=0; ctr<size; ctr++) {
+            batch.add( new Leaf( "leaf" + ctr ) ) ;
+            if (batch.size() == BATCH || ctr == size - 1) {
+                mom.registerAll( filled, batch ) ;
+                batch.clear() ;
+            }
+        }
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() throws Exception {
+        mom.close() ;
+    }
+
+    /** Each thread registers under its own branch, so that threads do not
+     * collide on names.
+     */
+    @State( Scope.Thread )
+    public static class ThreadState {
+        Branch branch ;
+        int next ;
+
+        @Setup( Level.Trial )
+        public void setup( RegistrationBenchmark bench ) {
+            branch = new Branch( "thread" + branchCount.incrementAndGet() ) ;
+            bench.mom.registerAtRoot( branch ) ;
+            next = 0 ;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode( Mode.Throughput )
+    @OutputTimeUnit( TimeUnit.SECONDS )
+    public Object registerUnregister( ThreadState ts ) {
+        final Leaf leaf = new Leaf( "leaf" + ts.next++ ) ;
+        mom.register( ts.branch, leaf ) ;
+        mom.unregister( leaf ) ;
+        return leaf ;
+    }
+
+    /** Register a subtree of size MBeans, divided among the threads, and
+     * then unregister it in one call.
+     */
+    @Benchmark
+    @BenchmarkMode( Mode.SingleShotTime )
+    @OutputTimeUnit( TimeUnit.MILLISECONDS )
+    @Warmup( iterations=1 )
+    @Measurement( iterations=5 )
+    public void registerSubtree( ThreadState ts, ThreadParams tp ) {
+        final Branch branch = new Branch( "subtree" + ts.next++ ) ;
+        mom.register( ts.branch, branch ) ;
+        final int count = size / tp.getThreadCount() ;
+        for (int ctr=0; ctr<count; ctr++) {
+            mom.register( branch, new Leaf( "leaf" + ctr ) ) ;
+        }
+
+        mom.unregister( branch ) ;
+    }
+}
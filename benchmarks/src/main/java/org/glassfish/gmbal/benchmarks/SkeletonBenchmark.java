@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.glassfish.gmbal.GmbalMBean;
+import org.glassfish.gmbal.ManagedObjectManager;
+import org.glassfish.gmbal.benchmarks.Beans.Leaf;
+import org.glassfish.gmbal.benchmarks.Beans.TimerBean;
+import org.glassfish.gmbal.benchmarks.Beans.TimerGroupBean;
+import org.glassfish.pfl.tf.timer.spi.Timer;
+import org.glassfish.pfl.tf.timer.spi.TimerFactory;
+import org.glassfish.pfl.tf.timer.spi.TimerFactoryBuilder;
+import org.glassfish.pfl.tf.timer.spi.TimerGroup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Cost of the first registration of a class, which builds its
+ * MBeanSkeleton and TypeConverters.  coldRegister uses a new
+ * ManagedObjectManager for every call; warmRegister registers a class whose
+ * skeleton is already cached.  The difference is the skeleton construction
+ * time.  coldRegisterTimer does the same as coldRegister for a pfl-tf
+ * Timer and TimerGroup, using the annotated interfaces of
+ * TimerAnnotationHelper, whose deep hierarchies and IncludeSubclass list
+ * make class analysis the larger part of the cost.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations=3, time=2 )
+@Measurement( iterations=5, time=2 )
+@Fork( 1 )
+public class SkeletonBenchmark {
+    private ManagedObjectManager warm ;
+    private int next ;
+
+    @Setup( Level.Trial )
+    public void setupWarm() {
+        warm = Beans.createMOM() ;
+        warm.registerAtRoot( new Leaf( "first" ) ) ;
+        next = 0 ;
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDownWarm() throws Exception {
+        warm.close() ;
+    }
+
+    /** A new ManagedObjectManager for every call.
+     */
+    @State( Scope.Thread )
+    public static class ColdState {
+        ManagedObjectManager mom ;
+
+        @Setup( Level.Invocation )
+        public void setup() {
+            mom = Beans.createMOM() ;
+        }
+
+        @TearDown( Level.Invocation )
+        public void tearDown() throws Exception {
+            mom.close() ;
+        }
+    }
+
+    @Benchmark
+    public GmbalMBean coldRegister( ColdState cs ) {
+        return cs.mom.registerAtRoot( new Leaf( "leaf" ) ) ;
+    }
+
+    @Benchmark
+    public GmbalMBean warmRegister() {
+        final Leaf leaf = new Leaf( "leaf" + next++ ) ;
+        final GmbalMBean result = warm.registerAtRoot( leaf ) ;
+        warm.unregister( leaf ) ;
+        return result ;
+    }
+
+    /** A new ManagedObjectManager for every call, and a pfl-tf Timer and
+     * TimerGroup wrapped in the TimerAnnotationHelper interfaces.
+     */
+    @State( Scope.Thread )
+    public static class TimerState {
+        TimerFactory factory ;
+        TimerBean timer ;
+        TimerGroupBean group ;
+        ManagedObjectManager mom ;
+
+        @Setup( Level.Trial )
+        public void setupTimers() {
+            factory = TimerFactoryBuilder.make( "bench", "Benchmark timers" ) ;
+            final Timer t = factory.makeTimer( "timer", "A benchmark timer" ) ;
+            final TimerGroup g = factory.makeTimerGroup( "group",
+                "A benchmark timer group" ) ;
+            g.add( t ) ;
+            timer = new TimerBean( t ) ;
+            group = new TimerGroupBean( g ) ;
+        }
+
+        @TearDown( Level.Trial )
+        public void tearDownTimers() {
+            TimerFactoryBuilder.destroy( factory ) ;
+        }
+
+        @Setup( Level.Invocation )
+        public void setup() {
+            mom = Beans.createMOM() ;
+        }
+
+        @TearDown( Level.Invocation )
+        public void tearDown() throws Exception {
+            mom.close() ;
+        }
+    }
+
+    @Benchmark
+    public GmbalMBean coldRegisterTimer( TimerState ts ) {
+        ts.mom.registerAtRoot( ts.timer ) ;
+        return ts.mom.registerAtRoot( ts.group ) ;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.glassfish.gmbal.ManagedObjectManager;
+import org.glassfish.gmbal.benchmarks.Beans.Branch;
+import org.glassfish.gmbal.benchmarks.Beans.Leaf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Start up 50 ManagedObjectManagers that register the same classes, as an
+ * application server does with one ManagedObjectManager per application.
+ * The first iteration of each fork is the cold start.  The typelib
+ * analysis of the classes is shared by all ManagedObjectManagers, while
+ * skeletons and TypeConverters are built by each of them, so the later
+ * iterations show the cost that remains per ManagedObjectManager.
+ */
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations=0 )
+@Measurement( iterations=10 )
+@Fork( 5 )
+public class StartupBenchmark {
+    private static final int MOMS = 50 ;
+    private static final int LEAVES = 20 ;
+
+    @Benchmark
+    public void startMOMs() throws Exception {
+        for (int ctr=0; ctr<MOMS; ctr++) {
+            final ManagedObjectManager mom = Beans.createMOM() ;
+            final Branch branch = new Branch( "app" + ctr ) ;
+            mom.registerAtRoot( branch ) ;
+            for (int ctr2=0; ctr2<LEAVES; ctr2++) {
+                mom.register( branch, new Leaf( "leaf" + ctr2 ) ) ;
+            }
+
+            mom.close() ;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.glassfish.gmbal.ManagedObjectManager;
+import org.glassfish.gmbal.benchmarks.Beans.Order;
+import org.glassfish.gmbal.impl.ManagedObjectManagerInternal;
+import org.glassfish.gmbal.impl.TypeConverter;
+import org.glassfish.gmbal.typelib.TypeEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Conversion of a @ManagedData graph to open data, without the
+ * MBeanServer.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations=3, time=2 )
+@Measurement( iterations=5, time=2 )
+@Fork( 1 )
+public class TypeConverterBenchmark {
+    /** The number of items in the converted order. */
+    @Param( { "1", "10", "100" } )
+    public int items ;
+
+    private ManagedObjectManager mom ;
+    private TypeConverter tc ;
+    private Order order ;
+
+    @Setup( Level.Trial )
+    public void setup() {
+        mom = Beans.createMOM() ;
+        tc = ((ManagedObjectManagerInternal)mom).getTypeConverter(
+            TypeEvaluator.getEvaluatedType( Order.class ) ) ;
+        order = new Order( "order", items ) ;
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() throws Exception {
+        mom.close() ;
+    }
+
+    @Benchmark
+    public Object toManagedEntity() {
+        return tc.toManagedEntity( order ) ;
+    }
+}
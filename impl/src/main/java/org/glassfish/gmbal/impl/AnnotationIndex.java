@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.impl;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.glassfish.pfl.basic.algorithm.Graph;
+
+/** All annotations of a class and of its superclasses and superinterfaces,
+ * including the annotations added to any of these classes with
+ * ManagedObjectManager.addAnnotation.  For each annotation type, the index
+ * contains the annotation of the first class in the linearized
+ * inheritance of the class that has one.  On each class, the declared
+ * annotations take precedence over the added annotations.
+ * <P>
+ * An index is immutable once it is built.  The ManagedObjectManager keeps
+ * one index per class, and discards all of them when an annotation is
+ * added.
+ */
+final class AnnotationIndex {
+    // The same inheritance graph as ClassAnalyzer uses: the superclass
+    // first, then the interfaces.
+    private static final Graph.Finder<Class<?>> finder =
+        new Graph.Finder<Class<?>>() {
+
+        public List<Class<?>> evaluate( Class<?> arg ) {
+            final List<Class<?>> result = new ArrayList<Class<?>>() ;
+            final Class<?> sclass = arg.getSuperclass() ;
+            if (sclass != null) {
+                result.add( sclass ) ;
+            }
+
+            result.addAll( Arrays.asList( arg.getInterfaces() ) ) ;
+            return result ;
+        }
+    } ;
+
+    private final Map<Class<?>,Annotation> annotations ;
+
+    private AnnotationIndex( final Map<Class<?>,Annotation> annotations ) {
+        this.annotations = Collections.unmodifiableMap( annotations ) ;
+    }
+
+    /** Build the index of cls.
+     * @param cls The class to index.
+     * @param added The annotations added to each element.  Not modified.
+     * @return The index.
+     */
+    static AnnotationIndex make( final Class<?> cls,
+        final Map<AnnotatedElement,
+            Map<Class<? extends Annotation>,Annotation>> added ) {
+
+        final Map<Class<?>,Annotation> result =
+            new LinkedHashMap<Class<?>,Annotation>() ;
+
+        final List<Class<?>> classes = new ArrayList<Class<?>>(
+            new Graph<Class<?>>( cls, finder ).getPostorderList() ) ;
+        Collections.reverse( classes ) ;
+        for (Class<?> arg : classes) {
+            for (Annotation anno : arg.getDeclaredAnnotations()) {
+                putIfAbsent( result, anno.annotationType(), anno ) ;
+            }
+
+            final Map<Class<? extends Annotation>,Annotation> emap =
+                added.get( arg ) ;
+            if (emap != null) {
+                for (Map.Entry<Class<? extends Annotation>,Annotation> entry
+                    : emap.entrySet()) {
+
+                    putIfAbsent( result, entry.getKey(), entry.getValue() ) ;
+                }
+            }
+        }
+
+        return new AnnotationIndex( result ) ;
+    }
+
+    private static void putIfAbsent( final Map<Class<?>,Annotation> map,
+        final Class<?> type, final Annotation anno ) {
+
+        if (!map.containsKey( type )) {
+            map.put( type, anno ) ;
+        }
+    }
+
+    @SuppressWarnings({"unchecked"})
+    <T extends Annotation> T get( final Class<T> type ) {
+        return (T)annotations.get( type ) ;
+    }
+
+    Collection<Annotation> annotations() {
+        return annotations.values() ;
+    }
+}
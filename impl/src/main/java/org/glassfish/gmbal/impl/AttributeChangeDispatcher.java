@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.impl ;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Delivers attribute change notifications asynchronously, on a single
+ * daemon thread.  Changes to the same attribute of the same MBean that are
+ * still waiting for delivery are coalesced into one notification carrying
+ * the oldest old value and the newest new value.  Pending changes are
+ * delivered in the order in which they were first made.
+ * <p>
+ * At most capacity changes may be pending.  If the queue is full, the
+ * caller waits until the worker has taken the pending changes, so that a
+ * fast producer is slowed down rather than losing notifications or
+ * delivering them ahead of older changes.  The worker itself (for a
+ * listener that changes an attribute) and an interrupted caller do not
+ * wait, and may exceed capacity.  The worker
+ * thread exits after it has been idle for a while, and is restarted when
+ * needed.  It is also restarted if a listener throws an Error, which ends
+ * the thread.  clear() discards all pending changes, including those
+ * that the worker has already taken but not yet delivered.
+ */
+final class AttributeChangeDispatcher {
+    private static final long IDLE_TIMEOUT_MILLIS = 30000 ;
+
+    private static final class Key {
+        private final MBeanImpl mbean ;
+        private final String name ;
+
+        Key( MBeanImpl mbean, String name ) {
+            this.mbean = mbean ;
+            this.name = name ;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if (!(obj instanceof Key)) {
+                return false ;
+            }
+
+            final Key other = (Key)obj ;
+            return mbean == other.mbean && name.equals( other.name ) ;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode( mbean ) ^ name.hashCode() ;
+        }
+    }
+
+    private static final class Change {
+        private final MBeanImpl mbean ;
+        private final String name ;
+        private final String type ;
+        private final Object oldValue ;
+        private Object newValue ;
+
+        Change( MBeanImpl mbean, String name, String type, Object oldValue,
+            Object newValue ) {
+
+            this.mbean = mbean ;
+            this.name = name ;
+            this.type = type ;
+            this.oldValue = oldValue ;
+            this.newValue = newValue ;
+        }
+
+        void deliver() {
+            mbean.sendNotification(
+                mbean.skeleton().makeAttributeChangeNotification(
+                    mbean.notificationSource(),
+                    name, type, oldValue, newValue ) ) ;
+        }
+    }
+
+    private final int capacity ;
+    private final Map<Key,Change> pending = new LinkedHashMap<Key,Change>() ;
+    private Thread worker = null ;
+
+    AttributeChangeDispatcher( int capacity ) {
+        this.capacity = capacity ;
+    }
+
+    /** Record a change of attribute name on mbean from oldValue to
+     * newValue, to be sent as an AttributeChangeNotification.
+     */
+    void attributeChanged( final MBeanImpl mbean, final String name,
+        final String type, final Object oldValue, final Object newValue ) {
+
+        synchronized (this) {
+            final Key key = new Key( mbean, name ) ;
+            boolean interrupted = false ;
+            try {
+                while (true) {
+                    final Change current = pending.get( key ) ;
+                    if (current != null) {
+                        current.newValue = newValue ;
+                        return ;
+                    }
+
+                    if (pending.size() < capacity || interrupted
+                        || worker == Thread.currentThread()) {
+                        break ;
+                    }
+
+                    try {
+                        wait() ;
+                    } catch (InterruptedException exc) {
+                        interrupted = true ;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt() ;
+                }
+            }
+
+            pending.put( key, new Change( mbean, name, type, oldValue,
+                newValue ) ) ;
+            if (worker == null) {
+                startWorker() ;
+            } else {
+                notifyAll() ;
+            }
+        }
+    }
+
+    private void startWorker() {
+        worker = new Thread( new Runnable() {
+            public void run() {
+                deliverPending() ;
+            }
+        }, "gmbal-attribute-change-dispatcher" ) ;
+        worker.setDaemon( true ) ;
+        worker.start() ;
+    }
+
+    /** Discard all pending changes, and stop the worker thread.  Used when
+     * all MBeans are unregistered.
+     */
+    synchronized void clear() {
+        pending.clear() ;
+        if (worker != null) {
+            worker = null ;
+            notifyAll() ;
+        }
+    }
+
+    // True if the current thread is the worker, and clear() has not been
+    // called since it was started.
+    private synchronized boolean isWorker() {
+        return worker == Thread.currentThread() ;
+    }
+
+    // Take all pending changes, waiting up to IDLE_TIMEOUT_MILLIS for some
+    // to arrive.  Returns null if the worker should exit.
+    private synchronized List<Change> takePending() {
+        final long deadline = System.currentTimeMillis() + IDLE_TIMEOUT_MILLIS ;
+        while (pending.isEmpty()) {
+            final long wait = deadline - System.currentTimeMillis() ;
+            if (wait <= 0 || worker != Thread.currentThread()) {
+                return null ;
+            }
+
+            try {
+                wait( wait ) ;
+            } catch (InterruptedException exc) {
+                return null ;
+            }
+        }
+
+        if (worker != Thread.currentThread()) {
+            return null ;
+        }
+
+        final List<Change> result = new ArrayList<Change>( pending.values() ) ;
+        pending.clear() ;
+        // Wake any callers waiting for room.
+        notifyAll() ;
+        return result ;
+    }
+
+    // Called when the worker exits, normally or because of an Error.  Any
+    // changes that arrived meanwhile get a new worker.
+    private synchronized void workerExited() {
+        if (worker == Thread.currentThread()) {
+            worker = null ;
+            if (!pending.isEmpty()) {
+                startWorker() ;
+            }
+        }
+    }
+
+    private void deliverPending() {
+        try {
+            List<Change> changes ;
+            while ((changes = takePending()) != null) {
+                for (Change change : changes) {
+                    if (!isWorker()) {
+                        return ;
+                    }
+
+                    try {
+                        change.deliver() ;
+                    } catch (RuntimeException exc) {
+                        Exceptions.self.unexpectedException(
+                            "sendNotification", exc ) ;
+                    }
+                }
+            }
+        } finally {
+            workerExited() ;
+        }
+    }
+}
@@ -11,7 +11,14 @@
 package org.glassfish.gmbal.impl ;
 
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ReflectPermission;
 
 import java.security.AccessController;
@@ -30,6 +37,7 @@ import org.glassfish.gmbal.impl.trace.TraceRuntime;
 import org.glassfish.pfl.basic.algorithm.DumpToString;
 import org.glassfish.pfl.basic.contain.Pair;
 import org.glassfish.pfl.basic.facet.FacetAccessor;
+import org.glassfish.pfl.basic.facet.FacetAccessorImpl;
     
 public class AttributeDescriptor {
     public enum AttributeType { SETTER, GETTER } ;
@@ -42,6 +50,16 @@ public class AttributeDescriptor {
     @DumpToString
     private EvaluatedType _type ;
     private TypeConverter _tc ;
+    private Class<?> _facetClass ;
+    // Compiled accessor: (Object)Object for getters, (Object,Object)void
+    // for setters.  Null if the declaration could not be unreflected, in
+    // which case the FacetAccessor is used for reflective access.
+    private MethodHandle _handle ;
+
+    private static final MethodType GETTER_TYPE =
+        MethodType.methodType( Object.class, Object.class ) ;
+    private static final MethodType SETTER_TYPE =
+        MethodType.methodType( void.class, Object.class, Object.class ) ;
 
     private static final Permission accessControlPermission =
         new ReflectPermission( "suppressAccessChecks" ) ;
@@ -65,6 +83,60 @@ public class AttributeDescriptor {
         this._atype = atype ;
         this._type = type ;
         this._tc = mom.getTypeConverter( type ) ;
+        this._facetClass = declaringClass( decl ) ;
+        this._handle = makeHandle( decl, atype ) ;
+    }
+
+    private static Class<?> declaringClass(
+        final EvaluatedAccessibleDeclaration decl ) {
+
+        if (decl instanceof EvaluatedMethodDeclaration) {
+            return ((EvaluatedMethodDeclaration)decl).method()
+                .getDeclaringClass() ;
+        } else if (decl instanceof EvaluatedFieldDeclaration) {
+            return ((EvaluatedFieldDeclaration)decl).field()
+                .getDeclaringClass() ;
+        }
+
+        return null ;
+    }
+
+    // Build the MethodHandle used on every get or set.  This is done once,
+    // after the declaration has been made accessible, so that runtime access
+    // avoids the reflective Method.invoke path.
+    private static MethodHandle makeHandle(
+        final EvaluatedAccessibleDeclaration decl,
+        final AttributeType atype ) {
+
+        final MethodHandles.Lookup lookup = MethodHandles.lookup() ;
+
+        try {
+            if (decl instanceof EvaluatedMethodDeclaration) {
+                final Method method =
+                    ((EvaluatedMethodDeclaration)decl).method() ;
+                if (Modifier.isStatic( method.getModifiers() )) {
+                    return null ;
+                }
+
+                final MethodHandle mh = lookup.unreflect( method ) ;
+                return mh.asType( atype == AttributeType.GETTER
+                    ? GETTER_TYPE : SETTER_TYPE ) ;
+            } else if (decl instanceof EvaluatedFieldDeclaration) {
+                final Field field =
+                    ((EvaluatedFieldDeclaration)decl).field() ;
+                if (Modifier.isStatic( field.getModifiers() )) {
+                    return null ;
+                }
+
+                return lookup.unreflectGetter( field ).asType( GETTER_TYPE ) ;
+            }
+        } catch (IllegalAccessException exc) {
+            // Fall back to reflective access through the FacetAccessor.
+        } catch (RuntimeException exc) {
+            // Fall back to reflective access through the FacetAccessor.
+        }
+
+        return null ;
     }
 
     public final AccessibleObject accessible() { return _decl.accessible() ; }
@@ -78,6 +150,15 @@ public class AttributeDescriptor {
     public final EvaluatedType type() { return _type ; }
 
     public final TypeConverter tc() { return _tc ; }
+
+    /** The class on which this attribute is declared.  This identifies the
+     * facet of an MBean that must be used to access the attribute.
+     */
+    public final Class<?> facetClass() { return _facetClass ; }
+
+    // The compiled accessor, or null if this attribute must be accessed
+    // reflectively.
+    final MethodHandle handle() { return _handle ; }
     
     public boolean isApplicable( Object obj ) {
         if (_decl instanceof EvaluatedMethodDeclaration) {
@@ -102,6 +183,13 @@ public class AttributeDescriptor {
         throws MBeanException, ReflectionException {
         
         checkType( AttributeType.GETTER ) ;
+
+        if (_handle != null) {
+            final Object facet = fa.facet( _facetClass ) ;
+            if (facet != null) {
+                return getFacetValue( facet ) ;
+            }
+        }
                 
         Object result = null;
         
@@ -118,11 +206,53 @@ public class AttributeDescriptor {
         return result ;
     }
 
+    // Wrap thr as FacetAccessorImpl does for the reflective path, so
+    // that callers see the same exceptions from either path.
+    private IllegalArgumentException wrap( Throwable thr, String fieldMsg ) {
+        if (_decl instanceof EvaluatedMethodDeclaration) {
+            return new IllegalArgumentException( "Exception on invocation",
+                new InvocationTargetException( thr ) ) ;
+        }
+
+        return new IllegalArgumentException( fieldMsg, thr ) ;
+    }
+
+    /** Get the value of this attribute directly from facet, which must be
+     * an instance of facetClass().  The result is converted to its managed
+     * representation.
+     */
+    public Object getFacetValue( Object facet )
+        throws MBeanException, ReflectionException {
+
+        checkType( AttributeType.GETTER ) ;
+
+        if (_handle == null) {
+            return get( new FacetAccessorImpl( facet ) ) ;
+        }
+
+        final Object value ;
+        try {
+            value = (Object)_handle.invokeExact( facet ) ;
+        } catch (Throwable thr) {
+            throw wrap( thr, "Exception on field get" ) ;
+        }
+
+        return _tc.toManagedEntity( value ) ;
+    }
+
     @TraceRuntime
     public void set( FacetAccessor target, Object value )
         throws MBeanException, ReflectionException {
         
         checkType( AttributeType.SETTER ) ;
+
+        if (_handle != null) {
+            final Object facet = target.facet( _facetClass ) ;
+            if (facet != null) {
+                setFacetValue( facet, value ) ;
+                return ;
+            }
+        }
         
         if (_decl instanceof EvaluatedMethodDeclaration) {
             EvaluatedMethodDeclaration em =
@@ -135,6 +265,26 @@ public class AttributeDescriptor {
             Exceptions.self.unknownDeclarationType(_decl) ;
         }
     }
+
+    /** Set the value of this attribute directly on facet, which must be
+     * an instance of facetClass().  value is in its managed representation.
+     */
+    public void setFacetValue( Object facet, Object value )
+        throws MBeanException, ReflectionException {
+
+        checkType( AttributeType.SETTER ) ;
+
+        if (_handle == null) {
+            set( new FacetAccessorImpl( facet ), value ) ;
+            return ;
+        }
+
+        try {
+            _handle.invokeExact( facet, _tc.fromManagedEntity( value ) ) ;
+        } catch (Throwable thr) {
+            throw wrap( thr, "Exception on field set" ) ;
+        }
+    }
     
 /**************************************************************************
  * Factory methods and supporting code:
@@ -245,6 +395,29 @@ public class AttributeDescriptor {
     private static boolean empty( String arg ) {
         return (arg==null) || (arg.length() == 0) ;
     }
+
+    // True if getDerivedId could return id for some type of a method named
+    // methodName.  Used to avoid evaluating the types of methods that cannot
+    // match an InheritedAttribute.
+    private static boolean mayDeriveId( final String methodName,
+        final String id ) {
+
+        if (methodName.equals( id )) {
+            return true ;
+        }
+
+        for (String prefix : new String[] { "get", "is", "set" }) {
+            if (startsWithNotEquals( methodName, prefix )) {
+                final String stripped = stripPrefix( methodName, prefix ) ;
+                if (stripped.equals( id )
+                    || lowerInitialCharacter( stripped ).equals( id )) {
+                    return true ;
+                }
+            }
+        }
+
+        return false ;
+    }
    
     // See if method is an attribute according to its type, and the id and methodName arguments.
     // If it is, returns its AttributeDescriptor, otherwise return null.  Fails if
@@ -259,6 +432,15 @@ public class AttributeDescriptor {
             throw Exceptions.self.excForMakeFromInherited() ;
         }
 
+        // Check the name first: this does not need the types of method.
+        if (empty( methodName )) {
+            if (!mayDeriveId( method.name(), id )) {
+                return null ;
+            }
+        } else if (!methodName.equals( method.name() )) {
+            return null ;
+        }
+
         Pair<AttributeType,EvaluatedType> ainfo = getTypeInfo( method ) ;
         if (ainfo == null) {
             return null ;
@@ -266,11 +448,9 @@ public class AttributeDescriptor {
 
         final String derivedId = getDerivedId( method.name(), ainfo, adt ) ;
 
-        if (empty( methodName )) { // We know !empty(id) at this point
-            if (!derivedId.equals( id )) {
-                return null ;
-            }
-        } else if (!methodName.equals( method.name() )) {
+        // A non-empty methodName was already checked above.
+        if (empty( methodName ) && !derivedId.equals( id )) {
+            // We know !empty(id) at this point
             return null ;
         }
 
@@ -10,11 +10,13 @@
 
 package org.glassfish.gmbal.impl;
 
+import java.io.IOException;
 import java.io.InvalidObjectException;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.net.URL;
 import java.util.List;
 import java.util.Set;
 import javax.management.AttributeNotFoundException;
@@ -267,6 +269,11 @@ public interface Exceptions {
     public RuntimeException annotationMethodException(Method m,
         @Chain Exception exc);
 
+    @Message( "Descriptor field maxAge of attribute {0} must be a "
+        + "non-negative number of milliseconds: {1}" )
+    @Log( id = MBEAN_SKELETON_START + 12 )
+    IllegalArgumentException badMaxAge( String name, Object value ) ;
+
 // MBeanTree
     static final int MBEAN_TREE_START =
         MBEAN_SKELETON_START + EXCEPTIONS_PER_CLASS ;
@@ -329,6 +336,11 @@ public interface Exceptions {
     IllegalArgumentException malformedObjectName( @Chain Exception exc,
         String str ) ;
 
+    @Message( "Listeners given by ObjectName are not supported for virtual "
+        + "MBean {0}" )
+    @Log( id=MBEAN_TREE_START + 14 )
+    IllegalArgumentException virtualListenerNotSupported( ObjectName name ) ;
+
 // ManagedObjectManagerImpl
     static final int MANAGED_OBJECT_MANAGER_IMPL_START =
         MBEAN_TREE_START + EXCEPTIONS_PER_CLASS ;
@@ -408,6 +420,21 @@ public interface Exceptions {
     @Log( id=MANAGED_OBJECT_MANAGER_IMPL_START + 14 )
     public IllegalArgumentException annotationsNotSupported(AnnotatedElement elem);
 
+    @Message( "Could not read the class index {0}" )
+    @Log( id=MANAGED_OBJECT_MANAGER_IMPL_START + 15 )
+    IllegalArgumentException cannotReadClassIndex( @Chain IOException exc,
+        String index ) ;
+
+    @Message( "Could not load class {0} listed in the class index {1}" )
+    @Log( id=MANAGED_OBJECT_MANAGER_IMPL_START + 16, level=LogLevel.FINE )
+    IllegalArgumentException cannotLoadIndexedClass( @Chain Throwable thr,
+        String name, URL url ) ;
+
+    @Message( "Could not analyze class {0}" )
+    @Log( id=MANAGED_OBJECT_MANAGER_IMPL_START + 17, level=LogLevel.FINE )
+    IllegalArgumentException cannotWarmUpClass( @Chain LinkageError err,
+        String name ) ;
+
 // TypeConverterImpl
     static final int TYPE_CONVERTER_IMPL_START =
         MANAGED_OBJECT_MANAGER_IMPL_START + EXCEPTIONS_PER_CLASS ;
@@ -522,4 +549,10 @@ public interface Exceptions {
     @Log( id=JMX_REGISTRATION_MANAGER_START + 0 )
     void deferredRegistrationException( @Chain JMException exc,
         MBeanImpl mbean ) ;
+
+    @Message( "Registered {0} MBeans in {1} ms after root parent {2} "
+        + "was registered" )
+    @Log( id=JMX_REGISTRATION_MANAGER_START + 1, level=LogLevel.FINE )
+    void rootParentActivation( int count, long time,
+        ObjectName rootParentName ) ;
 }
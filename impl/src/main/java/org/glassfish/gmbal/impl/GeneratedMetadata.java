@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.impl;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.glassfish.gmbal.typelib.EvaluatedClassAnalyzer;
+import org.glassfish.gmbal.typelib.EvaluatedClassDeclaration;
+import org.glassfish.gmbal.typelib.EvaluatedDeclaration;
+
+/** The metadata that the gmbal-processor annotation processor generates at
+ * build time for a class C whose inheritance contains a @ManagedObject or
+ * @ManagedData class.  The metadata is a class named C_GmbalMetadata
+ * in the package of C, with the following public static final fields:
+ * <ul>
+ * <li>int VERSION: the version of this format (1).
+ * <li>String[] CLASSES: the names of C and of all of its superclasses and
+ * superinterfaces.
+ * <li>String[] MEMBERS: all methods and fields in CLASSES that are annotated
+ * with @ManagedAttribute, @ManagedOperation or @NameValue.  A method is
+ * written as class.name(parameter types), and a field as class.name.
+ * All class names are as returned by Class.getTypeName().
+ * </ul>
+ * Bridge methods are never filtered out, because the processor cannot
+ * see them.
+ * The processor does not generate metadata for classes that use
+ * @IncludeSubclass, @InheritedAttribute or @InheritedAttributes.
+ * <P>
+ * The metadata is ignored if its CLASSES do not match the inheritance of
+ * C at runtime, which happens if a superclass was changed after C was
+ * compiled.
+ */
+final class GeneratedMetadata {
+    static final String SUFFIX = "_GmbalMetadata" ;
+    static final int VERSION = 1 ;
+
+    private final Set<String> classes ;
+    private final Set<String> members ;
+
+    private GeneratedMetadata( final String[] classes,
+        final String[] members ) {
+
+        this.classes = new HashSet<String>( Arrays.asList( classes ) ) ;
+        this.members = new HashSet<String>( Arrays.asList( members ) ) ;
+    }
+
+    // Loaded once per class.  A class without (usable) metadata maps to
+    // NONE.
+    private static final GeneratedMetadata NONE = new GeneratedMetadata(
+        new String[0], new String[0] ) ;
+
+    private static final ClassValue<GeneratedMetadata> metadata =
+        new ClassValue<GeneratedMetadata>() {
+            @Override
+            protected GeneratedMetadata computeValue( final Class<?> cls ) {
+                return AccessController.doPrivileged(
+                    new PrivilegedAction<GeneratedMetadata>() {
+                        public GeneratedMetadata run() {
+                            return load( cls ) ;
+                        }
+                    } ) ;
+            }
+        } ;
+
+    private static GeneratedMetadata load( final Class<?> cls ) {
+        final ClassLoader loader = cls.getClassLoader() ;
+        if (loader == null || cls.isArray() || cls.isAnonymousClass()
+            || cls.isLocalClass()) {
+            return NONE ;
+        }
+
+        try {
+            final Class<?> mdcls = Class.forName( cls.getName() + SUFFIX,
+                true, loader ) ;
+            final int version = mdcls.getField( "VERSION" ).getInt( null ) ;
+            if (version != VERSION) {
+                return NONE ;
+            }
+
+            return new GeneratedMetadata(
+                (String[])mdcls.getField( "CLASSES" ).get( null ),
+                (String[])mdcls.getField( "MEMBERS" ).get( null ) ) ;
+        } catch (LinkageError err) {
+            return NONE ;
+        } catch (ReflectiveOperationException exc) {
+            return NONE ;
+        } catch (RuntimeException exc) {
+            // ClassCastException, NullPointerException, SecurityException,
+            // or an InaccessibleObjectException
+            return NONE ;
+        }
+    }
+
+    private static String memberName( final AnnotatedElement elem ) {
+        if (elem instanceof Method) {
+            final Method method = (Method)elem ;
+            final StringBuilder sb = new StringBuilder() ;
+            sb.append( method.getDeclaringClass().getTypeName() ) ;
+            sb.append( '.' ) ;
+            sb.append( method.getName() ) ;
+            sb.append( '(' ) ;
+            boolean first = true ;
+            for (Class<?> ptype : method.getParameterTypes()) {
+                if (first) {
+                    first = false ;
+                } else {
+                    sb.append( ',' ) ;
+                }
+                sb.append( ptype.getTypeName() ) ;
+            }
+            sb.append( ')' ) ;
+            return sb.toString() ;
+        } else if (elem instanceof Field) {
+            final Field field = (Field)elem ;
+            return field.getDeclaringClass().getTypeName() + '.'
+                + field.getName() ;
+        } else {
+            return null ;
+        }
+    }
+
+    private boolean matches( final EvaluatedClassAnalyzer ca ) {
+        final Set<String> names = new HashSet<String>() ;
+        for (EvaluatedClassDeclaration decl : ca.classes()) {
+            names.add( decl.cls().getTypeName() ) ;
+        }
+
+        return names.equals( classes ) ;
+    }
+
+    /** If cls has generated metadata that matches ca, the analyzer of
+     * cls, return an analyzer that only searches the managed members
+     * listed in the metadata.  Otherwise return ca.
+     *
+     * @param cls The class that was analyzed.
+     * @param ca The analyzer of cls.
+     * @return ca, or ca restricted to the members listed in the metadata.
+     */
+    static EvaluatedClassAnalyzer restrict(
+        final EvaluatedClassDeclaration cls, final EvaluatedClassAnalyzer ca ) {
+
+        final GeneratedMetadata md = metadata.get( cls.cls() ) ;
+        if (md == NONE || !md.matches( ca )) {
+            return ca ;
+        }
+
+        return ca.restrict( new Predicate<EvaluatedDeclaration>() {
+            public boolean test( EvaluatedDeclaration decl ) {
+                final AnnotatedElement elem = decl.element() ;
+                // Bridge methods are not visible to the processor, but
+                // javac copies the annotations of a method to its bridges.
+                if (elem instanceof Method && ((Method)elem).isBridge()) {
+                    return true ;
+                }
+
+                return md.members.contains( memberName( elem ) ) ;
+            }
+        } ) ;
+    }
+}
@@ -15,8 +15,22 @@
 
 package org.glassfish.gmbal.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.InstanceNotFoundException;
 import javax.management.JMException;
@@ -25,7 +39,7 @@ import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
 import org.glassfish.external.amx.MBeanListener;
 import org.glassfish.gmbal.GmbalException;
-import org.glassfish.pfl.basic.func.UnaryVoidFunction;
+import org.glassfish.gmbal.RegistrationStatistics;
 
 /** A simple class that implements deferred registration.
  * When registration is suspended, mbean registrations are
@@ -34,7 +48,7 @@ import org.glassfish.pfl.basic.func.UnaryVoidFunction;
  *
  * @author ken
  */
-public class JMXRegistrationManager {
+public class JMXRegistrationManager implements RegistrationStatistics {
     private int suspendCount ;
     private final ManagedObjectManagerInternal mom ;
     private final ObjectName rootParentName ;
@@ -44,10 +58,21 @@ public class JMXRegistrationManager {
 
     // Protected by lock.
     private final LinkedHashSet<MBeanImpl> deferredRegistrations ;
+    // True while a thread is flushing deferred registrations.  Protected
+    // by lock.
+    private boolean flushing ;
 
-    // Used in inner classes.  Protected by lock.
+    // Used in inner classes.  Protected by lock, but isJMXRegistrationEnabled
+    // is also read without it while MBeans are registered with JMX.
     MBeanImpl root ;
-    boolean isJMXRegistrationEnabled ;
+    volatile boolean isJMXRegistrationEnabled ;
+
+    // Metrics for deferred registration flushes.
+    private volatile int flushSize ;
+    private final AtomicInteger flushProgress = new AtomicInteger() ;
+    private final AtomicInteger flushCount = new AtomicInteger() ;
+    private volatile long lastFlushTime ;
+    private final AtomicLong totalFlushTime = new AtomicLong() ;
 
     // Used if rootParentName is not null.
     private RootParentListener callback ;
@@ -60,6 +85,7 @@ public class JMXRegistrationManager {
         this.mom = mom ;
         this.rootParentName = rootParentName ;
         this.deferredRegistrations = new LinkedHashSet<MBeanImpl>() ;
+        this.flushing = false ;
         this.root = null ;
         this.isJMXRegistrationEnabled = false ;
         this.callback = null ;
@@ -130,31 +156,204 @@ public class JMXRegistrationManager {
      * isJMXRegistrationEnabled is false, in which case we simply clear the
      * deferredRegistrations list, because all MBean will be registered once the
      * root is available.
+     * <P>
+     * The deferred registrations are taken from the list while holding lock,
+     * but registered with JMX after releasing it, so that other threads
+     * can register MBeans during the flush.  Large flushes are registered
+     * in parallel, one level of the tree at a time, so that a parent is
+     * always registered before its children.
+     * <P>
+     * Only one thread flushes at a time: a thread that resumes registration
+     * while another is flushing waits for that flush to finish.  An MBean
+     * registered during a flush whose parent has not been flushed yet is
+     * deferred (see mustDefer), and registered by the flushing thread after
+     * its parent.
      */
     public void resumeRegistration() {
+        final List<MBeanImpl> flush ;
         synchronized (lock) {
             suspendCount-- ;
-            if (suspendCount == 0) {
-                for (MBeanImpl mb : deferredRegistrations) {
-                    try {
+            if (suspendCount != 0) {
+                return ;
+            }
+
+            awaitFlush() ;
+
+            flush = takeDeferred() ;
+            if (flush == null) {
+                return ;
+            }
+
+            startFlush() ;
+        }
+
+        final long start = System.nanoTime() ;
+        flushDeferred( flush ) ;
+
+        final long time = TimeUnit.NANOSECONDS.toMillis(
+            System.nanoTime() - start ) ;
+        lastFlushTime = time ;
+        totalFlushTime.addAndGet( time ) ;
+        flushCount.incrementAndGet() ;
+    }
+
+    // Wait until no other thread is flushing.  Must be called with lock
+    // held.
+    private void awaitFlush() {
+        boolean interrupted = false ;
+        while (flushing) {
+            try {
+                lock.wait() ;
+            } catch (InterruptedException exc) {
+                interrupted = true ;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt() ;
+        }
+    }
+
+    // Make this thread the flushing thread.  Must be called with lock held,
+    // after awaitFlush.
+    private void startFlush() {
+        flushing = true ;
+        flushSize = 0 ;
+        flushProgress.set( 0 ) ;
+    }
+
+    // Register flush, and then the MBeans deferred in the meantime, until
+    // there are none left.  flush may be null.  Must be called by the
+    // flushing thread without holding lock, and ends the flush.
+    private void flushDeferred( List<MBeanImpl> flush ) {
+        try {
+            while (flush != null) {
+                flushSize += flush.size() ;
+                if (flush.size() < PARALLEL_THRESHOLD) {
+                    applyEach( flush, FLUSH_ACTION ) ;
+                } else {
+                    for (List<MBeanImpl> level : byLevel( flush )) {
+                        applyAll( level, FLUSH_ACTION ) ;
+                    }
+                }
+
+                // Pick up the MBeans that were deferred during the flush.
+                synchronized (lock) {
+                    flush = takeDeferred() ;
+                }
+            }
+        } finally {
+            synchronized (lock) {
+                flushing = false ;
+                lock.notifyAll() ;
+            }
+        }
+    }
+
+    // Take all deferred registrations, or return null if there are none, or
+    // if registration has been suspended again.  Must be called with lock
+    // held.
+    private List<MBeanImpl> takeDeferred() {
+        if (suspendCount != 0 || deferredRegistrations.isEmpty()) {
+            return null ;
+        }
+
+        final List<MBeanImpl> result = new ArrayList<MBeanImpl>(
+            deferredRegistrations ) ;
+        deferredRegistrations.clear() ;
+        return result ;
+    }
+
+    // True if mb must be added to deferredRegistrations instead of being
+    // registered now: either registration is suspended, or a flush is
+    // running and has not yet registered the parent of mb.  Must be called
+    // with lock held.
+    private boolean mustDefer( MBeanImpl mb ) {
+        if (suspendCount > 0) {
+            return true ;
+        }
+
+        final MBeanImpl parent = mb.parent() ;
+        return flushing && parent != null && parent.suspended() ;
+    }
+
+    // Split flush into levels: level 0 holds the MBeans whose parent is not
+    // in flush, and level n+1 the children of the MBeans in level n.
+    // flush is in registration order, so a parent precedes its children.
+    private static List<List<MBeanImpl>> byLevel( List<MBeanImpl> flush ) {
+        final Map<MBeanImpl,Integer> levelMap =
+            new IdentityHashMap<MBeanImpl,Integer>() ;
+        final List<List<MBeanImpl>> result =
+            new ArrayList<List<MBeanImpl>>() ;
+        for (MBeanImpl mb : flush) {
+            final Integer parentLevel = levelMap.get( mb.parent() ) ;
+            final int level = parentLevel == null ? 0 : parentLevel + 1 ;
+            levelMap.put( mb, level ) ;
+            if (level == result.size()) {
+                result.add( new ArrayList<MBeanImpl>() ) ;
+            }
+            result.get( level ).add( mb ) ;
+        }
+
+        return result ;
+    }
+
+    private final MBeanAction FLUSH_ACTION = new MBeanAction() {
+        public void apply( MBeanImpl mb ) {
+            try {
+                // The monitor of mb orders this with unregister, which
+                // clears suspended on an MBean it removes before the
+                // flush reaches it.
+                synchronized (mb) {
+                    if (mb.suspended()) {
                         if (isJMXRegistrationEnabled) {
                             mb.register();
                         }
                         mb.suspended( false ) ;
-                    } catch (JMException ex) {
-                        Exceptions.self.deferredRegistrationException( ex, mb ) ;
                     }
                 }
-
-                deferredRegistrations.clear() ;
+            } catch (JMException ex) {
+                Exceptions.self.deferredRegistrationException( ex, mb ) ;
+            } finally {
+                flushProgress.incrementAndGet() ;
             }
         }
+    } ;
+
+    public int getDeferredRegistrationCount() {
+        synchronized (lock) {
+            return deferredRegistrations.size() ;
+        }
+    }
+
+    public int getFlushSize() {
+        return flushSize ;
+    }
+
+    public int getFlushProgress() {
+        return flushProgress.get() ;
+    }
+
+    public int getFlushCount() {
+        return flushCount.get() ;
+    }
+
+    public long getLastFlushTime() {
+        return lastFlushTime ;
+    }
+
+    public long getTotalFlushTime() {
+        return totalFlushTime.get() ;
     }
 
     /** Handle registration of this MBean.  If we are suspended, 
      * simply add to the deferredRegistrationList and mark the MBean as
      * suspended.  If we are not suspended, then register if JMX
      * registration is enabled.
+     * <P>
+     * Only the decision is made while holding lock.  The MBean is
+     * registered with JMX after releasing it, under the monitor of the
+     * MBean, so that registrations do not wait for each other.
      * 
      * @param mb The MBeanImpl to register
      * @throws InstanceAlreadyExistsException
@@ -166,15 +365,73 @@ public class JMXRegistrationManager {
         NotCompliantMBeanException {
 
         synchronized (lock) {
-            if (suspendCount>0) {
+            if (mustDefer( mb )) {
                 deferredRegistrations.add( mb ) ;
                 mb.suspended( true ) ;
-            } else {
-                if (isJMXRegistrationEnabled) {
-                    mb.register() ;
+                return ;
+            } else if (!isJMXRegistrationEnabled) {
+                return ;
+            }
+        }
+
+        registerEnabled( mb ) ;
+    }
+
+    // Register mb, which was not deferred, unless JMX registration has
+    // been disabled since the decision was made.  The monitor of mb orders
+    // this with the unregistration of the whole tree in RootParentListener,
+    // which disables registration first.  See also FLUSH_ACTION.
+    private void registerEnabled( MBeanImpl mb )
+        throws InstanceAlreadyExistsException, MBeanRegistrationException,
+        NotCompliantMBeanException {
+
+        synchronized (mb) {
+            if (isJMXRegistrationEnabled && !mb.suspended()) {
+                mb.register() ;
+            }
+        }
+    }
+
+    /** Handle registration of all of mbs as in register, but take the
+     * lock only once for the whole batch.  A failure to register one MBean
+     * does not prevent the registration of the others.
+     *
+     * @param mbs The MBeanImpls to register
+     * @param errors Records the exception for each MBean that could not be
+     * registered, keyed by the target of the MBean
+     * @return The MBeanImpls that could not be registered
+     */
+    public List<MBeanImpl> registerAll( List<MBeanImpl> mbs,
+        Map<Object,RuntimeException> errors ) {
+
+        final List<MBeanImpl> enabled = new ArrayList<MBeanImpl>(
+            mbs.size() ) ;
+        synchronized (lock) {
+            for (MBeanImpl mb : mbs) {
+                if (mustDefer( mb )) {
+                    deferredRegistrations.add( mb ) ;
+                    mb.suspended( true ) ;
+                } else if (isJMXRegistrationEnabled) {
+                    enabled.add( mb ) ;
                 }
             }
         }
+
+        final List<MBeanImpl> failed = new ArrayList<MBeanImpl>() ;
+        for (MBeanImpl mb : enabled) {
+            try {
+                registerEnabled( mb ) ;
+            } catch (JMException ex) {
+                errors.put( mb.target(),
+                    Exceptions.self.exceptionInRegister( ex ) ) ;
+                failed.add( mb ) ;
+            } catch (RuntimeException ex) {
+                errors.put( mb.target(), ex ) ;
+                failed.add( mb ) ;
+            }
+        }
+
+        return failed ;
     }
 
     /** Unregister the MBean.  If we are suspended, remove from the
@@ -191,88 +448,332 @@ public class JMXRegistrationManager {
         throws InstanceNotFoundException, MBeanRegistrationException {
 
         synchronized (lock) {
-            boolean wasSuspended = mb.suspended() ;
-
-            if (wasSuspended) {
-                deferredRegistrations.remove(mb) ;
-                mb.suspended( false ) ;
-            } else {
-                if (isJMXRegistrationEnabled) {
-                    mb.unregister() ;
+            // See FLUSH_ACTION for the use of the monitor of mb.
+            synchronized (mb) {
+                boolean wasSuspended = mb.suspended() ;
+
+                if (wasSuspended) {
+                    deferredRegistrations.remove(mb) ;
+                    mb.suspended( false ) ;
+                } else {
+                    if (isJMXRegistrationEnabled) {
+                        mb.unregister() ;
+                    }
                 }
             }
         }
     }
 
-    // Class used to listen for the registration and deregistration of the rootParent
-    // (if a rootParent is used).
-    private class RootParentListener implements MBeanListener.Callback {
-        private void traverse( MBeanImpl mb, UnaryVoidFunction<MBeanImpl> pre,
-            UnaryVoidFunction<MBeanImpl> post ) {
+    // Batches smaller than this are handled on the calling thread.
+    private static final int PARALLEL_THRESHOLD = 256 ;
+
+    // The largest number of threads used to register or unregister a
+    // batch, including the calling thread.
+    private static final int POOL_THREADS = Math.max( 1, Integer.getInteger(
+        "org.glassfish.gmbal.registrationThreads",
+        Math.min( 8, Runtime.getRuntime().availableProcessors() ) ) ) ;
+    private static final long POOL_IDLE_SECONDS = 30 ;
+
+    // Shared by all ManagedObjectManagers.  Its threads exit when idle.
+    private static ExecutorService pool = null ;
+
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            final ThreadPoolExecutor result = new ThreadPoolExecutor(
+                POOL_THREADS, POOL_THREADS,
+                POOL_IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    public Thread newThread( Runnable task ) {
+                        final Thread thread = new Thread( task,
+                            "gmbal-registration" ) ;
+                        thread.setDaemon( true ) ;
+                        return thread ;
+                    }
+                } ) ;
+            result.allowCoreThreadTimeOut( true ) ;
+            pool = result ;
+        }
+
+        return pool ;
+    }
+
+    private interface MBeanAction {
+        void apply( MBeanImpl mb ) throws JMException ;
+    }
 
-            if (pre != null) {
-                pre.evaluate( mb ) ;
+    private static final MBeanAction UNREGISTER_ACTION = new MBeanAction() {
+        public void apply( MBeanImpl mb ) throws JMException {
+            mb.unregister() ;
+        }
+    } ;
+
+    // Apply action to every MBean in mbs, and return the first exception,
+    // if any.
+    private static JMException applyEach( final List<MBeanImpl> mbs,
+        final MBeanAction action ) {
+
+        JMException result = null ;
+        for (MBeanImpl mb : mbs) {
+            try {
+                action.apply( mb ) ;
+            } catch (JMException ex) {
+                if (result == null) {
+                    result = ex ;
+                }
             }
+        }
+
+        return result ;
+    }
 
-            for (Map<String,MBeanImpl> nameToMBean : mb.children().values() ) {
-                for (MBeanImpl child : nameToMBean.values() ) {
-                    traverse( child, pre, post ) ;
+    // As applyEach, but split large batches across the pool.
+    private static JMException applyAll( final List<MBeanImpl> mbs,
+        final MBeanAction action ) {
+
+        if (mbs.size() < PARALLEL_THRESHOLD) {
+            return applyEach( mbs, action ) ;
+        }
+
+        // Split into one chunk per thread, and run the last chunk here.
+        final int chunk = (mbs.size() + POOL_THREADS - 1) / POOL_THREADS ;
+        final List<Future<JMException>> futures =
+            new ArrayList<Future<JMException>>() ;
+        int start = 0 ;
+        for (; start + chunk < mbs.size(); start += chunk) {
+            final List<MBeanImpl> part = mbs.subList( start, start + chunk ) ;
+            futures.add( getPool().submit( new Callable<JMException>() {
+                public JMException call() {
+                    return applyEach( part, action ) ;
+                }
+            } ) ) ;
+        }
+
+        JMException exc = applyEach( mbs.subList( start, mbs.size() ),
+            action ) ;
+
+        boolean interrupted = false ;
+        for (Future<JMException> future : futures) {
+            JMException partExc = null ;
+            while (true) {
+                try {
+                    partExc = future.get() ;
+                    break ;
+                } catch (InterruptedException ex) {
+                    interrupted = true ;
+                } catch (ExecutionException ex) {
+                    final Throwable cause = ex.getCause() ;
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException)cause ;
+                    }
+                    throw (Error)cause ;
                 }
             }
 
-            if (post != null) {
-                post.evaluate( mb ) ;
+            if (exc == null) {
+                exc = partExc ;
             }
         }
 
-        private final UnaryVoidFunction<MBeanImpl> REGISTER_FUNC =
-            new UnaryVoidFunction<MBeanImpl>() {
-                public void evaluate( MBeanImpl arg ) {
-                    if (!arg.suspended()) {
-                        try {
-                            arg.register();
-                        } catch (Exception ex) {
-                            throw new GmbalException("Registration exception", ex ) ;
-                        }
+        if (interrupted) {
+            Thread.currentThread().interrupt() ;
+        }
+
+        return exc ;
+    }
+
+    /** Unregister all of mbs as in unregister.  The MBeans that are
+     * registered with JMX are unregistered in parallel if there are many
+     * of them.  All of the MBeans are unregistered even if some fail; the
+     * first failure is then thrown.
+     *
+     * @param mbs The MBeans to unregister.
+     * @throws InstanceNotFoundException
+     * @throws MBeanRegistrationException
+     */
+    public void unregisterAll( List<MBeanImpl> mbs )
+        throws InstanceNotFoundException, MBeanRegistrationException {
+
+        final List<MBeanImpl> registered = new ArrayList<MBeanImpl>(
+            mbs.size() ) ;
+        synchronized (lock) {
+            for (MBeanImpl mb : mbs) {
+                // See FLUSH_ACTION for the use of the monitor of mb.
+                synchronized (mb) {
+                    if (mb.suspended()) {
+                        deferredRegistrations.remove(mb) ;
+                        mb.suspended( false ) ;
+                    } else if (isJMXRegistrationEnabled) {
+                        registered.add( mb ) ;
                     }
                 }
-            } ;
+            }
+        }
 
-        public void mbeanRegistered(ObjectName arg0, MBeanListener arg1) {
-            synchronized (lock) {
-                if (!isJMXRegistrationEnabled) {
-                    isJMXRegistrationEnabled = true ;
+        final JMException exc = applyAll( registered, UNREGISTER_ACTION ) ;
+
+        if (exc instanceof InstanceNotFoundException) {
+            throw (InstanceNotFoundException)exc ;
+        } else if (exc != null) {
+            throw (MBeanRegistrationException)exc ;
+        }
+    }
 
-                    if (root != null) {
-                        traverse( root, REGISTER_FUNC, null );
+    // Class used to listen for the registration and deregistration of the rootParent
+    // (if a rootParent is used).
+    private class RootParentListener implements MBeanListener.Callback {
+        // Return the tree under mb one level at a time, starting with mb.
+        // Must be called with lock held.
+        private List<List<MBeanImpl>> levels( MBeanImpl mb ) {
+            final List<List<MBeanImpl>> result =
+                new ArrayList<List<MBeanImpl>>() ;
+            List<MBeanImpl> level = Collections.singletonList( mb ) ;
+            while (!level.isEmpty()) {
+                result.add( level ) ;
+                final List<MBeanImpl> next = new ArrayList<MBeanImpl>() ;
+                for (MBeanImpl parent : level) {
+                    for (Map<String,MBeanImpl> nameToMBean :
+                        parent.children().values()) {
+
+                        next.addAll( nameToMBean.values() ) ;
                     }
                 }
+                level = next ;
             }
+
+            return result ;
         }
 
-        private final UnaryVoidFunction<MBeanImpl> UNREGISTER_FUNC =
-            new UnaryVoidFunction<MBeanImpl>() {
-                public void evaluate( MBeanImpl arg ) {
-                    if (!arg.suspended()) {
-                        try {
-                            arg.unregister();
-                        } catch (Exception ex) {
-                            throw new GmbalException("Registration exception", ex ) ;
+        // Register the whole tree, one level at a time so that a parent is
+        // registered before its children.  Large levels are registered in
+        // parallel.  The tree is taken while holding lock, and each MBean
+        // in it that is not already deferred is marked suspended, as for a
+        // flush of deferred registrations.  The MBeans are then registered
+        // after releasing lock, as the flushing thread: until an MBean has
+        // been registered, a new child of it is deferred, and unregistering
+        // it only clears suspended.
+        public void mbeanRegistered(ObjectName arg0, MBeanListener arg1) {
+            final List<List<MBeanImpl>> levels =
+                new ArrayList<List<MBeanImpl>>() ;
+            synchronized (lock) {
+                awaitFlush() ;
+                if (isJMXRegistrationEnabled) {
+                    return ;
+                }
+
+                isJMXRegistrationEnabled = true ;
+                if (root == null) {
+                    return ;
+                }
+
+                for (List<MBeanImpl> level : levels( root )) {
+                    final List<MBeanImpl> activate =
+                        new ArrayList<MBeanImpl>( level.size() ) ;
+                    for (MBeanImpl mb : level) {
+                        synchronized (mb) {
+                            if (!mb.suspended()) {
+                                mb.suspended( true ) ;
+                                activate.add( mb ) ;
+                            }
                         }
                     }
+                    levels.add( activate ) ;
                 }
-            } ;
 
+                startFlush() ;
+            }
+
+            final long start = System.nanoTime() ;
+            JMException exc = null ;
+            int count = 0 ;
+            try {
+                for (List<MBeanImpl> level : levels) {
+                    final JMException levelExc = applyAll( level,
+                        ACTIVATE_ACTION ) ;
+                    if (exc == null) {
+                        exc = levelExc ;
+                    }
+                    count += level.size() ;
+                }
+            } finally {
+                final List<MBeanImpl> flush ;
+                synchronized (lock) {
+                    flush = takeDeferred() ;
+                }
+                flushDeferred( flush ) ;
+            }
+
+            if (exc != null) {
+                throw new GmbalException( "Registration exception", exc ) ;
+            }
+
+            Exceptions.self.rootParentActivation( count,
+                TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ),
+                rootParentName ) ;
+        }
+
+        // Unregister the whole tree, children before their parents.  The
+        // tree is taken while holding lock, and unregistered after
+        // releasing it.  Registration is disabled first, so an MBean that is
+        // still suspended is never registered: see ACTIVATE_ACTION and
+        // FLUSH_ACTION.
         public void mbeanUnregistered(ObjectName arg0, MBeanListener arg1) {
+            final List<List<MBeanImpl>> levels ;
             synchronized (lock) {
-                if (isJMXRegistrationEnabled) {
-                    isJMXRegistrationEnabled = false ;
+                if (!isJMXRegistrationEnabled) {
+                    return ;
+                }
 
-                    if (root != null) {
-                        traverse( root, null, UNREGISTER_FUNC );
-                    }
+                isJMXRegistrationEnabled = false ;
+                if (root == null) {
+                    return ;
+                }
+
+                levels = levels( root ) ;
+            }
+
+            JMException exc = null ;
+            for (int ctr=levels.size()-1; ctr>=0; ctr--) {
+                final JMException levelExc = applyAll( levels.get( ctr ),
+                    DEACTIVATE_ACTION ) ;
+                if (exc == null) {
+                    exc = levelExc ;
                 }
             }
+
+            if (exc != null) {
+                throw new GmbalException( "Registration exception", exc ) ;
+            }
         }
     }
+
+    // Register an MBean marked suspended by RootParentListener, unless it
+    // was unregistered, or JMX registration disabled, in the meantime.
+    private final MBeanAction ACTIVATE_ACTION = new MBeanAction() {
+        public void apply( MBeanImpl mb ) throws JMException {
+            // See FLUSH_ACTION for the use of the monitor of mb.
+            synchronized (mb) {
+                if (mb.suspended()) {
+                    try {
+                        if (isJMXRegistrationEnabled) {
+                            mb.register() ;
+                        }
+                    } finally {
+                        mb.suspended( false ) ;
+                    }
+                }
+            }
+        }
+    } ;
+
+    private static final MBeanAction DEACTIVATE_ACTION = new MBeanAction() {
+        public void apply( MBeanImpl mb ) throws JMException {
+            // See FLUSH_ACTION for the use of the monitor of mb.
+            synchronized (mb) {
+                if (!mb.suspended()) {
+                    mb.unregister() ;
+                }
+            }
+        }
+    } ;
 }
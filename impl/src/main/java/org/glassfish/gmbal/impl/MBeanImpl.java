@@ -15,6 +15,7 @@ import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import javax.management.Attribute;
 import javax.management.AttributeList;
 import javax.management.InstanceAlreadyExistsException;
@@ -26,8 +27,12 @@ import javax.management.MBeanRegistrationException;
 import javax.management.NotCompliantMBeanException;
 import javax.management.ReflectionException;
 import javax.management.MBeanInfo;
+import javax.management.Notification;
 import javax.management.NotificationBroadcasterSupport;
 import javax.management.MBeanNotificationInfo;
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
 import javax.management.AttributeChangeNotification;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
@@ -36,33 +41,44 @@ import java.security.PrivilegedExceptionAction;
 import java.security.PrivilegedActionException;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.glassfish.external.amx.AMX;
 import org.glassfish.gmbal.GmbalMBean;
 import org.glassfish.pfl.basic.facet.FacetAccessor;
 import org.glassfish.pfl.basic.facet.FacetAccessorImpl;
 import org.glassfish.pfl.basic.logex.OperationTracer;
 
-public class MBeanImpl extends NotificationBroadcasterSupport 
-    implements FacetAccessor, GmbalMBean {
+public class MBeanImpl implements FacetAccessor, GmbalMBean {
     
+    // The accessors for the volatile fields below are not synchronized:
+    // they are read on every AMX tree walk, and are only written while the
+    // MBean is set up or torn down.  Mutators that must be atomic with
+    // respect to each other are still synchronized.
     private boolean registered ;
     private final MBeanSkeleton skel ;
     private final String type ;
-    private String name ;
-    private ObjectName oname ;
-    private MBeanImpl parent ;
-    private final Set<String> subTypes ; // Null if not used: don't create empty
-					 // sets if not used.
-
-    // First index is type, second is name.
+    private volatile String name ;
+    private volatile ObjectName oname ;
+    private volatile MBeanImpl parent ;
+
+    // First index is type, second is name.  Both are null until the first
+    // child is added, since most MBeans are leaves.  children is only used
+    // under the lock of this MBeanImpl.  childViews holds read-only views
+    // of the same maps, and is also only changed under the lock.
+    // childrenView is a read-only view of childViews, created with it, and
+    // may be iterated without locking or copying while children are added
+    // and removed.
     private Map<String,Map<String,MBeanImpl>> children ;
+    private Map<String,Map<String,MBeanImpl>> childViews ;
+    private volatile Map<String,Map<String,MBeanImpl>> childrenView ;
 
-    private Object target ;
-    private MBeanServer server ;
-    private String parentPathForObjectName;
-    private boolean suspended;
+    private final Object target ;
+    private final MBeanServer server ;
+    private volatile String objectNamePrefix;
+    private volatile boolean suspended;
     
     public MBeanImpl( final MBeanSkeleton skel, 
         final Object obj, final MBeanServer server,
@@ -74,29 +90,23 @@ public class MBeanImpl extends NotificationBroadcasterSupport
         this.name = "" ;
         this.oname = null ;
         this.parent = null ;
-        this.children = new HashMap<String,Map<String,MBeanImpl>>() ;
+        this.children = null ;
+        this.childViews = null ;
+        this.childrenView = null ;
         this.target = obj ;
-	String[] stypes = skel.getMBeanType().subTypes() ;
-	if (stypes.length > 0) {
-	    this.subTypes = new HashSet( Arrays.asList(stypes)) ;
-	} else {
-	    this.subTypes = null ;
-	}
-
-        addFacet( obj ) ;
-        addFacet( new AMXImpl( this ) ) ;
+        this.facets = new Object[] { obj, new AMXImpl( this ) } ;
 
         // Note that the construction of an MBean skeleton and
         // facet registration must stay in sync.  The code is currently separated into
         // two places (here and call to new MBeanSkeleton( skel, skel )).
         // This will also be important for dealing with multiple upper bounds.
         this.server = server ;
-        this.parentPathForObjectName = null ;
+        this.objectNamePrefix = null ;
         this.suspended = false ;
     }
         
     @Override
-    public synchronized boolean equals( Object obj ) {
+    public boolean equals( Object obj ) {
         if (this == obj) {
             return true ;
         }
@@ -113,11 +123,12 @@ public class MBeanImpl extends NotificationBroadcasterSupport
     }
     
     @Override
-    public synchronized int hashCode() {
-        if (parent == null) {
+    public int hashCode() {
+        final MBeanImpl mb = parent ;
+        if (mb == null) {
             return name.hashCode() ^ type.hashCode() ;
         } else {
-            return name.hashCode() ^ type.hashCode() ^ parent.hashCode() ;
+            return name.hashCode() ^ type.hashCode() ^ mb.hashCode() ;
         }
     }
  
@@ -140,23 +151,23 @@ public class MBeanImpl extends NotificationBroadcasterSupport
         return target ;
     }
     
-    public synchronized String name() {
+    public String name() {
         return name ;
     }
 
-    public synchronized void name( String str ) {
+    public void name( String str ) {
         name = str ;
     }
     
-    public synchronized ObjectName objectName() {
+    public ObjectName objectName() {
         return oname ;
     }
     
-    public synchronized void objectName( ObjectName oname ) {
+    public void objectName( ObjectName oname ) {
         this.oname = oname ;
     }
 
-    public synchronized MBeanImpl parent() {
+    public MBeanImpl parent() {
         return parent ;
     }
    
@@ -168,34 +179,42 @@ public class MBeanImpl extends NotificationBroadcasterSupport
         }
     }
 
-    public synchronized Map<String,Map<String,MBeanImpl>> children() {
-        // Make a copy to avoid problems with concurrent modification.
-        Map<String,Map<String,MBeanImpl>> result = new 
-            HashMap<String,Map<String,MBeanImpl>>() ;
-        for (Map.Entry<String,Map<String,MBeanImpl>> entry 
-            : children.entrySet()) {
-            
-            result.put( entry.getKey(), 
-                Collections.unmodifiableMap( 
-                    new HashMap<String,MBeanImpl>( entry.getValue() ) ) ) ;
+    /** The children of this MBean, keyed by type and then by name.  The
+     * result is a read-only view that reflects later changes.  It may be
+     * iterated while children are added or removed.
+     */
+    public Map<String,Map<String,MBeanImpl>> children() {
+        final Map<String,Map<String,MBeanImpl>> result = childrenView ;
+        if (result == null) {
+            return Collections.emptyMap() ;
         }
-           
-        return Collections.unmodifiableMap( result ) ;
+
+        return result ;
     }
    
     public synchronized void addChild( MBeanImpl child ) {
         child.parent( this ) ;
 
         // XXX Add test case!
+        final Set<String> subTypes = skel.getSubTypes() ;
         if (subTypes != null && !subTypes.contains(child.type())) {
             throw Exceptions.self.invalidSubtypeOfParent( this.oname,
-                this.subTypes, child.objectName(), child.type() ) ;
+                subTypes, child.objectName(), child.type() ) ;
+        }
+
+        if (children == null) {
+            children = new HashMap<String,Map<String,MBeanImpl>>() ;
+            childViews =
+                new ConcurrentHashMap<String,Map<String,MBeanImpl>>() ;
+            childrenView = Collections.unmodifiableMap( childViews ) ;
         }
 
         Map<String,MBeanImpl> map = children.get( child.type() ) ;
         if (map == null) {
-            map = new HashMap<String,MBeanImpl>() ;
+            map = new ConcurrentHashMap<String,MBeanImpl>() ;
             children.put( child.type(), map ) ;
+            childViews.put( child.type(),
+                Collections.unmodifiableMap( map ) ) ;
         }
 
         // XXX add test case!
@@ -209,40 +228,60 @@ public class MBeanImpl extends NotificationBroadcasterSupport
     }
    
     public synchronized void removeChild( MBeanImpl child ) {
+        if (children == null) {
+            return ;
+        }
+
         Map<String,MBeanImpl> map = children.get( child.type() ) ;
         if (map != null) {
             map.remove( child.name() ) ;
             if (map.isEmpty()) {
                 children.remove( child.type() ) ;
+                childViews.remove( child.type() ) ;
+                if (children.isEmpty()) {
+                    children = null ;
+                    childViews = null ;
+                    childrenView = null ;
+                }
             }
         }
     }
  
     private void restNameHelper( StringBuilder sb ) {
-        if (parent() != null) {
-            parent().restNameHelper( sb ) ;
+        final MBeanImpl mb = parent ;
+        if (mb != null) {
+            mb.restNameHelper( sb ) ;
             sb.append( '/' ) ;
         } 
 
+        final String str = name ;
         sb.append( type() ) ;
-	if (!name.equals("")) {
+	if (!str.equals("")) {
             sb.append( '[' ) ;
-	    sb.append( name ) ;
+	    sb.append( str ) ;
             sb.append( ']' ) ;
 	}
     }
 
-    private synchronized String restName() {
+    private String restName() {
         StringBuilder sb = new StringBuilder( 60 ) ;
         restNameHelper( sb ) ;
         return sb.toString() ;
     }
 
-    public synchronized String getParentPathPart( String rootParentPrefix ) {
-        if (parentPathForObjectName == null) {
-            StringBuilder result = new StringBuilder() ;
-            result.append( AMX.PARENT_PATH_KEY ) ;
-            result.append( "=" ) ;
+    // Returns "domain:pp=<path to this MBean>," which starts the ObjectName
+    // of every child of this MBean.  Racing callers may both compute the
+    // prefix, but they compute the same string, so no lock is needed.
+    public String getObjectNamePrefix( String domain,
+        String rootParentPrefix ) {
+
+        String result = objectNamePrefix ;
+        if (result == null) {
+            StringBuilder sb = new StringBuilder() ;
+            sb.append( domain ) ;
+            sb.append( ':' ) ;
+            sb.append( AMX.PARENT_PATH_KEY ) ;
+            sb.append( "=" ) ;
 
             String qname ;
             if (rootParentPrefix == null) {
@@ -251,23 +290,24 @@ public class MBeanImpl extends NotificationBroadcasterSupport
                 qname = rootParentPrefix + "/" + restName() ;
             }
 
-            result.append( MBeanTree.getQuotedName( qname ) ) ;
+            sb.append( MBeanTree.getQuotedName( qname ) ) ;
 
             // Note that the "/" MUST be passed to getQuotedName, or we
             // can get things like /"...", which is wrong.
-            result.append( ',' ) ;
+            sb.append( ',' ) ;
 
-            parentPathForObjectName = result.toString() ;
+            result = sb.toString() ;
+            objectNamePrefix = result ;
         }
 
-        return parentPathForObjectName ;
+        return result ;
     }
  
-    public synchronized boolean suspended() {
+    public boolean suspended() {
         return suspended ;
     }
 
-    public synchronized void suspended( boolean flag ) {
+    public void suspended( boolean flag ) {
         suspended = flag ;
     }
 
@@ -279,6 +319,12 @@ public class MBeanImpl extends NotificationBroadcasterSupport
                 Exceptions.self.registeringMBean( oname ) ;
             }
 
+            // A virtual MBean is only visible through the VirtualMBeanServer.
+            if (skel.mom().virtualRegistration()) {
+                registered = true ;
+                return ;
+            }
+
             try {
                 AccessController.doPrivileged( 
                     new PrivilegedExceptionAction<Object>() {
@@ -318,6 +364,10 @@ public class MBeanImpl extends NotificationBroadcasterSupport
 
             registered = false ;
 
+            if (skel.mom().virtualRegistration()) {
+                return ;
+            }
+
             try {
                 AccessController.doPrivileged( 
                     new PrivilegedExceptionAction<Object>() {
@@ -348,12 +398,28 @@ public class MBeanImpl extends NotificationBroadcasterSupport
     public Object getAttribute(String attribute) 
         throws AttributeNotFoundException, MBeanException, ReflectionException {
         OperationTracer.clear() ;
+        final SkeletonDispatcher dispatcher = skel.getDispatcher() ;
+        if (dispatcher != null) {
+            final Object result = dispatcher.getAttribute( this, attribute ) ;
+            if (result != SkeletonDispatcher.UNHANDLED) {
+                return result ;
+            }
+        }
+
 	return skel.getAttribute( this, attribute ) ;
     }
     
     public void setAttribute(Attribute attribute) throws AttributeNotFoundException,
 	InvalidAttributeValueException, MBeanException, ReflectionException  {
         OperationTracer.clear() ;
+        // Changes that must be notified go through the skeleton.
+        final SkeletonDispatcher dispatcher = skel.getDispatcher() ;
+        if (dispatcher != null && attribute != null && !hasListeners()
+            && dispatcher.setAttribute( this, attribute.getName(),
+                attribute.getValue() )) {
+            return ;
+        }
+
 	skel.setAttribute( this, this, attribute ) ;
     }
         
@@ -370,6 +436,15 @@ public class MBeanImpl extends NotificationBroadcasterSupport
     public Object invoke(String actionName, Object params[], String signature[])
 	throws MBeanException, ReflectionException  {
         OperationTracer.clear() ;
+        final SkeletonDispatcher dispatcher = skel.getDispatcher() ;
+        if (dispatcher != null) {
+            final Object result = dispatcher.invoke( this, actionName,
+                params, signature ) ;
+            if (result != SkeletonDispatcher.UNHANDLED) {
+                return result ;
+            }
+        }
+
 	return skel.invoke( this, actionName, params, signature ) ;
     }
     
@@ -380,7 +455,91 @@ public class MBeanImpl extends NotificationBroadcasterSupport
                 "An Attribute of this MBean has changed" ) 
     } ;
     
-    @Override
+    // Almost no MBean ever gets a listener, so the notification support
+    // is only created when the first listener is added.  listenerCounts
+    // holds the number of registrations of each listener.  listenerCount
+    // is the size of listenerCounts, so that hasListeners, which is called
+    // on every setAttribute, does not need the lock.
+    private NotificationBroadcasterSupport notifier = null ;
+    private Map<NotificationListener,Integer> listenerCounts = null ;
+    private volatile int listenerCount = 0 ;
+
+    /** Returns true if at least one NotificationListener is registered on
+     * this MBean.
+     */
+    public boolean hasListeners() {
+        return listenerCount > 0 ;
+    }
+
+    /** The source of notifications from this MBean.  The MBeanServer
+     * replaces this with the ObjectName for the listeners it manages, but
+     * listeners on a virtual MBean are called directly.
+     */
+    Object notificationSource() {
+        return skel.mom().virtualRegistration() ? oname : this ;
+    }
+
+    /** Send notification to all registered listeners.  Does nothing if no
+     * listener was ever added.
+     */
+    public void sendNotification( Notification notification ) {
+        final NotificationBroadcasterSupport nbs ;
+        synchronized (this) {
+            nbs = notifier ;
+        }
+
+        // Do not hold the lock while the listeners run.
+        if (nbs != null) {
+            nbs.sendNotification( notification ) ;
+        }
+    }
+
+    public synchronized void addNotificationListener(
+        NotificationListener listener, NotificationFilter filter,
+        Object handback ) {
+
+        if (notifier == null) {
+            notifier = new NotificationBroadcasterSupport(
+                ATTRIBUTE_CHANGE_NOTIFICATION_INFO ) ;
+            listenerCounts = new HashMap<NotificationListener,Integer>() ;
+        }
+
+        notifier.addNotificationListener( listener, filter, handback ) ;
+        Integer count = listenerCounts.get( listener ) ;
+        listenerCounts.put( listener, count == null ? 1 : count + 1 ) ;
+        listenerCount = listenerCounts.size() ;
+    }
+
+    public synchronized void removeNotificationListener(
+        NotificationListener listener ) throws ListenerNotFoundException {
+
+        if (notifier == null) {
+            throw new ListenerNotFoundException( "Listener not registered" ) ;
+        }
+
+        notifier.removeNotificationListener( listener ) ;
+        listenerCounts.remove( listener ) ;
+        listenerCount = listenerCounts.size() ;
+    }
+
+    public synchronized void removeNotificationListener(
+        NotificationListener listener, NotificationFilter filter,
+        Object handback ) throws ListenerNotFoundException {
+
+        if (notifier == null) {
+            throw new ListenerNotFoundException( "Listener not registered" ) ;
+        }
+
+        notifier.removeNotificationListener( listener, filter, handback ) ;
+        Integer count = listenerCounts.get( listener ) ;
+        if (count == null || count <= 1) {
+            listenerCounts.remove( listener ) ;
+        } else {
+            listenerCounts.put( listener, count - 1 ) ;
+        }
+        listenerCount = listenerCounts.size() ;
+    }
+
     public MBeanNotificationInfo[] getNotificationInfo() {
         return ATTRIBUTE_CHANGE_NOTIFICATION_INFO.clone() ;
     }
@@ -394,34 +553,146 @@ public class MBeanImpl extends NotificationBroadcasterSupport
      * call dynamically inherited classes.
      */
     
-    private FacetAccessor facetAccessorDelegate = 
-        new FacetAccessorImpl( this ) ;
+    // The facets of this MBean, in the order in which they were added.
+    // There are normally only two (the target and its AMXImpl), so a
+    // small array that is replaced on every change is much cheaper than
+    // a FacetAccessorImpl, which indexes every facet by all of its
+    // superclasses and interfaces.
+    private volatile Object[] facets ;
+
+    // The facets for skel.getFacetClasses(), resolved on first use from
+    // a given facets array.  They are resolved again when facets has
+    // changed since, so a resolution that races with addFacet or
+    // removeFacet is never used afterwards.
+    private static final class ResolvedFacets {
+        private final Object[] source ;
+        private final Object[] resolved ;
+
+        ResolvedFacets( Object[] source, Object[] resolved ) {
+            this.source = source ;
+            this.resolved = resolved ;
+        }
+    }
+
+    private volatile ResolvedFacets resolvedFacets = null ;
+
+    private Object[] resolveFacets( Object[] current ) {
+        final List<Class<?>> classes = skel.getFacetClasses() ;
+        final Object[] result = new Object[classes.size()] ;
+        for (int ctr=0; ctr<result.length; ctr++) {
+            result[ctr] = facet( current, classes.get(ctr) ) ;
+        }
+
+        return result ;
+    }
+
+    /** Return the facet for the facet class at index in the skeleton's
+     * facet classes, or null if there is no such facet.
+     */
+    Object resolvedFacet( int index ) {
+        final Object[] current = facets ;
+        ResolvedFacets rf = resolvedFacets ;
+        if (rf == null || rf.source != current) {
+            rf = new ResolvedFacets( current, resolveFacets( current ) ) ;
+            resolvedFacets = rf ;
+        }
+
+        return rf.resolved[index] ;
+    }
     
+    // Values of the cached attributes of this MBean, indexed by the cache
+    // index of the skeleton's getters.  Allocated on first use.
+    private volatile AtomicReferenceArray<MBeanSkeleton.CachedValue>
+        attributeCache = null ;
+
+    AtomicReferenceArray<MBeanSkeleton.CachedValue> attributeCache() {
+        AtomicReferenceArray<MBeanSkeleton.CachedValue> result =
+            attributeCache ;
+        if (result == null) {
+            synchronized (this) {
+                result = attributeCache ;
+                if (result == null) {
+                    result = new AtomicReferenceArray<MBeanSkeleton.CachedValue>(
+                        skel.getCacheSize() ) ;
+                    attributeCache = result ;
+                }
+            }
+        }
+
+        return result ;
+    }
+
     public <T> T facet(Class<T> cls ) {
-        return facetAccessorDelegate.facet( cls ) ;
+        return facet( facets, cls ) ;
     }
 
-    public <T> void addFacet(T obj) {
-        facetAccessorDelegate.addFacet( obj ) ;
+    private <T> T facet( Object[] current, Class<T> cls ) {
+        if (cls.isInstance( this )) {
+            return cls.cast( this ) ;
+        }
+
+        // A facet added later hides any earlier facet of the same type.
+        for (int ctr=current.length-1; ctr>=0; ctr--) {
+            if (cls.isInstance( current[ctr] )) {
+                return cls.cast( current[ctr] ) ;
+            }
+        }
+
+        return null ;
+    }
+
+    public synchronized <T> void addFacet(T obj) {
+        if (obj.getClass().isInstance( this )) {
+            throw new IllegalArgumentException(
+                "Cannot add facet of supertype of this object" ) ;
+        }
+
+        final Object[] result = Arrays.copyOf( facets, facets.length + 1 ) ;
+        result[facets.length] = obj ;
+        facets = result ;
+    }
+
+    public synchronized void removeFacet( Class<?> cls ) {
+        if (cls.isInstance( this )) {
+            throw new IllegalArgumentException(
+                "Cannot remove facet of supertype of this object" ) ;
+        }
+
+        final Object facet = facet( cls ) ;
+        if (facet != null) {
+            final List<Object> result = new ArrayList<Object>(
+                Arrays.asList( facets ) ) ;
+            result.remove( facet ) ;
+            facets = result.toArray() ;
+        }
     }
 
-    public void removeFacet( Class<?> cls ) {
-        facetAccessorDelegate.removeFacet( cls ) ;
+    // The reflective paths below are only used for members that could not
+    // be bound to a MethodHandle.  They delegate to a FacetAccessorImpl
+    // on the facet that declares the member, so that errors are reported
+    // exactly as before.
+    private FacetAccessor accessorFor( Class<?> cls ) {
+        final Object facet = facet( cls ) ;
+        return new FacetAccessorImpl( facet == null ? this : facet ) ;
     }
 
     public Object invoke(Method method, Object... args) {
-        return facetAccessorDelegate.invoke( method, args ) ;
+        return accessorFor( method.getDeclaringClass() ).invoke(
+            method, args ) ;
     }
 
     public Collection<Object> facets() {
-        return facetAccessorDelegate.facets() ;
+        final List<Object> result = new ArrayList<Object>(
+            Arrays.asList( facets ) ) ;
+        result.add( this ) ;
+        return result ;
     }
 
     public Object get(Field field ) {
-        return facetAccessorDelegate.get( field ) ;
+        return accessorFor( field.getDeclaringClass() ).get( field ) ;
     }
 
     public void set(Field field, Object value ) {
-        facetAccessorDelegate.set( field, value ) ;
+        accessorFor( field.getDeclaringClass() ).set( field, value ) ;
     }
 }
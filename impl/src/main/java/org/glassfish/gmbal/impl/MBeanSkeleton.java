@@ -11,6 +11,7 @@
 package org.glassfish.gmbal.impl;
 
 import org.glassfish.gmbal.AMXMetadata;
+import org.glassfish.gmbal.AttributeSnapshot;
 import java.util.List;
 import java.util.Arrays;
 import java.util.ArrayList;
@@ -18,10 +19,16 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.Set;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ReflectPermission;
 
 import java.security.AccessController;
@@ -35,7 +42,6 @@ import javax.management.AttributeNotFoundException;
 import javax.management.ReflectionException;
 import javax.management.MBeanParameterInfo;
 
-import javax.management.NotificationBroadcasterSupport;
 import javax.management.AttributeChangeNotification;
 
 import org.glassfish.gmbal.NameValue;
@@ -76,6 +82,193 @@ public class MBeanSkeleton {
 	extends BinaryFunction<FacetAccessor, List<Object>, Object> {
     };
 
+    private static final String[] NO_SIGNATURE = new String[0] ;
+    private static final Object[] NO_PARAMS = new Object[0] ;
+
+    private static final MethodType OPERATION_TYPE = MethodType.methodType(
+        Object.class, Object.class, Object[].class ) ;
+
+    /** The Operation for a @ManagedOperation method.  The argument and
+     * result conversions are held in arrays, and the method is called
+     * through a MethodHandle when the target facet is already known.
+     */
+    static final class OperationImpl implements Operation {
+        private final Method method ;
+        private final TypeConverter[] atcs ;
+        private final TypeConverter rtc ;
+        // True if no argument needs conversion, so params can be passed
+        // to the method as they are.
+        private final boolean identityArgs ;
+        // (Object,Object[])Object, or null if only reflection can be used.
+        private final MethodHandle handle ;
+
+        OperationImpl( final Method method, final TypeConverter[] atcs,
+            final TypeConverter rtc ) {
+
+            this.method = method ;
+            this.atcs = atcs ;
+            this.rtc = rtc ;
+
+            boolean identity = true ;
+            for (TypeConverter tc : atcs) {
+                identity &= tc.isIdentity() ;
+            }
+            this.identityArgs = identity ;
+            this.handle = makeHandle( method, atcs.length ) ;
+        }
+
+        private static MethodHandle makeHandle( final Method method,
+            final int numArgs ) {
+
+            if (Modifier.isStatic( method.getModifiers() )) {
+                return null ;
+            }
+
+            try {
+                return MethodHandles.lookup().unreflect( method )
+                    .asSpreader( Object[].class, numArgs )
+                    .asType( OPERATION_TYPE ) ;
+            } catch (IllegalAccessException exc) {
+                return null ;
+            } catch (RuntimeException exc) {
+                return null ;
+            }
+        }
+
+        Class<?> facetClass() {
+            return method.getDeclaringClass() ;
+        }
+
+        /** This operation compiled for SkeletonDispatcher, or null if it
+         * cannot be compiled.
+         */
+        MethodHandle compile() {
+            return SkeletonDispatcher.compileOperation( method, atcs, rtc ) ;
+        }
+
+        private Object[] convertArguments( final Object[] params ) {
+            if (identityArgs) {
+                return params ;
+            }
+
+            final Object[] margs = new Object[params.length] ;
+            final int len = Math.min( params.length, atcs.length ) ;
+            for (int ctr=0; ctr<len; ctr++) {
+                margs[ctr] = atcs[ctr].fromManagedEntity( params[ctr] ) ;
+            }
+
+            return margs ;
+        }
+
+        private Object convertResult( final Object result ) {
+            if (rtc == null) {
+                return null ;
+            } else {
+                return rtc.toManagedEntity( result ) ;
+            }
+        }
+
+        /** Invoke this operation.  If facet is not null, it must be an
+         * instance of facetClass(), and is used as the target.  Otherwise
+         * the target is found through fa.
+         */
+        Object invoke( final FacetAccessor fa, final Object facet,
+            final Object[] params ) throws MBeanException {
+
+            final Object[] margs = convertArguments( params ) ;
+            if (facet == null || handle == null) {
+                return convertResult( fa.invoke( method, margs ) ) ;
+            }
+
+            final Object result ;
+            try {
+                result = (Object)handle.invokeExact( facet, margs ) ;
+            } catch (RuntimeException exc) {
+                throw exc ;
+            } catch (Error err) {
+                throw err ;
+            } catch (Exception exc) {
+                throw new MBeanException( exc ) ;
+            } catch (Throwable thr) {
+                throw new MBeanException( new Exception( thr ) ) ;
+            }
+
+            return convertResult( result ) ;
+        }
+
+        @TraceRuntime
+        public Object evaluate( FacetAccessor target, List<Object> args ) {
+            return convertResult( target.invoke( method,
+                convertArguments( args.toArray() ) ) ) ;
+        }
+    }
+
+    /** An entry in the flattened operation table.  All overloads of an
+     * operation name are chained through next, so an operation with a single
+     * overload is found with one lookup and one signature comparison.
+     */
+    static final class OperationEntry {
+        private final String[] signature ; // interned
+        private final OperationImpl op ;
+        private final int facetIndex ;
+        private OperationEntry next ;
+
+        OperationEntry( final List<String> signature, final OperationImpl op,
+            final int facetIndex ) {
+
+            this.signature = new String[signature.size()] ;
+            for (int ctr=0; ctr<this.signature.length; ctr++) {
+                this.signature[ctr] = signature.get(ctr).intern() ;
+            }
+
+            this.op = op ;
+            this.facetIndex = facetIndex ;
+            this.next = null ;
+        }
+
+        String[] signature() {
+            return signature ;
+        }
+
+        OperationImpl operation() {
+            return op ;
+        }
+
+        int facetIndex() {
+            return facetIndex ;
+        }
+
+        OperationEntry next() {
+            return next ;
+        }
+
+        boolean matches( final String[] sig ) {
+            if (sig.length != signature.length) {
+                return false ;
+            }
+
+            for (int ctr=0; ctr<sig.length; ctr++) {
+                final String str = sig[ctr] ;
+                if (str != signature[ctr] && !signature[ctr].equals( str )) {
+                    return false ;
+                }
+            }
+
+            return true ;
+        }
+
+        Object invoke( final FacetAccessor fa, final Object[] params )
+            throws MBeanException {
+
+            Object facet = null ;
+            if (fa instanceof MBeanImpl) {
+                facet = ((MBeanImpl)fa).resolvedFacet( facetIndex ) ;
+            }
+
+            return op.invoke( fa, facet, params ) ;
+        }
+    }
+
     private AMXMetadata mbeanType;
     private final String type;
     private Descriptor descriptor;
@@ -83,14 +276,247 @@ public class MBeanSkeleton {
     private final AtomicLong sequenceNumber;
     @DumpToString
     private final ManagedObjectManagerInternal mom;
+    // Null if notifications are sent on the thread that sets the attribute.
+    @DumpIgnore
+    private final AttributeChangeDispatcher attributeChangeDispatcher;
     @DumpIgnore
     private final Map<String, AttributeDescriptor> setters;
     private final Map<String, AttributeDescriptor> getters;
     private AttributeDescriptor nameAttributeDescriptor;
     private final Map<String, Map<List<String>, Operation>> operations;
+    // Flattened form of operations, keyed by operation name.
+    private final Map<String, OperationEntry> operationTable;
     private final List<ModelMBeanAttributeInfo> mbeanAttributeInfoList;
     private final List<ModelMBeanOperationInfo> mbeanOperationInfoList;
     private final ModelMBeanInfoSupport mbInfo;
+    // Runtime views of getters and setters, and the facet classes they
+    // refer to.  An MBeanImpl resolves each facet class once, so that
+    // attribute access does not need a facet lookup on every call.
+    private final Map<String, Accessor> getterAccessors;
+    private final Map<String, Accessor> setterAccessors;
+    private final List<Class<?>> facetClasses;
+    // Number of getters whose values are cached.
+    private int cacheSize;
+    // The permitted types of the children of this MBean, shared by all
+    // of its MBeanImpls.  Null if any type is allowed.
+    private final Set<String> subTypes;
+
+    /** Descriptor field that enables caching of an attribute value.  The
+     * value is the time in milliseconds for which a value read from the
+     * getter is returned to all callers without calling the getter again.
+     */
+    static final String MAX_AGE_FIELD = "maxAge";
+    // Index of the AttributeSnapshot facet, used by getAttributes.
+    private final int snapshotIndex;
+    // Null unless direct dispatch is enabled and some getter, setter or
+    // operation could be compiled.
+    private final SkeletonDispatcher dispatcher;
+
+    /** A cached attribute value, valid until expires (in System.nanoTime
+     * units).  An expired value is marked as refreshing while one caller
+     * reads a new value, and is returned to all other callers until then.
+     */
+    static final class CachedValue {
+        private final Object value ;
+        private final long expires ;
+        private final boolean refreshing ;
+
+        CachedValue( Object value, long expires, boolean refreshing ) {
+            this.value = value ;
+            this.expires = expires ;
+            this.refreshing = refreshing ;
+        }
+    }
+
+    /** An AttributeDescriptor bound to the index of its facet class in
+     * this skeleton.
+     */
+    static final class Accessor {
+        private final AttributeDescriptor ad ;
+        private final int facetIndex ;
+        // Index of this attribute in MBeanImpl.attributeCache(), or -1 if
+        // the value is not cached.
+        private final int cacheIndex ;
+        private final long maxAgeNanos ;
+
+        Accessor( AttributeDescriptor ad, int facetIndex, int cacheIndex,
+            long maxAgeNanos ) {
+
+            this.ad = ad ;
+            this.facetIndex = facetIndex ;
+            this.cacheIndex = cacheIndex ;
+            this.maxAgeNanos = maxAgeNanos ;
+        }
+
+        AttributeDescriptor descriptor() {
+            return ad ;
+        }
+
+        int facetIndex() {
+            return facetIndex ;
+        }
+
+        boolean isCached() {
+            return cacheIndex >= 0 ;
+        }
+
+        private Object read( FacetAccessor fa ) throws MBeanException,
+            ReflectionException {
+
+            if (fa instanceof MBeanImpl) {
+                final Object facet = ((MBeanImpl)fa).resolvedFacet( facetIndex ) ;
+                if (facet != null) {
+                    return ad.getFacetValue( facet ) ;
+                }
+            }
+
+            return ad.get( fa ) ;
+        }
+
+        Object get( FacetAccessor fa ) throws MBeanException,
+            ReflectionException {
+
+            if (cacheIndex < 0 || !(fa instanceof MBeanImpl)) {
+                return read( fa ) ;
+            }
+
+            final AtomicReferenceArray<CachedValue> cache =
+                ((MBeanImpl)fa).attributeCache() ;
+            final long now = System.nanoTime() ;
+            final CachedValue cv = cache.get( cacheIndex ) ;
+            if (cv == null) {
+                // Nothing to return yet, so every caller must read.
+                final Object value = read( fa ) ;
+                cache.compareAndSet( cacheIndex, null,
+                    new CachedValue( value, now + maxAgeNanos, false ) ) ;
+                return value ;
+            }
+
+            if (now - cv.expires < 0 || cv.refreshing) {
+                return cv.value ;
+            }
+
+            // Only the caller that marks the expired value as refreshing
+            // reads a new one; the others keep returning the old value.
+            final CachedValue marker = new CachedValue( cv.value, cv.expires,
+                true ) ;
+            if (!cache.compareAndSet( cacheIndex, cv, marker )) {
+                return cv.value ;
+            }
+
+            boolean done = false ;
+            try {
+                final Object value = read( fa ) ;
+                // Fails if a setter invalidated the value meanwhile.
+                cache.compareAndSet( cacheIndex, marker,
+                    new CachedValue( value, now + maxAgeNanos, false ) ) ;
+                done = true ;
+                return value ;
+            } finally {
+                if (!done) {
+                    cache.compareAndSet( cacheIndex, marker, null ) ;
+                }
+            }
+        }
+
+        void invalidate( FacetAccessor fa ) {
+            if (cacheIndex >= 0 && fa instanceof MBeanImpl) {
+                ((MBeanImpl)fa).attributeCache().set( cacheIndex, null ) ;
+            }
+        }
+
+        void set( FacetAccessor fa, Object value ) throws MBeanException,
+            ReflectionException {
+
+            if (fa instanceof MBeanImpl) {
+                final Object facet = ((MBeanImpl)fa).resolvedFacet( facetIndex ) ;
+                if (facet != null) {
+                    ad.setFacetValue( facet, value ) ;
+                    return ;
+                }
+            }
+
+            ad.set( fa, value ) ;
+        }
+    }
+
+    // Returns the maximum age in nanoseconds of a cached value for getter,
+    // from the MAX_AGE_FIELD of its descriptor.  0 means no caching.
+    private long getMaxAgeNanos( AttributeDescriptor getter ) {
+        final Descriptor desc = DescriptorIntrospector.descriptorForElement(
+            mom, getter.accessible() ) ;
+        final Object value = desc.getFieldValue( MAX_AGE_FIELD ) ;
+        if (value == null) {
+            return 0 ;
+        }
+
+        long millis ;
+        try {
+            if (value instanceof Number) {
+                millis = ((Number)value).longValue() ;
+            } else {
+                millis = Long.parseLong( value.toString().trim() ) ;
+            }
+        } catch (NumberFormatException exc) {
+            throw Exceptions.self.badMaxAge( getter.id(), value ) ;
+        }
+
+        if (millis < 0) {
+            throw Exceptions.self.badMaxAge( getter.id(), value ) ;
+        }
+
+        return TimeUnit.MILLISECONDS.toNanos( millis ) ;
+    }
+
+    private Map<String, Accessor> makeAccessors(
+        Map<String, AttributeDescriptor> descriptors, boolean isGetter ) {
+
+        final Map<String, Accessor> result = new HashMap<String, Accessor>() ;
+        for (Map.Entry<String, AttributeDescriptor> entry
+            : descriptors.entrySet()) {
+
+            final AttributeDescriptor ad = entry.getValue() ;
+            final long maxAge = isGetter ? getMaxAgeNanos( ad ) : 0 ;
+            final int cacheIndex = (maxAge > 0) ? cacheSize++ : -1 ;
+            result.put( entry.getKey(), new Accessor( ad,
+                facetIndex( ad.facetClass() ), cacheIndex, maxAge ) ) ;
+        }
+
+        return result ;
+    }
+
+    private int facetIndex( Class<?> cls ) {
+        int index = facetClasses.indexOf( cls ) ;
+        if (index < 0) {
+            index = facetClasses.size() ;
+            facetClasses.add( cls ) ;
+        }
+
+        return index ;
+    }
+
+    private Map<String, OperationEntry> makeOperationTable() {
+        final Map<String, OperationEntry> result =
+            new HashMap<String, OperationEntry>() ;
+        for (Map.Entry<String, Map<List<String>, Operation>> entry
+            : operations.entrySet()) {
+
+            OperationEntry head = null ;
+            for (Map.Entry<List<String>, Operation> opEntry
+                : entry.getValue().entrySet()) {
+
+                final OperationImpl op = (OperationImpl)opEntry.getValue() ;
+                final OperationEntry oe = new OperationEntry(
+                    opEntry.getKey(), op, facetIndex( op.facetClass() ) ) ;
+                oe.next = head ;
+                head = oe ;
+            }
+
+            result.put( entry.getKey(), head ) ;
+        }
+
+        return result ;
+    }
 
     private <K, L, V> void addToCompoundMap(
 	Map<K, Map<L, V>> source, Map<K, Map<L, V>> dest) {
@@ -109,6 +535,14 @@ public class MBeanSkeleton {
 	final EvaluatedClassAnalyzer ca,
 	final ManagedObjectManagerInternal mom) {
 
+        this(annotatedClass, ca, mom, null);
+    }
+
+    MBeanSkeleton(final EvaluatedClassDeclaration annotatedClass,
+	final EvaluatedClassAnalyzer ca,
+	final ManagedObjectManagerInternal mom,
+        final AttributeChangeDispatcher attributeChangeDispatcher) {
+
         boolean isDefaultAMXMetadata = false ;
 	mbeanType = mom.getFirstAnnotationOnClass(annotatedClass, AMXMetadata.class);
 	if (mbeanType == null) {
@@ -137,6 +571,7 @@ public class MBeanSkeleton {
 	sequenceNumber = new AtomicLong();
 
 	this.mom = mom;
+        this.attributeChangeDispatcher = attributeChangeDispatcher;
 
 	setters = new HashMap<String, AttributeDescriptor>();
 	getters = new HashMap<String, AttributeDescriptor>();
@@ -149,6 +584,16 @@ public class MBeanSkeleton {
 	analyzeObjectNameKeys(ca);
 
 	mbInfo = makeMbInfo(mom.getDescription(annotatedClass));
+
+	facetClasses = new ArrayList<Class<?>>();
+	getterAccessors = makeAccessors(getters, true);
+	setterAccessors = makeAccessors(setters, false);
+	operationTable = makeOperationTable();
+	snapshotIndex = facetIndex(AttributeSnapshot.class);
+	dispatcher = mom.directDispatch()
+	    ? SkeletonDispatcher.make(getterAccessors, setterAccessors,
+                operationTable) : null;
+	subTypes = makeSubTypes(mbeanType);
     }
 
     // In case of conflicts, always prefer second over first.
@@ -163,6 +608,7 @@ public class MBeanSkeleton {
 	sequenceNumber = new AtomicLong();
 
 	mom = second.mom;
+        attributeChangeDispatcher = second.attributeChangeDispatcher;
 
 	setters = new HashMap<String, AttributeDescriptor>();
 	setters.putAll(first.setters);
@@ -189,6 +635,16 @@ public class MBeanSkeleton {
 	// This must go last, because it depends on some of the
 	// preceding initializations.
 	mbInfo = makeMbInfo(second.mbInfo.getDescription());
+
+	facetClasses = new ArrayList<Class<?>>();
+	getterAccessors = makeAccessors(getters, true);
+	setterAccessors = makeAccessors(setters, false);
+	operationTable = makeOperationTable();
+	snapshotIndex = facetIndex(AttributeSnapshot.class);
+	dispatcher = mom.directDispatch()
+	    ? SkeletonDispatcher.make(getterAccessors, setterAccessors,
+                operationTable) : null;
+	subTypes = makeSubTypes(mbeanType);
     }
 
     private ModelMBeanInfoSupport makeMbInfo(String description) {
@@ -414,32 +870,8 @@ public class MBeanSkeleton {
         describe( "atypes", atypes );
         describe( "descriptor", descriptor );
 
-        final Operation oper = new Operation() {
-            @TraceRuntime
-            public Object evaluate(FacetAccessor target, List<Object> args) {
-                Object[] margs = new Object[args.size()];
-                Iterator<Object> argsIterator = args.iterator();
-                Iterator<TypeConverter> tcIterator = atcs.iterator();
-                int ctr = 0;
-                while (argsIterator.hasNext() && tcIterator.hasNext()) {
-                    final Object arg = argsIterator.next();
-                    final TypeConverter tc = tcIterator.next();
-                    margs[ctr++] = tc.fromManagedEntity(arg);
-                }
-
-                describe( "margs before invoke", margs ) ;
-
-                Object result = target.invoke(m.method(), margs);
-
-                describe( "result after invoke", result ) ;
-
-                if (rtc == null) {
-                    return null;
-                } else {
-                    return rtc.toManagedEntity(result);
-                }
-            }
-        };
+        final Operation oper = new OperationImpl( m.method(),
+            atcs.toArray( new TypeConverter[atcs.size()] ), rtc ) ;
 
         final ParameterNames pna = mom.getAnnotation( m.element(),
             ParameterNames.class);
@@ -515,11 +947,49 @@ public class MBeanSkeleton {
 	return mbeanType;
     }
 
+    private static Set<String> makeSubTypes(AMXMetadata mbeanType) {
+        final String[] stypes = mbeanType.subTypes();
+        if (stypes.length == 0) {
+            return null;
+        }
+
+        return Collections.unmodifiableSet(
+            new HashSet<String>(Arrays.asList(stypes)));
+    }
+
+    /** The types that are permitted for the children of MBeans with this
+     * skeleton, or null if any type is allowed.
+     */
+    Set<String> getSubTypes() {
+        return subTypes;
+    }
+
+    /** The facet classes referenced by the attributes of this skeleton.
+     * The facet for the class at index i is passed to an Accessor whose
+     * facetIndex is i.
+     */
+    List<Class<?>> getFacetClasses() {
+        return facetClasses;
+    }
+
+    /** The precompiled attribute dispatcher for this skeleton, or null if
+     * all calls must go through the skeleton.
+     */
+    SkeletonDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /** The number of cached attribute values that each MBeanImpl must hold.
+     */
+    int getCacheSize() {
+        return cacheSize;
+    }
+
     @TraceRuntime
     public Object getAttribute(FacetAccessor fa, String name)
 	throws AttributeNotFoundException, MBeanException, ReflectionException {
 
-        AttributeDescriptor getter = getters.get(name);
+        Accessor getter = getterAccessors.get(name);
         if (getter == null) {
             throw Exceptions.self.couldNotFindAttribute(name);
         }
@@ -529,59 +999,121 @@ public class MBeanSkeleton {
     }
 
     @TraceRuntime
-    public void setAttribute(final NotificationBroadcasterSupport emitter,
+    public void setAttribute(final MBeanImpl mbean,
 	final FacetAccessor fa, final Attribute attribute)
 	throws AttributeNotFoundException, InvalidAttributeValueException,
 	MBeanException, ReflectionException {
 
         final String name = attribute.getName();
         final Object value = attribute.getValue();
-        final AttributeDescriptor getter = getters.get(name);
-        final Object oldValue = (getter == null)
+        final Accessor setter = setterAccessors.get(name);
+        if (setter == null) {
+            throw Exceptions.self.couldNotFindWritableAttribute(name);
+        }
+
+        // Nothing is sent if the MBean has no listeners, so in that
+        // case there is no need to read the old value either.
+        final boolean notify = mbean.hasListeners();
+
+        final Accessor getter = getterAccessors.get(name);
+        final Object oldValue = (getter == null || !notify)
             ? null : getter.get(fa);
 
         describe( "oldValue", oldValue ) ;
 
-        final AttributeDescriptor setter = setters.get(name);
-        if (setter == null) {
-            throw Exceptions.self.couldNotFindWritableAttribute(name);
+        setter.set(fa, value ) ;
+        if (getter != null) {
+            getter.invalidate(fa);
         }
 
-        setter.set(fa, value ) ;
+        if (notify) {
+            final String type =
+                setter.descriptor().tc().getManagedType().getClassName();
+            if (attributeChangeDispatcher == null) {
+                mbean.sendNotification(makeAttributeChangeNotification(
+                    mbean.notificationSource(), name, type, oldValue, value));
+            } else {
+                attributeChangeDispatcher.attributeChanged(mbean, name, type,
+                    oldValue, value);
+            }
+        }
+    }
+
+    AttributeChangeNotification makeAttributeChangeNotification(
+        final Object source, final String name, final String type,
+        final Object oldValue, final Object newValue) {
 
-        AttributeChangeNotification notification =
-            new AttributeChangeNotification(emitter,
-                sequenceNumber.incrementAndGet(),
-                System.currentTimeMillis(),
-                "Changed attribute " + name, name,
-                setter.tc().getManagedType().getClassName(),
-                oldValue, value);
+        return new AttributeChangeNotification(source,
+            sequenceNumber.incrementAndGet(),
+            System.currentTimeMillis(),
+            "Changed attribute " + name, name, type,
+            oldValue, newValue);
+    }
 
-        describe( "sending notification", notification ) ;
+    private AttributeSnapshot getSnapshot(FacetAccessor fa) {
+        if (fa instanceof MBeanImpl) {
+            return (AttributeSnapshot)((MBeanImpl)fa).resolvedFacet(
+                snapshotIndex);
+        }
 
-        emitter.sendNotification(notification);
+        return fa.facet(AttributeSnapshot.class);
     }
 
-    @TraceRuntime
-    public AttributeList getAttributes(FacetAccessor fa, String[] attributes) {
-        AttributeList result = new AttributeList();
-        for (String str : attributes) {
-            Object value = null;
+    // Read the values for all of the accessors in one pass.  Any error is
+    // logged, and leaves a null value.  Since this may run inside of an
+    // AttributeSnapshot, only RuntimeExceptions may propagate.
+    private void readAttributes(final FacetAccessor fa,
+        final String[] attributes, final Accessor[] accessors,
+        final Object[] values) {
 
-            try {
-                value = getAttribute(fa, str);
-            } catch (JMException ex) {
-                Exceptions.self.attributeGettingError(ex, str);
+        for (int ctr = 0; ctr < accessors.length; ctr++) {
+            final Accessor getter = accessors[ctr];
+            if (getter != null) {
+                try {
+                    values[ctr] = getter.get(fa);
+                } catch (JMException ex) {
+                    Exceptions.self.attributeGettingError(ex, attributes[ctr]);
+                }
+            }
+        }
+    }
+
+    @TraceRuntime
+    public AttributeList getAttributes(final FacetAccessor fa,
+        final String[] attributes) {
+
+        // Resolve all of the names first, so that the reads can all be
+        // done together.
+        final Accessor[] accessors = new Accessor[attributes.length];
+        for (int ctr = 0; ctr < attributes.length; ctr++) {
+            final String str = attributes[ctr];
+            accessors[ctr] = getterAccessors.get(str);
+            if (accessors[ctr] == null) {
+                Exceptions.self.attributeGettingError(
+                    Exceptions.self.couldNotFindAttribute(str), str);
             }
+        }
+
+        final Object[] values = new Object[attributes.length];
+        final AttributeSnapshot snapshot = getSnapshot(fa);
+        if (snapshot == null) {
+            readAttributes(fa, attributes, accessors, values);
+        } else {
+            snapshot.snapshot(new Runnable() {
+                public void run() {
+                    readAttributes(fa, attributes, accessors, values);
+                }
+            });
+        }
 
+        AttributeList result = new AttributeList(attributes.length);
+        for (int ctr = 0; ctr < attributes.length; ctr++) {
             // If value == null, we had a problem in trying to fetch it,
             // so just ignore that attribute.  Returning null simply leads to
             // a blank entry in jconsole.  Do not let an error in fetching
             // one attribute prevent fetching the others.
-
-            if (value != null) {
-                Attribute attr = new Attribute(str, value);
-                result.add(attr);
+            if (values[ctr] != null) {
+                result.add(new Attribute(attributes[ctr], values[ctr]));
             }
         }
 
@@ -590,7 +1122,7 @@ public class MBeanSkeleton {
 
     @TraceRuntime
     public AttributeList setAttributes(
-	final NotificationBroadcasterSupport emitter,
+	final MBeanImpl mbean,
 	final FacetAccessor fa, final AttributeList attributes) {
 
 	AttributeList result = new AttributeList();
@@ -599,7 +1131,7 @@ public class MBeanSkeleton {
             Attribute attr = (Attribute) elem;
 
             try {
-                setAttribute(emitter, fa, attr);
+                setAttribute(mbean, fa, attr);
                 result.add(attr);
             } catch (JMException ex) {
                 Exceptions.self.attributeSettingError(ex, attr.getName());
@@ -613,22 +1145,23 @@ public class MBeanSkeleton {
     public Object invoke(FacetAccessor fa, String actionName, Object params[],
 	String sig[]) throws MBeanException, ReflectionException {
 
-	final List<String> signature = Arrays.asList(sig);
-	final List<Object> parameters = Arrays.asList(params);
-
-        final Map<List<String>, Operation> opMap = operations.get(
-            actionName);
-        if (opMap == null) {
+        final OperationEntry head = operationTable.get(actionName);
+        if (head == null) {
             throw Exceptions.self.couldNotFindOperation(actionName);
         }
 
-        final Operation op = opMap.get(signature);
-        if (op == null) {
+        final String[] signature = (sig == null) ? NO_SIGNATURE : sig;
+        OperationEntry entry = head;
+        while (entry != null && !entry.matches(signature)) {
+            entry = entry.next;
+        }
+
+        if (entry == null) {
             throw Exceptions.self.couldNotFindOperationAndSignature(
-                actionName, signature);
+                actionName, Arrays.asList(signature));
         }
 
-        Object result = op.evaluate(fa, parameters);
+        Object result = entry.invoke(fa, (params == null) ? NO_PARAMS : params);
 
 	return result;
     }
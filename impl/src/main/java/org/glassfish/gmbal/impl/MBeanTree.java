@@ -10,11 +10,18 @@
 
 package org.glassfish.gmbal.impl;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
 import javax.management.MBeanRegistrationException;
 import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
@@ -25,30 +32,41 @@ import java.security.PrivilegedActionException;
 import java.security.PrivilegedAction;
 import org.glassfish.external.amx.AMX;
 import org.glassfish.gmbal.GmbalMBean;
+import org.glassfish.gmbal.RegistrationStatistics;
 import org.glassfish.gmbal.impl.trace.TraceRegistration;
 import org.glassfish.pfl.basic.facet.FacetAccessor;
 import org.glassfish.pfl.tf.spi.annotation.InfoMethod;
 
 /** Represents the collection of DynamicMBeanImpls that we have registered with
  * a ManagedObjectManager.
+ * <p>
+ * Lookups do not lock.  Registrations share the read lock of treeLock, so
+ * that registrations under different parents proceed in parallel: a parent
+ * serializes changes to its own children, and conflicting names are
+ * detected atomically in the concurrent maps.  Operations that remove
+ * MBeans or replace the root take the write lock, but removed MBeans are
+ * unregistered from JMX after it is released.
  *
  * @author ken
  */
 @TraceRegistration
 public class MBeanTree {
-    private Object root = null ;
-    private MBeanImpl rootEntity = null ;
-    private Map<Object,MBeanImpl> objectMap ;
-    private Map<ObjectName,Object> objectNameMap ;
+    private final ReadWriteLock treeLock = new ReentrantReadWriteLock() ;
+    private volatile Object root = null ;
+    private volatile MBeanImpl rootEntity = null ;
+    private final Map<Object,MBeanImpl> objectMap ;
+    // Objects that are being registered: claimed, but not yet in objectMap.
+    private final Map<Object,MBeanImpl> pendingMap ;
+    private final Map<ObjectName,Object> objectNameMap ;
     private String domain ;
     private ObjectName rootParentName ;
     private String rootParentPrefix ;
-    private String nullParentsParentPath ;
+    private String nullParentsPrefix ;
     private String typeString ; // What string is used for the type of the 
                                 // type name/value pair?
     private ManagedObjectManagerInternal mom ;
     private JMXRegistrationManager jrm ;
-    private boolean suppressReport = false ;
+    private volatile boolean suppressReport = false ;
     
     private void addToObjectMaps( MBeanImpl mbean ) {
         ObjectName oname = mbean.objectName() ;
@@ -59,15 +77,26 @@ public class MBeanTree {
     }
     
     private void removeFromObjectMaps( MBeanImpl mbean ) {
-        ObjectName oname = mbean.objectName() ;
+        removeFromObjectMap( mbean ) ;
+        objectNameMap.remove( mbean.objectName() ) ;
+    }
+
+    private void removeFromObjectMap( MBeanImpl mbean ) {
         for (Object obj : mbean.facets() ) {
             objectMap.remove( obj ) ;
         }
-        
-        objectNameMap.remove( oname ) ;
     }
 
-    public synchronized GmbalMBean setRoot( Object root, String rootName ) {
+    public GmbalMBean setRoot( Object root, String rootName ) {
+        treeLock.writeLock().lock() ;
+        try {
+            return setRootLocked( root, rootName ) ;
+        } finally {
+            treeLock.writeLock().unlock() ;
+        }
+    }
+
+    private GmbalMBean setRootLocked( Object root, String rootName ) {
         // Now register the root MBean.
         MBeanImpl rootMB = mom.constructMBean( null, root, rootName ) ;
 
@@ -116,7 +145,7 @@ public class MBeanTree {
 
         return rootMB ;
     }
-    public synchronized Object getRoot() {
+    public Object getRoot() {
         return root ;
     }
 
@@ -161,28 +190,33 @@ public class MBeanTree {
         this.rootParentName = rootParentName ;
         if (rootParentName == null) {
             rootParentPrefix = null ;
-            nullParentsParentPath =  AMX.PARENT_PATH_KEY + "=/," ;
+            nullParentsPrefix = domain + ":" + AMX.PARENT_PATH_KEY + "=/," ;
         } else {
             rootParentPrefix = parentPath( rootParentName ) ;
-            nullParentsParentPath = AMX.PARENT_PATH_KEY + "="
+            nullParentsPrefix = domain + ":" + AMX.PARENT_PATH_KEY + "="
                 + rootParentPrefix + "," ;
         }
 
         this.typeString = typeString ;
-        objectMap = new HashMap<Object,MBeanImpl>() ;
-        objectNameMap = new HashMap<ObjectName,Object>() ;
+        objectMap = new ConcurrentHashMap<Object,MBeanImpl>() ;
+        pendingMap = new ConcurrentHashMap<Object,MBeanImpl>() ;
+        objectNameMap = new ConcurrentHashMap<ObjectName,Object>() ;
         jrm = new JMXRegistrationManager( mom, rootParentName ) ;
     }
 
-    synchronized void suspendRegistration() {
+    void suspendRegistration() {
         jrm.suspendRegistration();
     }
 
-    synchronized void resumeRegistration() {
+    void resumeRegistration() {
         jrm.resumeRegistration() ;
     }
 
-    public synchronized FacetAccessor getFacetAccessor(Object obj) {
+    RegistrationStatistics getRegistrationStatistics() {
+        return jrm ;
+    }
+
+    public FacetAccessor getFacetAccessor(Object obj) {
         return objectMap.get( obj ) ;
     }
     
@@ -204,19 +238,29 @@ public class MBeanTree {
         // Here we only quote if needed, and save a lot of
         // extra processing for String.equals or regex.
 
+        // Most names need no quoting, so look for the first character
+        // that does before allocating anything.
+        final int len = name.length();
+        int start = 0 ;
+        while (start < len && !needsQuote( name.charAt( start ) )) {
+            start++ ;
+        }
+
+        if (start == len) {
+            return name ;
+        }
+
         // Allow a little extra space for quoting.  buf will re-size
         // if necessary.
-        final StringBuilder buf = new StringBuilder( name.length() + 10 );
+        final StringBuilder buf = new StringBuilder( len + 10 );
         buf.append( '"' ) ;
-        final int len = name.length();
-        boolean needsQuotes = false ;
-        for (int i = 0; i < len; i++) {
+        buf.append( name, 0, start ) ;
+        for (int i = start; i < len; i++) {
             char c = name.charAt(i);
             switch (c) {
                 case '\n':
                     c = 'n';
                     buf.append('\\');
-                    needsQuotes = true ;
                     break;
 
                 case '\\':
@@ -224,29 +268,35 @@ public class MBeanTree {
                 case '*':
                 case '?':
                     buf.append('\\');
-                    needsQuotes = true ;
                     break;
-
-                case ':' :
-                case '=' :
-                case ',' :
-                    needsQuotes = true ;
-                    break ;
             }
             buf.append(c);
         }
 
-        if (needsQuotes) {
-            buf.append('"');
-            return buf.toString();
-        } else {
-            return name ;
+        buf.append('"');
+        return buf.toString();
+    }
+
+    private static boolean needsQuote( char c ) {
+        switch (c) {
+            case '\n':
+            case '\\':
+            case '\"':
+            case '*':
+            case '?':
+            case ':' :
+            case '=' :
+            case ',' :
+                return true ;
+            default:
+                return false ;
         }
     }
 
-    private Map<String,String> typePartMap = new WeakHashMap<String,String>() ;
+    private final Map<String,String> typePartMap =
+        new ConcurrentHashMap<String,String>() ;
 
-    private synchronized String getTypePart( String type ) {
+    private String getTypePart( String type ) {
         String result = typePartMap.get( type ) ;
         if (result == null) {
             StringBuilder sb = new StringBuilder() ;
@@ -265,7 +315,7 @@ public class MBeanTree {
     private void describe( String msg, Object data ) {}
 
     @TraceRegistration
-    public synchronized ObjectName objectName( MBeanImpl parent,
+    public ObjectName objectName( MBeanImpl parent,
         String type, String name ) 
         throws MalformedObjectNameException {
         ObjectName oname = null ;
@@ -274,25 +324,24 @@ public class MBeanTree {
             checkCorrectRoot( parent ) ;
         }
 
-        StringBuilder result = new StringBuilder() ;
-
-        result.append( domain ) ;
-        result.append( ":" ) ;
-
-        // pp
-        String ppPart ;
+        // domain and pp: cached in the parent, so that only the type
+        // and name parts are added for each child.
+        String prefix ;
         if (parent == null) {
-            ppPart = nullParentsParentPath ;
+            prefix = nullParentsPrefix ;
         } else {
-            ppPart = parent.getParentPathPart( rootParentPrefix ) ;
+            prefix = parent.getObjectNamePrefix( domain, rootParentPrefix ) ;
         }
 
-        describe( "ppPart", ppPart ) ;
-        result.append( ppPart ) ;
+        describe( "prefix", prefix ) ;
 
         // type
         String typePart = getTypePart( type ) ;
         describe( "typePart", typePart ) ;
+
+        StringBuilder result = new StringBuilder( prefix.length()
+            + typePart.length() + name.length() + 8 ) ;
+        result.append( prefix ) ;
         result.append( typePart ) ;
 
         // name: this is not a good candidate for caching
@@ -303,6 +352,11 @@ public class MBeanTree {
             result.append( getQuotedName( name ) ) ;
         }
 
+        // The string is still parsed here.  ObjectName has no public way to
+        // build a name from a parsed template of the parent's key properties:
+        // ObjectName(String,Hashtable) would skip the parse, but it orders
+        // the key properties by Hashtable iteration instead of pp,type,name,
+        // which changes getKeyPropertyListString() and the JConsole tree.
         String on = result.toString() ;
         try {
             oname = new ObjectName( on ) ;
@@ -329,40 +383,187 @@ public class MBeanTree {
     }
 
     @TraceRegistration
-    public synchronized GmbalMBean register(
+    public GmbalMBean register(
         final MBeanImpl parentEntity,
         final Object obj, 
         final MBeanImpl mb ) throws InstanceAlreadyExistsException, 
         MBeanRegistrationException, NotCompliantMBeanException, 
         MalformedObjectNameException {
-        
-        MBeanImpl oldMB = objectMap.get( obj ) ;
+
+        treeLock.readLock().lock() ;
+        try {
+            checkParent( parentEntity ) ;
+            addToTree( parentEntity, obj, mb ) ;
+
+            boolean registered = false ;
+            try {
+                jrm.register( mb ) ;
+                registered = true ;
+            } finally {
+                if (registered) {
+                    publish( mb ) ;
+                } else {
+                    removeFromTree( parentEntity, mb ) ;
+                }
+            }
+
+            return mb ;
+        } finally {
+            treeLock.readLock().unlock() ;
+        }
+    }
+
+    /** Add all of mbs to the tree as children of parentEntity, and then
+     * register them with JMX as one batch.  An MBean that cannot be
+     * registered is left out of the tree, and the failure is recorded in
+     * errors under the target of the MBean.
+     */
+    @TraceRegistration
+    public void registerAll( final MBeanImpl parentEntity,
+        final List<MBeanImpl> mbs, final Map<Object,RuntimeException> errors ) {
+
+        treeLock.readLock().lock() ;
+        try {
+            checkParent( parentEntity ) ;
+
+            final List<MBeanImpl> added = new ArrayList<MBeanImpl>(
+                mbs.size() ) ;
+            for (MBeanImpl mb : mbs) {
+                try {
+                    addToTree( parentEntity, mb.target(), mb ) ;
+                    added.add( mb ) ;
+                } catch (JMException exc) {
+                    errors.put( mb.target(),
+                        Exceptions.self.exceptionInRegister( exc ) ) ;
+                } catch (RuntimeException exc) {
+                    errors.put( mb.target(), exc ) ;
+                }
+            }
+
+            final Set<MBeanImpl> failed = Collections.newSetFromMap(
+                new IdentityHashMap<MBeanImpl,Boolean>() ) ;
+            failed.addAll( jrm.registerAll( added, errors ) ) ;
+            for (MBeanImpl mb : added) {
+                if (failed.contains( mb )) {
+                    removeFromTree( parentEntity, mb ) ;
+                } else {
+                    publish( mb ) ;
+                }
+            }
+        } finally {
+            treeLock.readLock().unlock() ;
+        }
+    }
+
+    // The parent may have been unregistered since it was looked up.
+    private void checkParent( final MBeanImpl parentEntity ) {
+        if (objectMap.get( parentEntity.target() ) != parentEntity) {
+            throw Exceptions.self.parentNotFound( parentEntity.target() ) ;
+        }
+    }
+
+    // Claim obj and the ObjectName of mb, and add mb to its parent, so
+    // that an activation of the tree by the root parent finds it.  mb is
+    // not put in objectMap until publish is called after its JMX
+    // registration, so it cannot be found, or used as a parent, before it
+    // is registered or its ObjectName turns out to be taken.  Nothing is
+    // left in the tree if this fails.  Must be called with the read lock
+    // held.
+    private void addToTree( final MBeanImpl parentEntity, final Object obj,
+        final MBeanImpl mb ) throws MalformedObjectNameException {
+
+        // Claim obj before checking objectMap: publish adds to objectMap
+        // before it drops the claim.
+        MBeanImpl oldMB = pendingMap.putIfAbsent( obj, mb ) ;
+        if (oldMB == null) {
+            oldMB = objectMap.get( obj ) ;
+            if (oldMB != null) {
+                pendingMap.remove( obj ) ;
+            }
+        }
+
         if (oldMB != null) {
             throw Exceptions.self.objectAlreadyRegistered(obj, oldMB) ;
         }
 
-        ObjectName oname = objectName( parentEntity, mb.type(),
-            mb.name() ) ;
-        mb.objectName( oname ) ;
+        boolean claimed = false ;
+        boolean added = false ;
+        try {
+            ObjectName oname = objectName( parentEntity, mb.type(),
+                mb.name() ) ;
+            mb.objectName( oname ) ;
+
+            Object oldObj = objectNameMap.putIfAbsent( oname, mb.target() ) ;
+            if (oldObj != null) {
+                throw Exceptions.self.objectAlreadyRegistered( obj,
+                    getClaimed( oldObj ) ) ;
+            }
 
-        Object oldObj = objectNameMap.get( oname ) ;
-        if (oldObj != null) {
-            throw Exceptions.self.objectAlreadyRegistered( obj,
-                objectMap.get( oldObj ) ) ;
+            claimed = true ;
+            parentEntity.addChild( mb ) ;
+            added = true ;
+        } finally {
+            if (!added) {
+                if (claimed) {
+                    objectNameMap.remove( mb.objectName(), mb.target() ) ;
+                }
+
+                pendingMap.remove( obj ) ;
+            }
         }
+    }
 
-        addToObjectMaps( mb ) ;
+    private MBeanImpl getClaimed( final Object obj ) {
+        final MBeanImpl result = objectMap.get( obj ) ;
+        return result == null ? pendingMap.get( obj ) : result ;
+    }
+
+    // Make mb, which addToTree added and JMX registered (or deferred),
+    // visible to lookups and usable as a parent.
+    private void publish( final MBeanImpl mb ) {
+        for (Object obj : mb.facets() ) {
+            objectMap.put( obj, mb ) ;
+        }
 
-        parentEntity.addChild( mb ) ;
+        pendingMap.remove( mb.target() ) ;
+    }
 
-        jrm.register( mb ) ;
+    // Undo addToTree for an MBean that could not be registered.
+    private void removeFromTree( final MBeanImpl parentEntity,
+        final MBeanImpl mb ) {
 
-        return mb ;
+        parentEntity.removeChild( mb ) ;
+        objectNameMap.remove( mb.objectName(), mb.target() ) ;
+        pendingMap.remove( mb.target() ) ;
     }
 
+    /** Unregister obj and all of its children.  The subtree is removed
+     * from the tree under the write lock, but unregistered from JMX after
+     * the lock is released, so that lookups and registrations elsewhere in
+     * the tree do not wait for JMX.
+     */
     @TraceRegistration
-    public synchronized void unregister( Object obj ) 
+    public void unregister( Object obj ) 
         throws InstanceNotFoundException, MBeanRegistrationException {
+
+        final List<MBeanImpl> subtree ;
+        treeLock.writeLock().lock() ;
+        try {
+            subtree = removeSubtree( obj ) ;
+        } finally {
+            treeLock.writeLock().unlock() ;
+        }
+
+        unregisterSubtree( subtree ) ;
+    }
+
+    // Remove the subtree rooted at obj from the object map and from its
+    // parent in one step, and return it, children first.  Lookups never
+    // see part of a removed subtree.  The ObjectNames stay claimed until
+    // unregisterSubtree has unregistered the MBeans from JMX, so that a
+    // new MBean cannot take one of them while the old MBean still holds it.
+    // Must be called with the write lock held.
+    private List<MBeanImpl> removeSubtree( Object obj ) {
         if (obj == root) {
             root = null ;
             rootEntity = null ;
@@ -373,21 +574,62 @@ public class MBeanTree {
             throw Exceptions.self.objectNotFound( obj ) ;
         }
 
+        final List<MBeanImpl> subtree = new ArrayList<MBeanImpl>() ;
+        collectSubtree( mb, subtree ) ;
+
+        for (MBeanImpl elem : subtree) {
+            removeFromObjectMap( elem ) ;
+        }
+
+        if (mb.parent() != null) {
+            mb.parent().removeChild( mb ) ;
+        }
+
+        return subtree ;
+    }
+
+    // Unregister a subtree returned by removeSubtree from JMX, and then
+    // release its ObjectNames.
+    private void unregisterSubtree( List<MBeanImpl> subtree )
+        throws InstanceNotFoundException, MBeanRegistrationException {
+
+        try {
+            jrm.unregisterAll( subtree ) ;
+        } finally {
+            for (MBeanImpl elem : subtree) {
+                objectNameMap.remove( elem.objectName(), elem.target() ) ;
+            }
+        }
+    }
+
+    // Add all MBeans in the subtree rooted at mb to result, children first.
+    private void collectSubtree( MBeanImpl mb, List<MBeanImpl> result ) {
         for (Map<String,MBeanImpl> nameToMBean : mb.children().values() ) {
             for (MBeanImpl child : nameToMBean.values() ) {
-                unregister( child.target()) ;
+                collectSubtree( child, result ) ;
             }
         }
 
-        removeFromObjectMaps( mb ) ;
-        jrm.unregister( mb ) ;
-        
-        if (mb.parent() != null) {
-            mb.parent().removeChild( mb ) ;
+        result.add( mb ) ;
+    }
+
+    /** Forget all MBeans without unregistering them from JMX.  This is
+     * only correct if the MBeanServer is about to be discarded.
+     */
+    void discard() {
+        treeLock.writeLock().lock() ;
+        try {
+            root = null ;
+            rootEntity = null ;
+            objectMap.clear() ;
+            objectNameMap.clear() ;
+            jrm.clear() ;
+        } finally {
+            treeLock.writeLock().unlock() ;
         }
     }
     
-    public synchronized ObjectName getObjectName( Object obj ) {
+    public ObjectName getObjectName( Object obj ) {
         // A user may be looking for the ObjectName of a GmbalMBean that
         // was returned from a register call.  If that is the case,
         // obj should be an instance of MBeanImpl, and we can go directly to
@@ -405,18 +647,43 @@ public class MBeanTree {
         }
     }
     
-    public synchronized Object getObject( ObjectName oname ) {
+    public Object getObject( ObjectName oname ) {
         return objectNameMap.get( oname ) ;
     }
     
-    public synchronized MBeanImpl getMBeanImpl( Object obj ) {
+    public MBeanImpl getMBeanImpl( Object obj ) {
         return objectMap.get( obj ) ;
     }
+
+    /** Return the MBeanImpl registered under oname, or null if there is
+     * none.
+     */
+    MBeanImpl findMBean( ObjectName oname ) {
+        final Object obj = objectNameMap.get( oname ) ;
+        return obj == null ? null : objectMap.get( obj ) ;
+    }
+
+    /** A live view of the ObjectNames of all MBeans in this tree.
+     */
+    Set<ObjectName> objectNames() {
+        return objectNameMap.keySet() ;
+    }
     
-    public synchronized void clear(){
+    public void clear(){
+        treeLock.writeLock().lock() ;
+        try {
+            clearLocked() ;
+        } finally {
+            treeLock.writeLock().unlock() ;
+        }
+    }
+
+    // The JMX phase runs under the write lock here: clear is only used
+    // when the whole tree is being torn down.
+    private void clearLocked() {
         if (root != null) {
             try {
-                unregister(root);
+                unregisterSubtree( removeSubtree( root ) ) ;
             } catch (InstanceNotFoundException ex) {
                 Exceptions.self.shouldNotHappen( ex ) ;
             } catch (MBeanRegistrationException ex) {
@@ -434,7 +701,7 @@ public class MBeanTree {
         return rootParentName ;
     }
 
-    synchronized void setSuppressDuplicateSetRootReport(boolean suppressReport) {
+    void setSuppressDuplicateSetRootReport(boolean suppressReport) {
         this.suppressReport = suppressReport ;
     }
 }
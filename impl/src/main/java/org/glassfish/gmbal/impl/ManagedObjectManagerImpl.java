@@ -10,14 +10,19 @@
  */
 package org.glassfish.gmbal.impl;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
 import java.lang.management.ManagementFactory;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
@@ -25,21 +30,35 @@ import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.management.JMException;
 import javax.management.MBeanAttributeInfo;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
+import javax.management.remote.MBeanServerForwarder;
 
 import org.glassfish.external.amx.AMX;
 import org.glassfish.external.statistics.AverageRangeStatistic;
@@ -62,6 +81,8 @@ import org.glassfish.gmbal.ManagedAttribute;
 import org.glassfish.gmbal.ManagedData;
 import org.glassfish.gmbal.ManagedObject;
 import org.glassfish.gmbal.ManagedObjectManager;
+import org.glassfish.gmbal.RegistrationStatistics;
+import org.glassfish.gmbal.WarmUpReport;
 import org.glassfish.gmbal.impl.trace.TraceRegistration;
 import org.glassfish.gmbal.impl.trace.TraceRegistrationFine;
 import org.glassfish.gmbal.typelib.EvaluatedClassAnalyzer;
@@ -70,9 +91,9 @@ import org.glassfish.gmbal.typelib.EvaluatedDeclaration;
 import org.glassfish.gmbal.typelib.EvaluatedFieldDeclaration;
 import org.glassfish.gmbal.typelib.EvaluatedMethodDeclaration;
 import org.glassfish.gmbal.typelib.EvaluatedType;
+import org.glassfish.gmbal.typelib.LoaderScopedMap;
 import org.glassfish.gmbal.typelib.TypeEvaluator;
 import org.glassfish.pfl.basic.algorithm.Algorithms;
-import org.glassfish.pfl.basic.algorithm.ClassAnalyzer;
 import org.glassfish.pfl.basic.algorithm.DelayedObjectToString;
 import org.glassfish.pfl.basic.algorithm.DumpIgnore;
 import org.glassfish.pfl.basic.algorithm.ObjectUtility;
@@ -114,41 +135,87 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
     } ;
     private static Comparator<String> REV_COMP = new StringComparator() ;
 
+    private static final String ORG_GLASSFISH_GMBAL_DIRECT_DISPATCH =
+        "org.glassfish.gmbal.directDispatch" ;
+
+    // The resource that lists the classes for warmUp( ClassLoader ).
+    private static final String CLASS_INDEX =
+        "META-INF/gmbal/managed-classes" ;
+
+    // Maximum number of attribute changes waiting for delivery.
+    private static final int MAX_PENDING_ATTRIBUTE_CHANGES = 10000 ;
+
     // All finals should be initialized in this order in the private constructor
     @DumpIgnore
     private final String domain ;
+    private final boolean directDispatch ;
     private final MBeanTree tree ;
-    private final Map<EvaluatedClassDeclaration,MBeanSkeleton> skeletonMap ;
-    private final Map<EvaluatedType,TypeConverter> typeConverterMap ;
-    private final Map<AnnotatedElement, Map<Class, Annotation>> addedAnnotations ;
+    // The skeletons and TypeConverters are computed without holding any
+    // lock (see getSkeleton and getTypeConverter).  They are kept by the
+    // ClassLoader of the classes they describe, so that an application's
+    // classes can be unloaded while this ManagedObjectManager is in use.
+    // Both maps are cleared by init().
+    private final LoaderScopedMap<EvaluatedClassDeclaration,
+        FutureTask<MBeanSkeleton>> skeletonMap ;
+    private final LoaderScopedMap<EvaluatedType,TypeConverter>
+        typeConverterMap ;
+    // The TypeConverters that the current thread is building, each mapped
+    // to a placeholder.  Used to detect recursive types.
+    private final ThreadLocal<Map<EvaluatedType,TypeConverter>>
+        typeConvertersInProgress ;
+    // Copied on write by addAnnotation, so that it can be read without
+    // locking.
+    private volatile Map<AnnotatedElement,
+        Map<Class<? extends Annotation>, Annotation>> addedAnnotations ;
+    // The AnnotationIndex of each class, built from addedAnnotations.
+    // Replaced whenever addedAnnotations changes.
+    private volatile ClassValue<AnnotationIndex> annotationIndex ;
     private final MBeanSkeleton amxSkeleton ;
     private final Set<String> amxAttributeNames ;
     private final ObjectRegistrationManager orm ;
+    private final AttributeChangeDispatcher attributeChangeDispatcher ;
 
     // All non-finals should be initialized in this order in the init() method.
-    private boolean rootCreated ;
-    private ResourceBundle resourceBundle ;
-    private MBeanServer server ;
-    private ManagedObjectManager.RegistrationDebugLevel regDebugLevel ;
-    private boolean runDebugFlag ;
-    private boolean jmxRegistrationDebugFlag ;
+    private volatile boolean rootCreated ;
+    private volatile ResourceBundle resourceBundle ;
+    private volatile MBeanServer server ;
+    // Non-null in virtual registration mode.
+    private volatile VirtualMBeanServer virtualServer ;
+    // The debug flags and type name settings are volatile, so that
+    // skeletons can be built without taking the monitor of this object.
+    private volatile ManagedObjectManager.RegistrationDebugLevel regDebugLevel ;
+    private volatile boolean runDebugFlag ;
+    private volatile boolean jmxRegistrationDebugFlag ;
 
     // Maintain the list of typePrefixes in reversed sorted order, so that
-    // we strip the longest prefix first.
-    private final SortedSet<String> typePrefixes = new TreeSet<String>(
+    // we strip the longest prefix first.  Copied on write by stripPrefix.
+    private volatile SortedSet<String> typePrefixes = new TreeSet<String>(
         REV_COMP ) ;
-    private boolean stripPackagePrefix = false ;
+    private volatile boolean stripPackagePrefix = false ;
 
     private ManagedObjectManagerImpl( final String domain,
         final ObjectName rootParentName ) {
 
         this.domain = domain ;
+        this.directDispatch = Boolean.parseBoolean( System.getProperty(
+            ORG_GLASSFISH_GMBAL_DIRECT_DISPATCH ) ) ;
         this.tree = new MBeanTree( this, domain, rootParentName, AMX.TYPE_KEY ) ;
-        this.skeletonMap = 
-            new WeakHashMap<EvaluatedClassDeclaration,MBeanSkeleton>() ;
-        this.typeConverterMap = new WeakHashMap<EvaluatedType,TypeConverter>() ;
-        this.addedAnnotations = 
-            new HashMap<AnnotatedElement, Map<Class, Annotation>>() ;
+        this.skeletonMap = new LoaderScopedMap<EvaluatedClassDeclaration,
+            FutureTask<MBeanSkeleton>>() ;
+        this.typeConverterMap =
+            new LoaderScopedMap<EvaluatedType,TypeConverter>() ;
+        this.typeConvertersInProgress =
+            new ThreadLocal<Map<EvaluatedType,TypeConverter>>() {
+                @Override
+                protected Map<EvaluatedType,TypeConverter> initialValue() {
+                    return new HashMap<EvaluatedType,TypeConverter>() ;
+                }
+            } ;
+        setAddedAnnotations( Collections.<AnnotatedElement,
+            Map<Class<? extends Annotation>,Annotation>>emptyMap() ) ;
+        // Needed by every skeleton, including amxSkeleton.
+        attributeChangeDispatcher = new AttributeChangeDispatcher(
+            MAX_PENDING_ATTRIBUTE_CHANGES ) ;
 
         final EvaluatedClassDeclaration ecd =
             (EvaluatedClassDeclaration)TypeEvaluator.getEvaluatedType(
@@ -296,10 +363,15 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
         runDebugFlag = false ;
         jmxRegistrationDebugFlag = false ;
 
+        // Notifications for MBeans that are about to be unregistered must
+        // not be delivered.
+        attributeChangeDispatcher.clear() ;
         tree.clear() ;
+        virtualServer = null ;
         skeletonMap.clear() ;
         typeConverterMap.clear() ;
-        addedAnnotations.clear() ;
+        setAddedAnnotations( Collections.<AnnotatedElement,
+            Map<Class<? extends Annotation>,Annotation>>emptyMap() ) ;
 
         initializeStatisticsSupport() ;
         TimerAnnotationHelper.registerTimerClasses(this);
@@ -321,24 +393,31 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
         init() ;
     }
 
-    private synchronized void checkRootNotCreated( String methodName ) {
+    @TraceRegistration
+    public void discard() {
+        // Can be called anytime
+        tree.discard() ;
+        init() ;
+    }
+
+    private void checkRootNotCreated( String methodName ) {
         if (rootCreated) {
             throw Exceptions.self.createRootCalled(methodName) ;
         }
     }
 
-    private synchronized void checkRootCreated( String methodName ) {
+    private void checkRootCreated( String methodName ) {
         if (!rootCreated) {
             throw Exceptions.self.createRootNotCalled(methodName) ;
         }
     }
 
-    public synchronized void suspendJMXRegistration() {
+    public void suspendJMXRegistration() {
         // Can be called anytime
         tree.suspendRegistration() ;
     }
 
-    public synchronized void resumeJMXRegistration() {
+    public void resumeJMXRegistration() {
         // Can be called anytime
         tree.resumeRegistration();
     }
@@ -400,7 +479,7 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
         return result ;
     }
 
-    public synchronized Object getRoot() {
+    public Object getRoot() {
         // Can be called anytime.
         return tree.getRoot() ;
     }
@@ -411,71 +490,141 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
     @InfoMethod
     private void describe( String msg, Object data ) {}
 
+    private MBeanSkeleton makeSkeleton( EvaluatedClassDeclaration cls ) {
+        Pair<EvaluatedClassDeclaration,EvaluatedClassAnalyzer> pair = 
+            getClassAnalyzer( cls, ManagedObject.class ) ;
+        EvaluatedClassAnalyzer ca = pair.second() ;
+
+        EvaluatedClassDeclaration annotatedClass = pair.first() ;
+        describe( "Annotated class for skeleton", annotatedClass ) ;
+        if (annotatedClass == null) {
+            throw Exceptions.self.managedObjectAnnotationNotFound(
+                cls.name() ) ;
+        }
+
+        MBeanSkeleton skel = new MBeanSkeleton( cls, ca, this,
+            attributeChangeDispatcher ) ;
+
+        if (amxSkeleton == null) {
+            // Can't compose amxSkeleton with itself!
+            return skel ;
+        } else {
+            return amxSkeleton.compose( skel ) ;
+        }
+    }
+
+    // The first thread to ask for the skeleton of a class computes it,
+    // without holding any lock, so that different classes are analyzed
+    // concurrently.  Other threads asking for the same class wait for that
+    // computation; threads asking for an existing skeleton only look it up.
+    // A failed computation is not cached, so that the next call tries again.
+    //
+    // A thread that holds the monitor of this object (for example in
+    // createRoot) never waits for another thread's computation, which may
+    // need that monitor.  It computes its own copy of the skeleton instead.
     @TraceRegistration
-    private synchronized MBeanSkeleton getSkeleton( EvaluatedClassDeclaration cls ) {
+    private MBeanSkeleton getSkeleton( final EvaluatedClassDeclaration cls ) {
         // can be called anytime, otherwise we can't create the root itself!
-            MBeanSkeleton result = skeletonMap.get( cls ) ;
-
-            boolean newSkeleton = result == null ;
-            if (newSkeleton) {
-                message( "Skeleton not found" ) ;
-                
-                Pair<EvaluatedClassDeclaration,EvaluatedClassAnalyzer> pair = 
-                    getClassAnalyzer( cls, ManagedObject.class ) ;
-                EvaluatedClassAnalyzer ca = pair.second() ;
-
-                EvaluatedClassDeclaration annotatedClass = pair.first() ;
-                describe( "Annotated class for skeleton", annotatedClass ) ;
-                if (annotatedClass == null) {
-                    throw Exceptions.self.managedObjectAnnotationNotFound(
-                        cls.name() ) ;
-                }
+        final Class<?> owner = LoaderScopedMap.owner( cls ) ;
+        FutureTask<MBeanSkeleton> task = skeletonMap.get( owner, cls ) ;
+        boolean newSkeleton = false ;
+        if (task == null) {
+            final FutureTask<MBeanSkeleton> newTask =
+                new FutureTask<MBeanSkeleton>(
+                    new Callable<MBeanSkeleton>() {
+                        public MBeanSkeleton call() {
+                            return makeSkeleton( cls ) ;
+                        }
+                    } ) ;
+            task = skeletonMap.putIfAbsent( owner, cls, newTask ) ;
+            newSkeleton = task == newTask ;
+        }
 
-                MBeanSkeleton skel = new MBeanSkeleton( cls, ca, this ) ;
+        if (newSkeleton) {
+            message( "Skeleton not found" ) ;
+            task.run() ;
+        } else if (!task.isDone() && Thread.holdsLock( this )) {
+            message( "Skeleton in progress on another thread" ) ;
+            return makeSkeleton( cls ) ;
+        }
 
-                if (amxSkeleton == null) {
-                    // Can't compose amxSkeleton with itself!
-                    result = skel ;
-                } else {
-                    result = amxSkeleton.compose( skel ) ;
-                }
+        MBeanSkeleton result = null ;
+        boolean interrupted = false ;
+        try {
+            while (true) {
+                try {
+                    result = task.get() ;
+                    break ;
+                } catch (InterruptedException ex) {
+                    interrupted = true ;
+                } catch (ExecutionException ex) {
+                    if (newSkeleton) {
+                        skeletonMap.remove( owner, cls, task ) ;
+                    }
 
-                skeletonMap.put( cls, result ) ;
+                    final Throwable cause = ex.getCause() ;
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException)cause ;
+                    }
+                    throw (Error)cause ;
+                }
             }
-
-            if (newSkeleton) {
-                describe( "Skeleton",
-                    new DelayedObjectToString( result, myObjectUtil ) ) ;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt() ;
             }
-            
-            return result ;
+        }
+
+        if (newSkeleton) {
+            describe( "Skeleton",
+                new DelayedObjectToString( result, myObjectUtil ) ) ;
+        }
+
+        return result ;
     }
 
+    // Like skeletons, TypeConverters are built without holding any lock.
+    // Two threads may race to build the same TypeConverter, in which case
+    // the first one to finish is kept.
     @TraceRegistrationFine
-    public synchronized TypeConverter getTypeConverter( EvaluatedType type ) {
+    public TypeConverter getTypeConverter( EvaluatedType type ) {
         // Can be called anytime
         
         TypeConverter result = null;
         
         boolean newTypeConverter = false ;
-        result = typeConverterMap.get( type ) ;
+        final Class<?> owner = LoaderScopedMap.owner( type ) ;
+        result = typeConverterMap.get( owner, type ) ;
+        if (result == null) {
+            final Map<EvaluatedType,TypeConverter> inProgress =
+                typeConvertersInProgress.get() ;
+            result = inProgress.get( type ) ;
+        }
+
         if (result == null) {
             message( "Creating new TypeConverter" ) ;
 
             // Store a TypeConverter impl that throws an exception when
             // acessed.  Used to detect recursive types.
-            typeConverterMap.put( type,
+            final Map<EvaluatedType,TypeConverter> inProgress =
+                typeConvertersInProgress.get() ;
+            inProgress.put( type,
                 new TypeConverterImpl.TypeConverterPlaceHolderImpl( type ) ) ;
+            try {
+                result = TypeConverterImpl.makeTypeConverter( type, this ) ;
+            } finally {
+                inProgress.remove( type ) ;
+            }
 
-            result = TypeConverterImpl.makeTypeConverter( type, this ) ;
-
-            // Replace recursion marker with the constructed implementation
-            typeConverterMap.put( type, result ) ;
-            newTypeConverter = true ;
+            final TypeConverter current = typeConverterMap.putIfAbsent(
+                owner, type, result ) ;
+            newTypeConverter = current == result ;
+            result = current ;
         }
 
         if (newTypeConverter) {
-            describe( "result", myObjectUtil.objectToString( result ) ) ;
+            describe( "result",
+                new DelayedObjectToString( result, myObjectUtil ) ) ;
         }
         
         return result ;
@@ -536,7 +685,7 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
     }
 
     // XXX Needs Test for the AMX_TYPE case
-    public synchronized String getTypeName( Class<?> cls, String fieldName,
+    public String getTypeName( Class<?> cls, String fieldName,
         String nameFromAnnotation ) {
         // Can be called anytime
         String result = getAMXTypeFromField( cls, fieldName ) ;
@@ -572,7 +721,7 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
         }
     }
 
-    public synchronized boolean isManagedObject( Object obj ) {
+    public boolean isManagedObject( Object obj ) {
         final EvaluatedClassDeclaration cdecl =
             (EvaluatedClassDeclaration)TypeEvaluator.getEvaluatedType(
                 obj.getClass() ) ;
@@ -583,7 +732,7 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
     }
 
     @TraceRegistration
-    public synchronized MBeanImpl constructMBean( MBeanImpl parentEntity,
+    public MBeanImpl constructMBean( MBeanImpl parentEntity,
         Object obj, String name ) {
 
         // Can be called anytime
@@ -637,7 +786,7 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
     
     @SuppressWarnings("unchecked")
     @TraceRegistration
-    public synchronized GmbalMBean register( final Object parent,
+    public GmbalMBean register( final Object parent,
         final Object obj, final String name ) {
 
         checkRootCreated("register");
@@ -657,23 +806,52 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
         }
     }
     
-    public synchronized GmbalMBean register( final Object parent,
+    public GmbalMBean register( final Object parent,
         final Object obj ) {
 
         return register( parent, obj, null ) ;
     }
 
     
-    public synchronized GmbalMBean registerAtRoot(Object obj, String name) {
+    public GmbalMBean registerAtRoot(Object obj, String name) {
         return register( tree.getRoot(), obj, name ) ;
     }
 
-    public synchronized GmbalMBean registerAtRoot(Object obj) {
+    public GmbalMBean registerAtRoot(Object obj) {
         return register( tree.getRoot(), obj, null ) ;
     }
 
     @TraceRegistration
-    public synchronized void unregister( Object obj ) {
+    public Map<Object,RuntimeException> registerAll( final Object parent,
+        final Collection<?> objs ) {
+
+        checkRootCreated("registerAll");
+
+        final Map<Object,RuntimeException> errors =
+            new IdentityHashMap<Object,RuntimeException>() ;
+        final MBeanImpl parentEntity = tree.getParentEntity(parent) ;
+        final List<MBeanImpl> mbs = new ArrayList<MBeanImpl>( objs.size() ) ;
+
+        for (Object obj : objs) {
+            try {
+                if (obj instanceof String) {
+                    throw Exceptions.self.objStringWrongRegisterCall(
+                        (String)obj ) ;
+                }
+
+                mbs.add( constructMBean( parentEntity, obj, null ) ) ;
+            } catch (RuntimeException exc) {
+                errors.put( obj, exc ) ;
+            }
+        }
+
+        tree.registerAll( parentEntity, mbs, errors ) ;
+
+        return errors ;
+    }
+
+    @TraceRegistration
+    public void unregister( Object obj ) {
         checkRootCreated("unregister");
 
         try {
@@ -684,7 +862,7 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
     }
 
     @TraceRegistration
-    public synchronized ObjectName getObjectName( Object obj ) {
+    public ObjectName getObjectName( Object obj ) {
         checkRootCreated("getObjectName");
 
         if (obj instanceof ObjectName) {
@@ -710,7 +888,7 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
     }
 
     @TraceRegistration
-    public synchronized Object getObject( ObjectName oname ) {
+    public Object getObject( ObjectName oname ) {
         checkRootCreated("getObject");
         
         Object result = tree.getObject( oname ) ;
@@ -718,7 +896,7 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
         return result ;
     }
     
-    public synchronized FacetAccessor getFacetAccessor( Object obj ) {
+    public FacetAccessor getFacetAccessor( Object obj ) {
         // Can be called anytime
         MBeanImpl mb = tree.getMBeanImpl( obj ) ;
         if (mb != null) {
@@ -736,13 +914,244 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
     public synchronized void setMBeanServer( MBeanServer server ) {
         checkRootNotCreated("setMBeanServer");
 	this.server = server ;
+        if (virtualServer != null) {
+            virtualServer.setMBeanServer( server ) ;
+        }
     }
 
     public synchronized MBeanServer getMBeanServer() {
         // Can be called anytime
+        if (virtualServer != null) {
+            return virtualServer ;
+        }
+
 	return server ;
     }
 
+    public synchronized MBeanServerForwarder enableVirtualRegistration() {
+        checkRootNotCreated("enableVirtualRegistration");
+        if (virtualServer == null) {
+            virtualServer = new VirtualMBeanServer( tree, domain, server ) ;
+        }
+
+        return virtualServer ;
+    }
+
+    public RegistrationStatistics getRegistrationStatistics() {
+        // can be called anytime
+        return tree.getRegistrationStatistics() ;
+    }
+
+    private static final class WarmUpReportImpl implements WarmUpReport {
+        private final Map<String,Long> times ;
+        private final Map<String,RuntimeException> errors ;
+        private final long totalTime ;
+
+        WarmUpReportImpl( final Map<String,Long> times,
+            final Map<String,RuntimeException> errors, final long totalTime ) {
+
+            this.times = Collections.unmodifiableMap( times ) ;
+            this.errors = Collections.unmodifiableMap( errors ) ;
+            this.totalTime = totalTime ;
+        }
+
+        public Map<String,Long> getTimes() {
+            return times ;
+        }
+
+        public Map<String,RuntimeException> getErrors() {
+            return errors ;
+        }
+
+        public long getTotalTime() {
+            return totalTime ;
+        }
+
+        @Override
+        public String toString() {
+            return "WarmUpReport[classes=" + times.size() + " errors="
+                + errors.size() + " totalTime=" + totalTime + "ns]" ;
+        }
+    }
+
+    // The largest number of classes warmed up at once.
+    private static final int WARM_UP_THREADS = Math.max( 1, Integer.getInteger(
+        "org.glassfish.gmbal.warmUpThreads",
+        Math.min( 8, Runtime.getRuntime().availableProcessors() ) ) ) ;
+    private static final long WARM_UP_IDLE_SECONDS = 30 ;
+
+    // Shared by all ManagedObjectManagers.  Its threads exit when idle.
+    // warmUp tasks block while waiting for a skeleton that another task is
+    // building, so they do not run in the common ForkJoinPool.
+    private static ExecutorService warmUpPool = null ;
+
+    private static synchronized ExecutorService getWarmUpPool() {
+        if (warmUpPool == null) {
+            final ThreadPoolExecutor result = new ThreadPoolExecutor(
+                WARM_UP_THREADS, WARM_UP_THREADS,
+                WARM_UP_IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    public Thread newThread( Runnable task ) {
+                        final Thread thread = new Thread( task,
+                            "gmbal-warmup" ) ;
+                        thread.setDaemon( true ) ;
+                        return thread ;
+                    }
+                } ) ;
+            result.allowCoreThreadTimeOut( true ) ;
+            warmUpPool = result ;
+        }
+
+        return warmUpPool ;
+    }
+
+    // Build everything that the first registration of an instance of cls
+    // would build.  Skeletons are only built for @ManagedObject classes,
+    // as in constructMBean; the TypeConverter of a @ManagedObject class
+    // is used for attributes that refer to it.
+    private void warmUp( final Class<?> cls ) {
+        final EvaluatedType type = TypeEvaluator.getEvaluatedType( cls ) ;
+        if (type instanceof EvaluatedClassDeclaration) {
+            final EvaluatedClassDeclaration cdecl =
+                (EvaluatedClassDeclaration)type ;
+            if (getFirstAnnotationOnClass( cdecl, ManagedObject.class )
+                != null) {
+
+                getSkeleton( cdecl ) ;
+            }
+        }
+
+        getTypeConverter( type ) ;
+    }
+
+    // Each class is a separate task.  The skeletons and TypeConverters of
+    // different classes are built concurrently, without holding the
+    // monitor of this ManagedObjectManager; a task that needs a skeleton
+    // that another task is building waits for it (see getSkeleton and
+    // getTypeConverter).  The tasks run in the warm up pool; a task only
+    // waits for a skeleton that a running task is building, so the pool
+    // cannot run out of threads.
+    private WarmUpReport warmUp( final Collection<Class<?>> classes,
+        final Map<String,RuntimeException> errors ) {
+
+        final long start = System.nanoTime() ;
+        final Map<String,Long> times = new ConcurrentHashMap<String,Long>() ;
+        final List<Future<?>> tasks = new ArrayList<Future<?>>() ;
+        for (final Class<?> cls : new LinkedHashSet<Class<?>>( classes )) {
+            tasks.add( getWarmUpPool().submit( new Runnable() {
+                public void run() {
+                    final long clsStart = System.nanoTime() ;
+                    try {
+                        warmUp( cls ) ;
+                        times.put( cls.getName(),
+                            System.nanoTime() - clsStart ) ;
+                    } catch (RuntimeException exc) {
+                        errors.put( cls.getName(), exc ) ;
+                    } catch (LinkageError err) {
+                        // Typically a class that cls refers to is missing.
+                        errors.put( cls.getName(),
+                            Exceptions.self.cannotWarmUpClass( err,
+                                cls.getName() ) ) ;
+                    }
+                }
+            } ) ) ;
+        }
+
+        boolean interrupted = false ;
+        for (Future<?> task : tasks) {
+            while (true) {
+                try {
+                    task.get() ;
+                    break ;
+                } catch (InterruptedException exc) {
+                    interrupted = true ;
+                } catch (ExecutionException exc) {
+                    final Throwable cause = exc.getCause() ;
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException)cause ;
+                    }
+                    throw (Error)cause ;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt() ;
+        }
+
+        return new WarmUpReportImpl( times, errors,
+            System.nanoTime() - start ) ;
+    }
+
+    public WarmUpReport warmUp( final Collection<Class<?>> classes ) {
+        // can be called anytime
+        return warmUp( classes,
+            new ConcurrentHashMap<String,RuntimeException>() ) ;
+    }
+
+    public WarmUpReport warmUp( final ClassLoader loader ) {
+        // can be called anytime
+        final Map<String,RuntimeException> errors =
+            new ConcurrentHashMap<String,RuntimeException>() ;
+        final Set<Class<?>> classes = new LinkedHashSet<Class<?>>() ;
+
+        final Enumeration<URL> urls ;
+        try {
+            urls = loader.getResources( CLASS_INDEX ) ;
+        } catch (IOException exc) {
+            throw Exceptions.self.cannotReadClassIndex( exc, CLASS_INDEX ) ;
+        }
+
+        while (urls.hasMoreElements()) {
+            final URL url = urls.nextElement() ;
+            for (String name : readClassIndex( url )) {
+                try {
+                    classes.add( Class.forName( name, false, loader ) ) ;
+                } catch (ClassNotFoundException exc) {
+                    errors.put( name,
+                        Exceptions.self.cannotLoadIndexedClass( exc, name,
+                            url ) ) ;
+                } catch (LinkageError err) {
+                    errors.put( name,
+                        Exceptions.self.cannotLoadIndexedClass( err, name,
+                            url ) ) ;
+                }
+            }
+        }
+
+        return warmUp( classes, errors ) ;
+    }
+
+    private static List<String> readClassIndex( final URL url ) {
+        final List<String> result = new ArrayList<String>() ;
+        try {
+            final BufferedReader reader = new BufferedReader(
+                new InputStreamReader( url.openStream(),
+                    StandardCharsets.UTF_8 ) ) ;
+            try {
+                String line ;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim() ;
+                    if (line.length() > 0 && !line.startsWith( "#" )) {
+                        result.add( line ) ;
+                    }
+                }
+            } finally {
+                reader.close() ;
+            }
+        } catch (IOException exc) {
+            throw Exceptions.self.cannotReadClassIndex( exc, url.toString() ) ;
+        }
+
+        return result ;
+    }
+
+    public boolean virtualRegistration() {
+        // can be called anytime
+        return virtualServer != null ;
+    }
+
     public synchronized void setResourceBundle( ResourceBundle rb ) {
         checkRootNotCreated("setResourceBundle");
         this.resourceBundle = rb ;
@@ -753,7 +1162,7 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
         return resourceBundle ;
     }
     
-    public synchronized String getDescription( EvaluatedDeclaration element ) {
+    public String getDescription( EvaluatedDeclaration element ) {
         // Can be called anytime
         Description desc ;
         if (element instanceof EvaluatedClassDeclaration) {
@@ -788,15 +1197,18 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
             throw Exceptions.self.cannotAddNullAnnotation( element ) ;
         }
 
-        Map<Class, Annotation> map = addedAnnotations.get( element ) ;
+        Map<Class<? extends Annotation>, Annotation> map =
+            addedAnnotations.get( element ) ;
         if (map == null) {
             message( "Creating new Map<Class,Annotation>" ) ;
 
-            map = new HashMap<Class, Annotation>() ;
-            addedAnnotations.put( element, map ) ;
+            map = new HashMap<Class<? extends Annotation>, Annotation>() ;
+        } else {
+            map = new HashMap<Class<? extends Annotation>, Annotation>( map ) ;
         }
 
-        Class<?> annotationType = annotation.annotationType() ;
+        Class<? extends Annotation> annotationType =
+            annotation.annotationType() ;
         Annotation ann = map.get( annotationType ) ;
         if (ann != null) {
             message( "Duplicate annotation") ;
@@ -806,6 +1218,28 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
         }
 
         map.put( annotationType, annotation ) ;
+
+        final Map<AnnotatedElement,
+            Map<Class<? extends Annotation>, Annotation>> added =
+                new HashMap<AnnotatedElement,
+                    Map<Class<? extends Annotation>, Annotation>>(
+                        addedAnnotations ) ;
+        added.put( element, Collections.unmodifiableMap( map ) ) ;
+        setAddedAnnotations( Collections.unmodifiableMap( added ) ) ;
+    }
+
+    // Replace addedAnnotations, and discard all AnnotationIndexes, which
+    // may include the old added annotations.
+    private void setAddedAnnotations( final Map<AnnotatedElement,
+        Map<Class<? extends Annotation>, Annotation>> added ) {
+
+        addedAnnotations = added ;
+        annotationIndex = new ClassValue<AnnotationIndex>() {
+            @Override
+            protected AnnotationIndex computeValue( Class<?> cls ) {
+                return AnnotationIndex.make( cls, added ) ;
+            }
+        } ;
     }
 
     @TraceRegistration
@@ -815,76 +1249,31 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
         // XXX Implement me!
     }
 
+    // The index of a class already contains the annotations of all of its
+    // superclasses, and the class itself is the first class in its own
+    // inheritance, so no search of the inheritance is needed here.
     public <T extends Annotation> T getFirstAnnotationOnClass(
         final EvaluatedClassDeclaration element, final Class<T> type ) {
 
-        EvaluatedClassAnalyzer eca = new EvaluatedClassAnalyzer( element ) ;
-        List<EvaluatedClassDeclaration> ecds = eca.findClasses(
-            forAnnotation(type, EvaluatedClassDeclaration.class) ) ;
-
-        if (ecds.size() > 0) {
-            return getAnnotation( ecds.get(0).element(), type ) ;
-        }  else {
-            return null ;
-        }
-    }
-
-    private Map<AnnotatedElement,Map<Class,Annotation>> annotationCache =
-        new WeakHashMap<AnnotatedElement,Map<Class,Annotation>>() ;
-
-    private Map<Class,Annotation> getAllAnnotations( final Class cls ) {
-        Map<Class,Annotation> result = annotationCache.get( cls ) ;
-
-        if (result == null) {
-            final Map<Class,Annotation> res =
-                new HashMap<Class,Annotation>() ;
-
-            ClassAnalyzer ca = ClassAnalyzer.getClassAnalyzer(cls) ;
-            ca.findClasses( new UnaryPredicate<Class<?>>() {
-                public boolean evaluate(Class arg) {
-                    // First, put in declared annotations if not already present.
-                    Annotation[] annots = arg.getDeclaredAnnotations() ;
-                    for (Annotation anno : annots) {
-                        putIfNotPresent( res, anno.annotationType(), anno ) ;
-                    }
-
-                    // Then, put in added annotations if not already present.
-                    Map<Class,Annotation> emap = addedAnnotations.get( arg ) ;
-                    if (emap != null) {
-                        for (Map.Entry<Class,Annotation> entry : emap.entrySet()) {
-                            putIfNotPresent( res, entry.getKey(),
-                                entry.getValue()) ;
-                        }
-                    }
-
-                    return true ; // evaluate everything
-                }
-            }) ;
-
-            annotationCache.put( cls, res ) ;
-            result = res ;
-        }
-
-        return result ;
+        return getAnnotation( element.element(), type ) ;
     }
 
     @SuppressWarnings({"unchecked"})
     @TraceRegistrationFine
-    public synchronized <T extends Annotation> T getAnnotation( 
+    public <T extends Annotation> T getAnnotation( 
         AnnotatedElement element, Class<T> type ) {
 
         // Can be called anytime
         if (element instanceof Class) {
             Class cls = (Class)element ;
-            Map<Class,Annotation> annos = getAllAnnotations(cls) ;
-            return (T)annos.get( type ) ;
+            return annotationIndex.get( cls ).get( type ) ;
         } else {
             T result = element.getAnnotation( type ) ;
             if (result == null) {
                 message( "No annotation on element: trying addedAnnotations map" ) ;
 
-                Map<Class, Annotation> map = addedAnnotations.get(
-                    element );
+                Map<Class<? extends Annotation>, Annotation> map =
+                    addedAnnotations.get( element );
                 if (map != null) {
                     result = (T)map.get( type ) ;
                 }
@@ -895,14 +1284,14 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
     }
 
     @TraceRegistrationFine
-    public synchronized Collection<Annotation> getAnnotations(
+    public Collection<Annotation> getAnnotations(
         AnnotatedElement elem ) {
 
         // Can be called anytime
         if (elem instanceof Class) {
             Class cls = (Class)elem ;
 
-            return getAllAnnotations( cls ).values() ;
+            return annotationIndex.get( cls ).annotations() ;
         } else if (elem instanceof Method) {
             return Arrays.asList( elem.getAnnotations() ) ;
         } else if (elem instanceof Field) {
@@ -914,7 +1303,7 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
     }
 
     @TraceRegistration
-    public synchronized Pair<EvaluatedClassDeclaration,EvaluatedClassAnalyzer>
+    public Pair<EvaluatedClassDeclaration,EvaluatedClassAnalyzer>
         getClassAnalyzer( final EvaluatedClassDeclaration cls,
         final Class<? extends Annotation> annotationClass ) {
         // Can be called anytime
@@ -948,14 +1337,50 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
             }
         }
 
-        EvaluatedClassAnalyzer ca = new EvaluatedClassAnalyzer( classes ) ;
+        // Without included subclasses, classes only contains cls.  Generated
+        // metadata lists the annotated members of cls, but it cannot know
+        // about annotations added with addAnnotation.
+        EvaluatedClassAnalyzer ca ;
+        if (classes.size() > 1) {
+            ca = new EvaluatedClassAnalyzer( classes ) ;
+        } else if (!hasAddedAnnotations( clsca )) {
+            ca = GeneratedMetadata.restrict( cls, clsca ) ;
+        } else {
+            ca = clsca ;
+        }
 
         return new Pair<EvaluatedClassDeclaration,
              EvaluatedClassAnalyzer>( annotatedClass, ca ) ;
     }
 
+    // True if addAnnotation was called for one of the classes analyzed by
+    // ca, or for one of their members.
+    private boolean hasAddedAnnotations( final EvaluatedClassAnalyzer ca ) {
+        final Map<AnnotatedElement,
+            Map<Class<? extends Annotation>, Annotation>> added =
+                addedAnnotations ;
+        if (added.isEmpty()) {
+            return false ;
+        }
+
+        final Set<Class<?>> classes = new HashSet<Class<?>>() ;
+        for (AnnotatedElement elem : added.keySet()) {
+            if (elem instanceof Class) {
+                classes.add( (Class<?>)elem ) ;
+            } else if (elem instanceof Member) {
+                classes.add( ((Member)elem).getDeclaringClass() ) ;
+            }
+        }
+
+        return !ca.findClasses( new UnaryPredicate<EvaluatedClassDeclaration>() {
+            public boolean evaluate( EvaluatedClassDeclaration decl ) {
+                return classes.contains( decl.cls() ) ;
+            }
+        } ).isEmpty() ;
+    }
+
     @TraceRegistration
-    public synchronized List<InheritedAttribute> getInheritedAttributes( 
+    public List<InheritedAttribute> getInheritedAttributes( 
         final EvaluatedClassAnalyzer ca ) {
         // Can be called anytime
         
@@ -1037,7 +1462,7 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
     }
 
     @TraceRegistrationFine
-    public synchronized <K,V> void putIfNotPresent( final Map<K,V> map,
+    public <K,V> void putIfNotPresent( final Map<K,V> map,
         final K key, final V value ) {
         // Can be called anytime
         if (!map.containsKey( key )) {
@@ -1058,7 +1483,7 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
 
     // Returns a pair of maps defining all managed attributes in the ca.  The first map
     // is all setters, and the second is all getters.  Only the most derived version is present.
-    public synchronized Pair<Map<String,AttributeDescriptor>,
+    public Pair<Map<String,AttributeDescriptor>,
         Map<String,AttributeDescriptor>>
         getAttributes( 
             final EvaluatedClassAnalyzer ca,
@@ -1182,34 +1607,42 @@ public class ManagedObjectManagerImpl implements ManagedObjectManagerInternal {
         }
     }
     
-    public synchronized boolean registrationDebug() {
+    public boolean registrationDebug() {
         // can be called anytime
         return regDebugLevel == ManagedObjectManager.RegistrationDebugLevel.NORMAL 
             || regDebugLevel == ManagedObjectManager.RegistrationDebugLevel.FINE ;
     }
     
-    public synchronized boolean registrationFineDebug() {
+    public boolean registrationFineDebug() {
         // can be called anytime
         return regDebugLevel == ManagedObjectManager.RegistrationDebugLevel.FINE ;
     }
     
-    public synchronized boolean runtimeDebug() {
+    public boolean runtimeDebug() {
         // can be called anytime
         return runDebugFlag ;
     }
 
-    public synchronized boolean jmxRegistrationDebug() {
+    public boolean directDispatch() {
+        // can be called anytime
+        return directDispatch ;
+    }
+
+    public boolean jmxRegistrationDebug() {
         return jmxRegistrationDebugFlag ;
     }
     
     public synchronized void stripPrefix( String... args ) {
         checkRootNotCreated("stripPrefix" ) ;
+        final SortedSet<String> prefixes = new TreeSet<String>( REV_COMP ) ;
+        prefixes.addAll( typePrefixes ) ;
         for (String str : args) {
-            typePrefixes.add( str ) ;
+            prefixes.add( str ) ;
         }
+        typePrefixes = prefixes ;
     }
     
-    public synchronized <T extends EvaluatedDeclaration> UnaryPredicate<T> forAnnotation(
+    public <T extends EvaluatedDeclaration> UnaryPredicate<T> forAnnotation(
         final Class<? extends Annotation> annotation,
         final Class<T> cls ) {
         // Can be called anytime
@@ -121,6 +121,18 @@ public interface ManagedObjectManagerInternal extends ManagedObjectManager {
 
     boolean runtimeDebug() ;
 
+    /** Returns true if MBeanSkeletons should precompile their getters,
+     * setters and operations into a SkeletonDispatcher.  This is controlled by the
+     * org.glassfish.gmbal.directDispatch system property.
+     */
+    boolean directDispatch() ;
+
+    /** Returns true if MBeans are only visible through the forwarder from
+     * enableVirtualRegistration, and are never registered with the
+     * MBeanServer.
+     */
+    boolean virtualRegistration() ;
+
     AMXMetadata getDefaultAMXMetadata() ;
 
     <T extends Annotation> T getFirstAnnotationOnClass(
@@ -0,0 +1,391 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.impl ;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import javax.management.MBeanException;
+
+/** A precompiled dispatcher for one MBeanSkeleton.  This takes the place of
+ * a generated DynamicMBean class: each getter, setter and operation is
+ * compiled into a single MethodHandle that calls the facet directly and
+ * converts the arguments and the result between their managed and Java
+ * forms.  The names are held in immutable open addressed tables.
+ * getAttribute, setAttribute and invoke then need neither a HashMap lookup,
+ * nor a FacetAccessor, nor any of the runtime tracing in MBeanSkeleton.
+ * <p>
+ * Anything that could not be compiled is simply absent from the tables, and
+ * is handled by the MBeanSkeleton as before.  This includes cached
+ * attributes, setters of cached attributes, and overloaded operations.
+ * Calls that need an AttributeChangeNotification are also left to the
+ * MBeanSkeleton (see MBeanImpl.setAttribute).
+ */
+final class SkeletonDispatcher {
+    /** Returned by getAttribute and invoke if the call must go through
+     * MBeanSkeleton.
+     */
+    static final Object UNHANDLED = new Object() ;
+
+    private static final Object[] NO_PARAMS = new Object[0] ;
+
+    private static final MethodHandle TO_MANAGED_ENTITY ;
+    private static final MethodHandle FROM_MANAGED_ENTITY ;
+
+    private static final MethodType OPERATION_TYPE =
+        MethodType.methodType( Object.class, Object.class, Object[].class ) ;
+
+    static {
+        try {
+            final MethodType conversion =
+                MethodType.methodType( Object.class, Object.class ) ;
+            TO_MANAGED_ENTITY = MethodHandles.lookup().findVirtual(
+                TypeConverter.class, "toManagedEntity", conversion ) ;
+            FROM_MANAGED_ENTITY = MethodHandles.lookup().findVirtual(
+                TypeConverter.class, "fromManagedEntity", conversion ) ;
+        } catch (ReflectiveOperationException exc) {
+            throw new ExceptionInInitializerError( exc ) ;
+        }
+    }
+
+    /** An immutable open addressed table from names to compiled handles.
+     */
+    private static final class Table {
+        private final String[] names ;
+        private final MethodHandle[] handles ;
+        private final int[] facetIndexes ;
+        // Only used for operations: the signature of each operation.
+        private final String[][] signatures ;
+        private final int mask ;
+        private int size = 0 ;
+
+        Table( int count ) {
+            // Keep the load factor at or below 1/2, so probe sequences are
+            // short.
+            int length = 2 ;
+            while (length < 2 * count) {
+                length <<= 1 ;
+            }
+
+            names = new String[length] ;
+            handles = new MethodHandle[length] ;
+            facetIndexes = new int[length] ;
+            signatures = new String[length][] ;
+            mask = length - 1 ;
+        }
+
+        private static int hash( String name ) {
+            final int h = name.hashCode() ;
+            return h ^ (h >>> 16) ;
+        }
+
+        void put( String name, MethodHandle mh, int facetIndex,
+            String[] signature ) {
+
+            int pos = hash( name ) & mask ;
+            while (names[pos] != null) {
+                pos = (pos + 1) & mask ;
+            }
+
+            names[pos] = name ;
+            handles[pos] = mh ;
+            facetIndexes[pos] = facetIndex ;
+            signatures[pos] = signature ;
+            size++ ;
+        }
+
+        int find( String name ) {
+            if (name == null) {
+                return -1 ;
+            }
+
+            int pos = hash( name ) & mask ;
+            String key ;
+            while ((key = names[pos]) != null) {
+                if (key == name || key.equals( name )) {
+                    return pos ;
+                }
+
+                pos = (pos + 1) & mask ;
+            }
+
+            return -1 ;
+        }
+
+        boolean isEmpty() {
+            return size == 0 ;
+        }
+    }
+
+    private final Table getters ;
+    private final Table setters ;
+    private final Table operations ;
+
+    private SkeletonDispatcher( Table getters, Table setters,
+        Table operations ) {
+
+        this.getters = getters ;
+        this.setters = setters ;
+        this.operations = operations ;
+    }
+
+    /** Create a dispatcher for the compilable members of an MBeanSkeleton.
+     * @param getters The getter Accessors of the skeleton, keyed by
+     * attribute name.
+     * @param setters The setter Accessors of the skeleton, keyed by
+     * attribute name.
+     * @param operations The operation table of the skeleton, keyed by
+     * operation name.
+     * @return The dispatcher, or null if nothing could be compiled.
+     */
+    static SkeletonDispatcher make(
+        Map<String,MBeanSkeleton.Accessor> getters,
+        Map<String,MBeanSkeleton.Accessor> setters,
+        Map<String,MBeanSkeleton.OperationEntry> operations ) {
+
+        final Table gtable = new Table( getters.size() ) ;
+        for (Map.Entry<String,MBeanSkeleton.Accessor> entry
+            : getters.entrySet()) {
+
+            final MBeanSkeleton.Accessor acc = entry.getValue() ;
+            // Cached attributes are left to the MBeanSkeleton, which
+            // manages the cache.
+            if (acc.descriptor().handle() != null && !acc.isCached()) {
+                final AttributeDescriptor ad = acc.descriptor() ;
+                final MethodHandle mh = MethodHandles.filterReturnValue(
+                    ad.handle(), TO_MANAGED_ENTITY.bindTo( ad.tc() ) ) ;
+                gtable.put( entry.getKey(), mh, acc.facetIndex(), null ) ;
+            }
+        }
+
+        final Table stable = new Table( setters.size() ) ;
+        for (Map.Entry<String,MBeanSkeleton.Accessor> entry
+            : setters.entrySet()) {
+
+            final MBeanSkeleton.Accessor acc = entry.getValue() ;
+            final MBeanSkeleton.Accessor getter = getters.get(
+                entry.getKey() ) ;
+            // Setting a cached attribute must invalidate the cached value.
+            if (acc.descriptor().handle() != null
+                && (getter == null || !getter.isCached())) {
+
+                final AttributeDescriptor ad = acc.descriptor() ;
+                final MethodHandle mh = MethodHandles.filterArguments(
+                    ad.handle(), 1, FROM_MANAGED_ENTITY.bindTo( ad.tc() ) ) ;
+                stable.put( entry.getKey(), mh, acc.facetIndex(), null ) ;
+            }
+        }
+
+        final Table otable = new Table( operations.size() ) ;
+        for (Map.Entry<String,MBeanSkeleton.OperationEntry> entry
+            : operations.entrySet()) {
+
+            final MBeanSkeleton.OperationEntry oe = entry.getValue() ;
+            // Overloaded operations need the signature search in
+            // MBeanSkeleton.invoke.
+            if (oe.next() == null) {
+                final MethodHandle mh = oe.operation().compile() ;
+                if (mh != null) {
+                    otable.put( entry.getKey(), mh, oe.facetIndex(),
+                        oe.signature() ) ;
+                }
+            }
+        }
+
+        if (gtable.isEmpty() && stable.isEmpty() && otable.isEmpty()) {
+            return null ;
+        }
+
+        return new SkeletonDispatcher( gtable, stable, otable ) ;
+    }
+
+    private static MBeanException wrap( Throwable thr ) {
+        if (thr instanceof Exception) {
+            return new MBeanException( (Exception)thr ) ;
+        }
+
+        return new MBeanException( new Exception( thr ) ) ;
+    }
+
+    /** Get the attribute name from mb.
+     * @param mb The MBean whose facets are used.
+     * @param name The attribute name.
+     * @return The managed value of the attribute, or UNHANDLED if name is
+     * not in this dispatcher, or mb has no facet for it.
+     * @throws MBeanException if the attribute accessor throws a checked
+     * exception.
+     */
+    Object getAttribute( MBeanImpl mb, String name ) throws MBeanException {
+        final int pos = getters.find( name ) ;
+        if (pos < 0) {
+            return UNHANDLED ;
+        }
+
+        final Object facet = mb.resolvedFacet( getters.facetIndexes[pos] ) ;
+        if (facet == null) {
+            return UNHANDLED ;
+        }
+
+        try {
+            return (Object)getters.handles[pos].invokeExact( facet ) ;
+        } catch (RuntimeException exc) {
+            throw exc ;
+        } catch (Error err) {
+            throw err ;
+        } catch (Throwable thr) {
+            throw wrap( thr ) ;
+        }
+    }
+
+    /** Set the attribute name on mb.  No AttributeChangeNotification is
+     * sent, so this must only be used if mb has no listeners.
+     * @param mb The MBean whose facets are used.
+     * @param name The attribute name.
+     * @param value The new value, in its managed form.
+     * @return false if name is not in this dispatcher, or mb has no facet
+     * for it, in which case nothing was done.
+     * @throws MBeanException if the attribute accessor throws a checked
+     * exception.
+     */
+    boolean setAttribute( MBeanImpl mb, String name, Object value )
+        throws MBeanException {
+
+        final int pos = setters.find( name ) ;
+        if (pos < 0) {
+            return false ;
+        }
+
+        final Object facet = mb.resolvedFacet( setters.facetIndexes[pos] ) ;
+        if (facet == null) {
+            return false ;
+        }
+
+        try {
+            setters.handles[pos].invokeExact( facet, value ) ;
+        } catch (RuntimeException exc) {
+            throw exc ;
+        } catch (Error err) {
+            throw err ;
+        } catch (Throwable thr) {
+            throw wrap( thr ) ;
+        }
+
+        return true ;
+    }
+
+    private static boolean matches( String[] signature, String[] sig ) {
+        final int len = (sig == null) ? 0 : sig.length ;
+        if (len != signature.length) {
+            return false ;
+        }
+
+        for (int ctr=0; ctr<len; ctr++) {
+            final String str = sig[ctr] ;
+            if (str != signature[ctr] && !signature[ctr].equals( str )) {
+                return false ;
+            }
+        }
+
+        return true ;
+    }
+
+    /** Invoke the operation name on mb.
+     * @param mb The MBean whose facets are used.
+     * @param name The operation name.
+     * @param params The arguments, in their managed form.
+     * @param sig The signature of the operation.
+     * @return The managed result of the operation, or UNHANDLED if name
+     * with signature sig is not in this dispatcher, or the arguments do not
+     * match the signature, or mb has no facet for it.
+     * @throws MBeanException if the operation throws a checked exception.
+     */
+    Object invoke( MBeanImpl mb, String name, Object[] params, String[] sig )
+        throws MBeanException {
+
+        final int pos = operations.find( name ) ;
+        if (pos < 0) {
+            return UNHANDLED ;
+        }
+
+        final String[] signature = operations.signatures[pos] ;
+        final int numParams = (params == null) ? 0 : params.length ;
+        if (numParams != signature.length || !matches( signature, sig )) {
+            return UNHANDLED ;
+        }
+
+        final Object facet = mb.resolvedFacet(
+            operations.facetIndexes[pos] ) ;
+        if (facet == null) {
+            return UNHANDLED ;
+        }
+
+        final Object[] args = (params == null) ? NO_PARAMS : params ;
+        try {
+            return (Object)operations.handles[pos].invokeExact( facet,
+                args ) ;
+        } catch (RuntimeException exc) {
+            throw exc ;
+        } catch (Error err) {
+            throw err ;
+        } catch (Throwable thr) {
+            throw wrap( thr ) ;
+        }
+    }
+
+    /** Compile method into a handle of type (Object,Object[])Object, that
+     * converts each argument with the corresponding element of atcs, and
+     * the result with rtc.
+     * @param method The method of an operation.
+     * @param atcs The argument TypeConverters.
+     * @param rtc The result TypeConverter, or null if the result is always
+     * null.
+     * @return The handle, or null if method cannot be compiled.
+     */
+    static MethodHandle compileOperation( Method method,
+        TypeConverter[] atcs, TypeConverter rtc ) {
+
+        if (Modifier.isStatic( method.getModifiers() )
+            || method.isVarArgs()) {
+            return null ;
+        }
+
+        try {
+            MethodHandle mh = MethodHandles.lookup().unreflect( method ) ;
+            mh = mh.asType( MethodType.genericMethodType( atcs.length + 1 ) ) ;
+
+            final MethodHandle[] filters = new MethodHandle[atcs.length] ;
+            for (int ctr=0; ctr<atcs.length; ctr++) {
+                filters[ctr] = FROM_MANAGED_ENTITY.bindTo( atcs[ctr] ) ;
+            }
+            mh = MethodHandles.filterArguments( mh, 1, filters ) ;
+
+            if (rtc == null) {
+                mh = MethodHandles.filterReturnValue( mh,
+                    MethodHandles.dropArguments(
+                        MethodHandles.constant( Object.class, null ), 0,
+                        Object.class ) ) ;
+            } else {
+                mh = MethodHandles.filterReturnValue( mh,
+                    TO_MANAGED_ENTITY.bindTo( rtc ) ) ;
+            }
+
+            return mh.asSpreader( Object[].class, atcs.length )
+                .asType( OPERATION_TYPE ) ;
+        } catch (IllegalAccessException exc) {
+            return null ;
+        } catch (RuntimeException exc) {
+            return null ;
+        }
+    }
+}
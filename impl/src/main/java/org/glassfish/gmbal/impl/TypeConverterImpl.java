@@ -16,7 +16,6 @@ import org.glassfish.pfl.tf.spi.annotation.InfoMethod;
 import org.glassfish.gmbal.impl.trace.TraceRegistration;
 import org.glassfish.pfl.basic.algorithm.DumpToString;
 import org.glassfish.pfl.basic.contain.Pair;
-import org.glassfish.pfl.basic.facet.FacetAccessor;
 import org.glassfish.pfl.basic.algorithm.Algorithms;
 import org.glassfish.pfl.basic.func.UnaryPredicate;
 
@@ -432,8 +431,9 @@ public abstract class TypeConverterImpl implements TypeConverter {
                     Object value = null ;
                     if (minfo.isApplicable( obj )) {
                         try {
-                            FacetAccessor fa = mom.getFacetAccessor( obj ) ;
-                            value = minfo.get(fa );
+                            // obj is an instance of minfo's facet class, so
+                            // no FacetAccessor is needed here.
+                            value = minfo.getFacetValue( obj ) ;
                         } catch (JMException ex) {
                             Exceptions.self.errorInConstructingOpenData(
                                 cls.name(), minfo.id(), ex ) ;
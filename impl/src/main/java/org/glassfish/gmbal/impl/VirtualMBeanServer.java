@@ -0,0 +1,453 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.impl ;
+
+import java.io.ObjectInputStream;
+import java.util.HashSet;
+import java.util.Set;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.IntrospectionException;
+import javax.management.InvalidAttributeValueException;
+import javax.management.ListenerNotFoundException;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.NotCompliantMBeanException;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import javax.management.OperationsException;
+import javax.management.QueryExp;
+import javax.management.ReflectionException;
+import javax.management.loading.ClassLoaderRepository;
+import javax.management.remote.MBeanServerForwarder;
+
+/** An MBeanServerForwarder that answers requests for the MBeans of one
+ * ManagedObjectManager directly from its MBeanTree.  In virtual mode these
+ * MBeans are never registered with the real MBeanServer, so registering
+ * one only adds it to the tree.  All other requests are forwarded to the
+ * real MBeanServer.
+ * <p>
+ * Listeners on a virtual MBean must be NotificationListener instances:
+ * listeners given by ObjectName are not supported.
+ */
+final class VirtualMBeanServer implements MBeanServerForwarder {
+    private final MBeanTree tree ;
+    private final String domain ;
+    private volatile MBeanServer mbs ;
+
+    VirtualMBeanServer( final MBeanTree tree, final String domain,
+        final MBeanServer mbs ) {
+
+        this.tree = tree ;
+        this.domain = domain ;
+        this.mbs = mbs ;
+    }
+
+    public MBeanServer getMBeanServer() {
+        return mbs ;
+    }
+
+    public void setMBeanServer( MBeanServer mbs ) {
+        this.mbs = mbs ;
+    }
+
+    // Return the virtual MBean for name, or null if name does not belong
+    // to the tree.
+    private MBeanImpl find( ObjectName name ) {
+        return name == null ? null : tree.findMBean( name ) ;
+    }
+
+    private boolean matches( ObjectName pattern, QueryExp query,
+        ObjectName name ) {
+
+        if (pattern != null && !pattern.apply( name )) {
+            return false ;
+        }
+
+        if (query == null) {
+            return true ;
+        }
+
+        query.setMBeanServer( this ) ;
+        try {
+            return query.apply( name ) ;
+        } catch (Exception exc) {
+            return false ;
+        }
+    }
+
+    public ObjectInstance createMBean( String className, ObjectName name )
+        throws ReflectionException, InstanceAlreadyExistsException,
+        MBeanRegistrationException, MBeanException,
+        NotCompliantMBeanException {
+
+        checkNotVirtual( name ) ;
+        return mbs.createMBean( className, name ) ;
+    }
+
+    public ObjectInstance createMBean( String className, ObjectName name,
+        ObjectName loaderName ) throws ReflectionException,
+        InstanceAlreadyExistsException, MBeanRegistrationException,
+        MBeanException, NotCompliantMBeanException,
+        InstanceNotFoundException {
+
+        checkNotVirtual( name ) ;
+        return mbs.createMBean( className, name, loaderName ) ;
+    }
+
+    public ObjectInstance createMBean( String className, ObjectName name,
+        Object[] params, String[] signature ) throws ReflectionException,
+        InstanceAlreadyExistsException, MBeanRegistrationException,
+        MBeanException, NotCompliantMBeanException {
+
+        checkNotVirtual( name ) ;
+        return mbs.createMBean( className, name, params, signature ) ;
+    }
+
+    public ObjectInstance createMBean( String className, ObjectName name,
+        ObjectName loaderName, Object[] params, String[] signature )
+        throws ReflectionException, InstanceAlreadyExistsException,
+        MBeanRegistrationException, MBeanException,
+        NotCompliantMBeanException, InstanceNotFoundException {
+
+        checkNotVirtual( name ) ;
+        return mbs.createMBean( className, name, loaderName, params,
+            signature ) ;
+    }
+
+    public ObjectInstance registerMBean( Object object, ObjectName name )
+        throws InstanceAlreadyExistsException, MBeanRegistrationException,
+        NotCompliantMBeanException {
+
+        checkNotVirtual( name ) ;
+        return mbs.registerMBean( object, name ) ;
+    }
+
+    private void checkNotVirtual( ObjectName name )
+        throws InstanceAlreadyExistsException {
+
+        if (find( name ) != null) {
+            throw new InstanceAlreadyExistsException( name.toString() ) ;
+        }
+    }
+
+    public void unregisterMBean( ObjectName name )
+        throws InstanceNotFoundException, MBeanRegistrationException {
+
+        final MBeanImpl mb = find( name ) ;
+        if (mb == null) {
+            mbs.unregisterMBean( name ) ;
+        } else {
+            tree.unregister( mb.target() ) ;
+        }
+    }
+
+    public ObjectInstance getObjectInstance( ObjectName name )
+        throws InstanceNotFoundException {
+
+        final MBeanImpl mb = find( name ) ;
+        if (mb == null) {
+            return mbs.getObjectInstance( name ) ;
+        }
+
+        return new ObjectInstance( name, mb.getMBeanInfo().getClassName() ) ;
+    }
+
+    public Set<ObjectInstance> queryMBeans( ObjectName name, QueryExp query ) {
+        final Set<ObjectInstance> result = new HashSet<ObjectInstance>(
+            mbs.queryMBeans( name, query ) ) ;
+        for (ObjectName oname : tree.objectNames()) {
+            final MBeanImpl mb = find( oname ) ;
+            if (mb != null && matches( name, query, oname )) {
+                result.add( new ObjectInstance( oname,
+                    mb.getMBeanInfo().getClassName() ) ) ;
+            }
+        }
+
+        return result ;
+    }
+
+    public Set<ObjectName> queryNames( ObjectName name, QueryExp query ) {
+        final Set<ObjectName> result = new HashSet<ObjectName>(
+            mbs.queryNames( name, query ) ) ;
+        for (ObjectName oname : tree.objectNames()) {
+            if (matches( name, query, oname )) {
+                result.add( oname ) ;
+            }
+        }
+
+        return result ;
+    }
+
+    public boolean isRegistered( ObjectName name ) {
+        return find( name ) != null || mbs.isRegistered( name ) ;
+    }
+
+    public Integer getMBeanCount() {
+        return mbs.getMBeanCount() + tree.objectNames().size() ;
+    }
+
+    public Object getAttribute( ObjectName name, String attribute )
+        throws MBeanException, AttributeNotFoundException,
+        InstanceNotFoundException, ReflectionException {
+
+        final MBeanImpl mb = find( name ) ;
+        if (mb == null) {
+            return mbs.getAttribute( name, attribute ) ;
+        }
+
+        return mb.getAttribute( attribute ) ;
+    }
+
+    public AttributeList getAttributes( ObjectName name, String[] attributes )
+        throws InstanceNotFoundException, ReflectionException {
+
+        final MBeanImpl mb = find( name ) ;
+        if (mb == null) {
+            return mbs.getAttributes( name, attributes ) ;
+        }
+
+        return mb.getAttributes( attributes ) ;
+    }
+
+    public void setAttribute( ObjectName name, Attribute attribute )
+        throws InstanceNotFoundException, AttributeNotFoundException,
+        InvalidAttributeValueException, MBeanException,
+        ReflectionException {
+
+        final MBeanImpl mb = find( name ) ;
+        if (mb == null) {
+            mbs.setAttribute( name, attribute ) ;
+        } else {
+            mb.setAttribute( attribute ) ;
+        }
+    }
+
+    public AttributeList setAttributes( ObjectName name,
+        AttributeList attributes ) throws InstanceNotFoundException,
+        ReflectionException {
+
+        final MBeanImpl mb = find( name ) ;
+        if (mb == null) {
+            return mbs.setAttributes( name, attributes ) ;
+        }
+
+        return mb.setAttributes( attributes ) ;
+    }
+
+    public Object invoke( ObjectName name, String operationName,
+        Object[] params, String[] signature ) throws InstanceNotFoundException,
+        MBeanException, ReflectionException {
+
+        final MBeanImpl mb = find( name ) ;
+        if (mb == null) {
+            return mbs.invoke( name, operationName, params, signature ) ;
+        }
+
+        return mb.invoke( operationName, params, signature ) ;
+    }
+
+    public String getDefaultDomain() {
+        return mbs.getDefaultDomain() ;
+    }
+
+    public String[] getDomains() {
+        final Set<String> result = new HashSet<String>() ;
+        for (String str : mbs.getDomains()) {
+            result.add( str ) ;
+        }
+
+        if (!tree.objectNames().isEmpty()) {
+            result.add( domain ) ;
+        }
+
+        return result.toArray( new String[result.size()] ) ;
+    }
+
+    public void addNotificationListener( ObjectName name,
+        NotificationListener listener, NotificationFilter filter,
+        Object handback ) throws InstanceNotFoundException {
+
+        final MBeanImpl mb = find( name ) ;
+        if (mb == null) {
+            mbs.addNotificationListener( name, listener, filter, handback ) ;
+        } else {
+            mb.addNotificationListener( listener, filter, handback ) ;
+        }
+    }
+
+    public void addNotificationListener( ObjectName name, ObjectName listener,
+        NotificationFilter filter, Object handback )
+        throws InstanceNotFoundException {
+
+        if (find( name ) != null) {
+            throw Exceptions.self.virtualListenerNotSupported( name ) ;
+        }
+
+        mbs.addNotificationListener( name, listener, filter, handback ) ;
+    }
+
+    public void removeNotificationListener( ObjectName name,
+        ObjectName listener ) throws InstanceNotFoundException,
+        ListenerNotFoundException {
+
+        if (find( name ) != null) {
+            throw Exceptions.self.virtualListenerNotSupported( name ) ;
+        }
+
+        mbs.removeNotificationListener( name, listener ) ;
+    }
+
+    public void removeNotificationListener( ObjectName name,
+        ObjectName listener, NotificationFilter filter, Object handback )
+        throws InstanceNotFoundException, ListenerNotFoundException {
+
+        if (find( name ) != null) {
+            throw Exceptions.self.virtualListenerNotSupported( name ) ;
+        }
+
+        mbs.removeNotificationListener( name, listener, filter, handback ) ;
+    }
+
+    public void removeNotificationListener( ObjectName name,
+        NotificationListener listener ) throws InstanceNotFoundException,
+        ListenerNotFoundException {
+
+        final MBeanImpl mb = find( name ) ;
+        if (mb == null) {
+            mbs.removeNotificationListener( name, listener ) ;
+        } else {
+            mb.removeNotificationListener( listener ) ;
+        }
+    }
+
+    public void removeNotificationListener( ObjectName name,
+        NotificationListener listener, NotificationFilter filter,
+        Object handback ) throws InstanceNotFoundException,
+        ListenerNotFoundException {
+
+        final MBeanImpl mb = find( name ) ;
+        if (mb == null) {
+            mbs.removeNotificationListener( name, listener, filter,
+                handback ) ;
+        } else {
+            mb.removeNotificationListener( listener, filter, handback ) ;
+        }
+    }
+
+    public MBeanInfo getMBeanInfo( ObjectName name )
+        throws InstanceNotFoundException, IntrospectionException,
+        ReflectionException {
+
+        final MBeanImpl mb = find( name ) ;
+        if (mb == null) {
+            return mbs.getMBeanInfo( name ) ;
+        }
+
+        return mb.getMBeanInfo() ;
+    }
+
+    public boolean isInstanceOf( ObjectName name, String className )
+        throws InstanceNotFoundException {
+
+        final MBeanImpl mb = find( name ) ;
+        if (mb == null) {
+            return mbs.isInstanceOf( name, className ) ;
+        }
+
+        if (className.equals( mb.getMBeanInfo().getClassName() )) {
+            return true ;
+        }
+
+        try {
+            return Class.forName( className, false,
+                MBeanImpl.class.getClassLoader() ).isInstance( mb ) ;
+        } catch (ClassNotFoundException exc) {
+            return false ;
+        }
+    }
+
+    public Object instantiate( String className ) throws ReflectionException,
+        MBeanException {
+
+        return mbs.instantiate( className ) ;
+    }
+
+    public Object instantiate( String className, ObjectName loaderName )
+        throws ReflectionException, MBeanException,
+        InstanceNotFoundException {
+
+        return mbs.instantiate( className, loaderName ) ;
+    }
+
+    public Object instantiate( String className, Object[] params,
+        String[] signature ) throws ReflectionException, MBeanException {
+
+        return mbs.instantiate( className, params, signature ) ;
+    }
+
+    public Object instantiate( String className, ObjectName loaderName,
+        Object[] params, String[] signature ) throws ReflectionException,
+        MBeanException, InstanceNotFoundException {
+
+        return mbs.instantiate( className, loaderName, params, signature ) ;
+    }
+
+    @Deprecated
+    public ObjectInputStream deserialize( ObjectName name, byte[] data )
+        throws InstanceNotFoundException, OperationsException {
+
+        return mbs.deserialize( name, data ) ;
+    }
+
+    @Deprecated
+    public ObjectInputStream deserialize( String className, byte[] data )
+        throws OperationsException, ReflectionException {
+
+        return mbs.deserialize( className, data ) ;
+    }
+
+    @Deprecated
+    public ObjectInputStream deserialize( String className,
+        ObjectName loaderName, byte[] data ) throws InstanceNotFoundException,
+        OperationsException, ReflectionException {
+
+        return mbs.deserialize( className, loaderName, data ) ;
+    }
+
+    public ClassLoader getClassLoaderFor( ObjectName mbeanName )
+        throws InstanceNotFoundException {
+
+        final MBeanImpl mb = find( mbeanName ) ;
+        if (mb == null) {
+            return mbs.getClassLoaderFor( mbeanName ) ;
+        }
+
+        return MBeanImpl.class.getClassLoader() ;
+    }
+
+    public ClassLoader getClassLoader( ObjectName loaderName )
+        throws InstanceNotFoundException {
+
+        return mbs.getClassLoader( loaderName ) ;
+    }
+
+    public ClassLoaderRepository getClassLoaderRepository() {
+        return mbs.getClassLoaderRepository() ;
+    }
+}
@@ -301,6 +301,141 @@ public class ProfileMain {
 	timings.dump( type + ": Iteration " + count ) ;
     }
 
+    private static final String DIRECT_DISPATCH =
+        "org.glassfish.gmbal.directDispatch" ;
+    private static final int NUM_ATTRIBUTE_CALLS = 2000000 ;
+
+    // Measure the per-call cost of MBeanServer.getAttribute on a single
+    // store, with or without the precompiled SkeletonDispatcher.
+    private static double timeAttributeAccess( boolean directDispatch )
+        throws IOException {
+
+        System.setProperty( DIRECT_DISPATCH,
+            Boolean.toString( directDispatch ) ) ;
+        final ManagedObjectManager lmom =
+            ManagedObjectManagerFactory.createStandalone("test") ;
+
+        try {
+            final MyRoot myroot = new MyRoot() ;
+            final Store store = new Store( "Store_0" ) ;
+            myroot.addStore( store ) ;
+            lmom.createRoot( myroot ) ;
+            lmom.registerAtRoot( store ) ;
+
+            final ObjectName oname = lmom.getObjectName( store ) ;
+            final AMXClient amx = new AMXClient( lmom.getMBeanServer(),
+                oname ) ;
+
+            // warm up
+            for (int ctr=0; ctr<NUM_ATTRIBUTE_CALLS/10; ctr++) {
+                amx.getAttribute( "Name" ) ;
+            }
+
+            final long start = System.nanoTime() ;
+            for (int ctr=0; ctr<NUM_ATTRIBUTE_CALLS; ctr++) {
+                amx.getAttribute( "Name" ) ;
+            }
+
+            return (double)(System.nanoTime() - start) / NUM_ATTRIBUTE_CALLS ;
+        } finally {
+            lmom.close() ;
+            System.clearProperty( DIRECT_DISPATCH ) ;
+        }
+    }
+
+    private static void compareAttributeAccess() throws IOException {
+        final double skeleton = timeAttributeAccess( false ) ;
+        final double direct = timeAttributeAccess( true ) ;
+
+        msg( String.format( "getAttribute through MBeanSkeleton: %8.1f ns/call",
+            skeleton ) ) ;
+        msg( String.format( "getAttribute through dispatcher:    %8.1f ns/call",
+            direct ) ) ;
+        msg( String.format( "Speedup: %.2fx", skeleton / direct ) ) ;
+    }
+
+    // Time the registration of NUM_STORES stores, either one at a time as
+    // in registerMBeans, or with a single registerAll call.
+    private static long timeRegistration( boolean bulk ) throws IOException {
+        final MyRoot myroot = new MyRoot() ;
+        initializeStores( myroot ) ;
+        final ManagedObjectManager lmom =
+            ManagedObjectManagerFactory.createStandalone("test") ;
+
+        try {
+            lmom.createRoot( myroot ) ;
+
+            final long start = System.nanoTime() ;
+            if (bulk) {
+                final Map<Object,RuntimeException> errors =
+                    lmom.registerAll( myroot, myroot.getStores() ) ;
+                if (!errors.isEmpty()) {
+                    throw new IllegalStateException( "registerAll failed: "
+                        + errors ) ;
+                }
+            } else {
+                registerMBeans( lmom, myroot ) ;
+            }
+
+            return System.nanoTime() - start ;
+        } finally {
+            lmom.close() ;
+        }
+    }
+
+    private static void compareRegistration() throws IOException {
+        // warm up
+        for (int ctr=0; ctr<5; ctr++) {
+            timeRegistration( false ) ;
+            timeRegistration( true ) ;
+        }
+
+        final long single = timeRegistration( false ) ;
+        final long bulk = timeRegistration( true ) ;
+
+        msg( String.format( "register loop: %8.1f us/MBean",
+            single / 1000.0 / NUM_STORES ) ) ;
+        msg( String.format( "registerAll:   %8.1f us/MBean",
+            bulk / 1000.0 / NUM_STORES ) ) ;
+        msg( String.format( "Speedup: %.2fx", (double)single / bulk ) ) ;
+    }
+
+    private static long usedHeap() {
+        final Runtime rt = Runtime.getRuntime() ;
+        for (int ctr=0; ctr<4; ctr++) {
+            System.gc() ;
+        }
+
+        return rt.totalMemory() - rt.freeMemory() ;
+    }
+
+    private static final int NUM_LEAVES = 1000000 ;
+
+    // Measure the heap retained per registered leaf MBean.  The stores are
+    // created before the first reading, so the difference is the cost of
+    // gmbal and the MBeanServer alone.
+    private static void measureMemoryPerMBean() throws IOException {
+        final MyRoot myroot = new MyRoot() ;
+        for (int ctr=0; ctr<NUM_LEAVES; ctr++) {
+            myroot.addStore( new Store( "Leaf_" + ctr ) ) ;
+        }
+
+        final ManagedObjectManager lmom =
+            ManagedObjectManagerFactory.createStandalone("test") ;
+
+        try {
+            lmom.createRoot( myroot ) ;
+            final long before = usedHeap() ;
+            registerMBeans( lmom, myroot ) ;
+            final long after = usedHeap() ;
+
+            msg( String.format( "Heap per registered MBean (%d leaves): %d bytes",
+                NUM_LEAVES, (after - before) / NUM_LEAVES ) ) ;
+        } finally {
+            lmom.close() ;
+        }
+    }
+
     private static void msg( String arg ) {
 	System.out.println( arg ) ;
     }
@@ -325,5 +460,14 @@ public class ProfileMain {
 
 	msg( "That is " + (numBeans*1000)/duration
 	    + " MBean register/getAttribute/unregister calls per second" ) ;
+
+        msg( "Timing attribute access" ) ;
+        compareAttributeAccess() ;
+
+        msg( "Timing bulk registration" ) ;
+        compareRegistration() ;
+
+        msg( "Measuring memory" ) ;
+        measureMemoryPerMBean() ;
     }
 }
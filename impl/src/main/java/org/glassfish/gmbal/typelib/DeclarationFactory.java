@@ -17,10 +17,8 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 
-import java.util.Map;
 import org.glassfish.gmbal.impl.trace.TraceTypelib;
 import org.glassfish.pfl.basic.algorithm.DumpToString;
 
@@ -31,11 +29,8 @@ import org.glassfish.pfl.basic.algorithm.DumpToString;
 public class DeclarationFactory {
     private static boolean DEBUG = false ;
 
-    private static final Map<EvaluatedType,EvaluatedArrayType> arrayMap =
-        new HashMap<EvaluatedType,EvaluatedArrayType>() ;
-
-    private static final Map<String,EvaluatedClassDeclaration> simpleClassMap =
-        new HashMap<String,EvaluatedClassDeclaration>() ;
+    // There are no caches here: all evaluated types compare by structure, and
+    // TypeEvaluator caches the results of evaluation.
 
     /*
     private static final Map<Pair<String,List<EvaluatedType>>,
@@ -46,42 +41,23 @@ public class DeclarationFactory {
     private DeclarationFactory() {}
 
     @TraceTypelib
-    public static synchronized EvaluatedArrayType egat( final EvaluatedType compType ) {
-        EvaluatedArrayType result = arrayMap.get( compType ) ;
-        if (result == null) {
-            result = new EvaluatedArrayTypeImpl( compType ) ;
-            arrayMap.put( compType, result ) ;
-        }
-
-        return result ;
+    public static EvaluatedArrayType egat( final EvaluatedType compType ) {
+        return new EvaluatedArrayTypeImpl( compType ) ;
     }
 
     @TraceTypelib
-    public static synchronized EvaluatedClassDeclaration ecdecl( final int modifiers,
+    public static EvaluatedClassDeclaration ecdecl( final int modifiers,
         final String name, final List<EvaluatedClassDeclaration> inheritance,
         final List<EvaluatedMethodDeclaration> methods,
         final List<EvaluatedFieldDeclaration> fields, final Class cls,
         final boolean isImmutable ) {
 
-        EvaluatedClassDeclaration result = null ;
-        if (cls.getTypeParameters().length == 0) {
-            // Try the cache first
-            result = simpleClassMap.get( name ) ;
-        }
-
-        if (result == null) {
-            result = new EvaluatedClassDeclarationImpl( modifiers, name,
-                inheritance, methods, fields, cls, isImmutable ) ;
-            if (result.simpleClass()) {
-                simpleClassMap.put( name, result ) ;
-            }
-        }
-
-        return result ;
+        return new EvaluatedClassDeclarationImpl( modifiers, name,
+            inheritance, methods, fields, cls, isImmutable ) ;
     }
 
     @TraceTypelib
-    public static synchronized EvaluatedFieldDeclaration efdecl(
+    public static EvaluatedFieldDeclaration efdecl(
         final EvaluatedClassDeclaration ecdecl, final int modifiers,
         final EvaluatedType ftype, final String name, final Field field ) {
 
@@ -92,7 +68,7 @@ public class DeclarationFactory {
     }
 
     @TraceTypelib
-    public static synchronized EvaluatedMethodDeclaration emdecl( 
+    public static EvaluatedMethodDeclaration emdecl( 
         final EvaluatedClassDeclaration ecdecl, final int modifiers,
         final EvaluatedType rtype, final String name,
         final List<EvaluatedType> ptypes, final Method method ) {
@@ -328,11 +304,13 @@ public class DeclarationFactory {
         public void methods(List<EvaluatedMethodDeclaration> meths) { 
             checkFrozen() ;
             methods = meths ;
+            clearLinearizations() ;
         }
 
         public void inheritance(List<EvaluatedClassDeclaration> inh) { 
             checkFrozen() ;
             inheritance = inh ;
+            clearLinearizations() ;
         }
 
         public AnnotatedElement element() { return cls ; }
@@ -354,6 +332,7 @@ public class DeclarationFactory {
         public void fields(List<EvaluatedFieldDeclaration> arg) {
             checkFrozen();
             fields = arg ;
+            clearLinearizations() ;
         }
 
         public boolean isImmutable() {
@@ -10,9 +10,11 @@
 
 package org.glassfish.gmbal.typelib ;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.function.Predicate;
 
 import org.glassfish.pfl.basic.algorithm.Graph;
 import org.glassfish.pfl.basic.func.UnaryPredicate;
@@ -126,33 +128,166 @@ public class EvaluatedClassAnalyzer {
 	}
     } ;
 
-    private final List<EvaluatedClassDeclaration> classInheritance ;
+    /** The linearized inheritance of a list of root classes, and the
+     * methods and fields declared by these classes in the same order.
+     * Computed once per list of roots, and kept by the first root (see
+     * EvaluatedClassDeclarationBase.linearization).
+     */
+    static final class Linearization {
+        private final EvaluatedClassDeclaration[] roots ;
+        private final EvaluatedClassDeclaration[] classes ;
+        // Computed on first use.  Racing threads compute equal arrays.
+        private volatile EvaluatedMethodDeclaration[] methods = null ;
+        private volatile EvaluatedFieldDeclaration[] fields = null ;
+
+        private Linearization( final List<EvaluatedClassDeclaration> roots ) {
+            this.roots = roots.toArray(
+                new EvaluatedClassDeclaration[roots.size()] ) ;
+
+            final Graph<EvaluatedClassDeclaration> gr =
+                new Graph<EvaluatedClassDeclaration>( roots, finder ) ;
+            final List<EvaluatedClassDeclaration> result =
+                new ArrayList<EvaluatedClassDeclaration>(
+                    gr.getPostorderList() ) ;
+            Collections.reverse( result ) ;
+            this.classes = result.toArray(
+                new EvaluatedClassDeclaration[result.size()] ) ;
+        }
+
+        List<EvaluatedClassDeclaration> roots() {
+            return Arrays.asList( roots ) ;
+        }
+
+        // The roots are compared by identity: equal declarations may
+        // still be declarations of different classes.
+        boolean hasRoots( final List<EvaluatedClassDeclaration> decls ) {
+            if (decls.size() != roots.length) {
+                return false ;
+            }
+
+            for (int ctr=0; ctr<roots.length; ctr++) {
+                if (decls.get( ctr ) != roots[ctr]) {
+                    return false ;
+                }
+            }
+
+            return true ;
+        }
+
+        private EvaluatedMethodDeclaration[] methods() {
+            EvaluatedMethodDeclaration[] result = methods ;
+            if (result == null) {
+                final List<EvaluatedMethodDeclaration> list =
+                    new ArrayList<EvaluatedMethodDeclaration>() ;
+                for (EvaluatedClassDeclaration c : classes) {
+                    list.addAll( c.methods() ) ;
+                }
+
+                result = list.toArray(
+                    new EvaluatedMethodDeclaration[list.size()] ) ;
+                methods = result ;
+            }
+
+            return result ;
+        }
+
+        private EvaluatedFieldDeclaration[] fields() {
+            EvaluatedFieldDeclaration[] result = fields ;
+            if (result == null) {
+                final List<EvaluatedFieldDeclaration> list =
+                    new ArrayList<EvaluatedFieldDeclaration>() ;
+                for (EvaluatedClassDeclaration c : classes) {
+                    list.addAll( c.fields() ) ;
+                }
+
+                result = list.toArray(
+                    new EvaluatedFieldDeclaration[list.size()] ) ;
+                fields = result ;
+            }
+
+            return result ;
+        }
+    }
+
+    private static Linearization linearize(
+        final List<EvaluatedClassDeclaration> roots ) {
+
+        if (roots.isEmpty() || !(roots.get( 0 )
+            instanceof EvaluatedClassDeclarationBase)) {
+
+            return new Linearization( roots ) ;
+        }
+
+        final EvaluatedClassDeclarationBase first =
+            (EvaluatedClassDeclarationBase)roots.get( 0 ) ;
+        Linearization result = first.linearization( roots ) ;
+        if (result == null) {
+            result = first.addLinearization( new Linearization( roots ) ) ;
+        }
+
+        return result ;
+    }
+
+    private final Linearization linearization ;
+    // If not null, findMethods and findFields only consider the members
+    // accepted by this predicate.
+    private final Predicate<EvaluatedDeclaration> members ;
     private String contents = null ;
 
-    private EvaluatedClassAnalyzer( Graph<EvaluatedClassDeclaration> gr ) {
-	List<EvaluatedClassDeclaration> result = 
-            new ArrayList<EvaluatedClassDeclaration>( gr.getPostorderList() ) ;
-	Collections.reverse( result ) ;
-        classInheritance = result ;
+    private EvaluatedClassAnalyzer( final EvaluatedClassAnalyzer ca,
+        final Predicate<EvaluatedDeclaration> members ) {
+        this.linearization = ca.linearization ;
+        this.members = members ;
     }
 
     public EvaluatedClassAnalyzer( final EvaluatedClassDeclaration cls ) {
-	this( new Graph<EvaluatedClassDeclaration>( 
-            cls, finder ) ) ;
+        this( Collections.singletonList( cls ) ) ;
     }
 
+    /** Analyze the union of the inheritance of decls.  The linearization
+     * is computed only once for the same declarations: later analyzers
+     * for them reuse it.
+     * @param decls The classes to analyze.
+     */
     public EvaluatedClassAnalyzer( final List<EvaluatedClassDeclaration> decls ) {
-        this( new Graph<EvaluatedClassDeclaration>( decls, finder ) ) ;
+        this.linearization = linearize( decls ) ;
+        this.members = null ;
+    }
+
+    /** Return an analyzer for the same classes as this one, whose
+     * findMethods and findFields methods only search the members accepted
+     * by members.
+     * @param members The members to search.
+     * @return The restricted analyzer.
+     */
+    public EvaluatedClassAnalyzer restrict(
+        final Predicate<EvaluatedDeclaration> members ) {
+
+        return new EvaluatedClassAnalyzer( this, members ) ;
+    }
+
+    /** Return the linearized inheritance of the analyzed classes.
+     * @return The classes, in the order in which findClasses checks them.
+     */
+    public List<EvaluatedClassDeclaration> classes() {
+        return Collections.unmodifiableList(
+            Arrays.asList( linearization.classes ) ) ;
     }
 
     public List<EvaluatedClassDeclaration> findClasses(
         UnaryPredicate<EvaluatedClassDeclaration> pred ) {
+
+        return findClasses( (Predicate<EvaluatedClassDeclaration>)pred ) ;
+    }
+
+    public List<EvaluatedClassDeclaration> findClasses(
+        Predicate<EvaluatedClassDeclaration> pred ) {
 	
         final List<EvaluatedClassDeclaration> result =
             new ArrayList<EvaluatedClassDeclaration>() ;
 	
-        for (EvaluatedClassDeclaration c : classInheritance) {
-            if (pred.evaluate( c )) {
+        for (EvaluatedClassDeclaration c : linearization.classes) {
+            if (pred.test( c )) {
                 result.add( c ) ;
             }
         }
@@ -160,20 +295,28 @@ public class EvaluatedClassAnalyzer {
         return result ;
     }
 
+    private boolean isMember( final EvaluatedDeclaration decl ) {
+        return members == null || members.test( decl ) ;
+    }
+
     // Tested by testFindMethod
     // Tested by testGetAnnotatedMethods
     public List<EvaluatedMethodDeclaration> findMethods(
         UnaryPredicate<EvaluatedMethodDeclaration> pred ) {
 
+        return findMethods( (Predicate<EvaluatedMethodDeclaration>)pred ) ;
+    }
+
+    public List<EvaluatedMethodDeclaration> findMethods(
+        Predicate<EvaluatedMethodDeclaration> pred ) {
+
         final List<EvaluatedMethodDeclaration> result =
             new ArrayList<EvaluatedMethodDeclaration>() ;
 
-        for (EvaluatedClassDeclaration c : classInheritance) {
-            for (EvaluatedMethodDeclaration m : c.methods()) {
-                if (pred.evaluate( m )) {
-                    result.add( m ) ;
-                }
-	    }
+        for (EvaluatedMethodDeclaration m : linearization.methods()) {
+            if (isMember( m ) && pred.test( m )) {
+                result.add( m ) ;
+            }
 	}
 
 	return result ;
@@ -181,16 +324,20 @@ public class EvaluatedClassAnalyzer {
 
     public List<EvaluatedFieldDeclaration> findFields(
         UnaryPredicate<EvaluatedFieldDeclaration> pred ) {
+
+        return findFields( (Predicate<EvaluatedFieldDeclaration>)pred ) ;
+    }
+
+    public List<EvaluatedFieldDeclaration> findFields(
+        Predicate<EvaluatedFieldDeclaration> pred ) {
 	
         final List<EvaluatedFieldDeclaration> result =
             new ArrayList<EvaluatedFieldDeclaration>() ;
 	
-        for (EvaluatedClassDeclaration c : classInheritance) {
-            for (EvaluatedFieldDeclaration f : c.fields()) {
-                if (pred.evaluate( f )) {
-                    result.add( f ) ;
-                }
-	    }
+        for (EvaluatedFieldDeclaration f : linearization.fields()) {
+            if (isMember( f ) && pred.test( f )) {
+                result.add( f ) ;
+            }
 	}
 
 	return result ;
@@ -203,7 +350,7 @@ public class EvaluatedClassAnalyzer {
 
             boolean first = true ;
             sb.append( "ClassAnalyzer[" ) ;
-            for (EvaluatedClassDeclaration cls : classInheritance) {
+            for (EvaluatedClassDeclaration cls : linearization.classes) {
                 if (first) {
                     first = false ;
                 } else {
@@ -10,6 +10,8 @@
 
 package org.glassfish.gmbal.typelib;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import org.glassfish.pfl.basic.contain.ObjectSet;
 
@@ -19,6 +21,49 @@ import org.glassfish.pfl.basic.contain.ObjectSet;
  */
 public abstract class EvaluatedClassDeclarationBase extends EvaluatedDeclarationBase
     implements EvaluatedClassDeclaration {
+
+    // The linearizations computed by EvaluatedClassAnalyzer with this class
+    // as the first root.  Usually there is only one; there are more if
+    // this class is analyzed together with other classes.  Copied on write.
+    private volatile List<EvaluatedClassAnalyzer.Linearization>
+        linearizations = Collections.emptyList() ;
+
+    EvaluatedClassAnalyzer.Linearization linearization(
+        final List<EvaluatedClassDeclaration> roots ) {
+
+        for (EvaluatedClassAnalyzer.Linearization lin : linearizations) {
+            if (lin.hasRoots( roots )) {
+                return lin ;
+            }
+        }
+
+        return null ;
+    }
+
+    // Returns the linearization with the same roots as lin that is kept by
+    // this class, which is lin unless another thread added one first.
+    synchronized EvaluatedClassAnalyzer.Linearization addLinearization(
+        final EvaluatedClassAnalyzer.Linearization lin ) {
+
+        for (EvaluatedClassAnalyzer.Linearization old : linearizations) {
+            if (old.hasRoots( lin.roots() )) {
+                return old ;
+            }
+        }
+
+        final List<EvaluatedClassAnalyzer.Linearization> result =
+            new ArrayList<EvaluatedClassAnalyzer.Linearization>(
+                linearizations ) ;
+        result.add( lin ) ;
+        linearizations = result ;
+        return lin ;
+    }
+
+    // The inheritance of this class changed: the linearizations are no
+    // longer valid.
+    synchronized void clearLinearizations() {
+        linearizations = Collections.emptyList() ;
+    }
     
     void makeRepresentation( StringBuilder sb, ObjectSet set ) {
         sb.append( name() ) ;
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.typelib;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/** A concurrent map whose entries are discarded together with the
+ * ClassLoaders of the classes they refer to.
+ * <P>
+ * Every entry has an owner class, which must be loaded by the same
+ * ClassLoader as, or by a descendant of the ClassLoaders of, all classes
+ * that the key and the value refer to (see owner).  Entries whose owner is
+ * loaded by the ClassLoader of gmbal or one of its ancestors cannot be
+ * unloaded before gmbal, and are kept in an ordinary map.  All other
+ * entries are kept in a ClassValue of their owner, so that they do not keep
+ * the owner's ClassLoader reachable.
+ * <P>
+ * A value that refers back to the map keeps its entry, and so the map,
+ * reachable for as long as its owner is loaded.  clear() releases all
+ * entries.
+ */
+public final class LoaderScopedMap<K,V> {
+    private static final ClassLoader LOCAL_LOADER =
+        LoaderScopedMap.class.getClassLoader() ;
+
+    private final ConcurrentMap<K,V> shared = new ConcurrentHashMap<K,V>() ;
+
+    // Replaced by clear().
+    private volatile ClassValue<ConcurrentMap<K,V>> scoped = makeScoped() ;
+
+    private static <K,V> ClassValue<ConcurrentMap<K,V>> makeScoped() {
+        return new ClassValue<ConcurrentMap<K,V>>() {
+            @Override
+            protected ConcurrentMap<K,V> computeValue( Class<?> cls ) {
+                return new ConcurrentHashMap<K,V>() ;
+            }
+        } ;
+    }
+
+    private ConcurrentMap<K,V> map( final Class<?> owner ) {
+        if (isAncestor( owner.getClassLoader(), LOCAL_LOADER )) {
+            return shared ;
+        } else {
+            return scoped.get( owner ) ;
+        }
+    }
+
+    /** Return the value for key, or null if there is none.
+     * @param owner The owner of the entry, or null if the entry cannot be
+     * cached.
+     * @param key The key.
+     * @return The value for key, or null.
+     */
+    public V get( final Class<?> owner, final K key ) {
+        if (owner == null) {
+            return null ;
+        }
+
+        return map( owner ).get( key ) ;
+    }
+
+    /** Store value for key, unless there already is a value for key.
+     * @param owner The owner of the entry, or null if the entry cannot be
+     * cached.
+     * @param key The key.
+     * @param value The value.
+     * @return The value now in the map for key.
+     */
+    public V putIfAbsent( final Class<?> owner, final K key, final V value ) {
+        if (owner == null) {
+            return value ;
+        }
+
+        final V old = map( owner ).putIfAbsent( key, value ) ;
+        return old == null ? value : old ;
+    }
+
+    /** Remove the entry for key, if its value is value.
+     * @param owner The owner of the entry, or null if the entry cannot be
+     * cached.
+     * @param key The key.
+     * @param value The value to remove.
+     */
+    public void remove( final Class<?> owner, final K key, final V value ) {
+        if (owner != null) {
+            map( owner ).remove( key, value ) ;
+        }
+    }
+
+    /** Remove all entries.
+     */
+    public void clear() {
+        scoped = makeScoped() ;
+        shared.clear() ;
+    }
+
+    /** The number of entries in the map of classes that are never unloaded
+     * before gmbal.
+     */
+    int sharedSize() {
+        return shared.size() ;
+    }
+
+    /** The entries of the map of classes that are never unloaded before
+     * gmbal.
+     */
+    ConcurrentMap<K,V> sharedEntries() {
+        return shared ;
+    }
+
+    // Returns true if anc is loader, or one of its ancestors.  null is the
+    // bootstrap ClassLoader, which is an ancestor of all ClassLoaders.
+    private static boolean isAncestor( final ClassLoader anc,
+        final ClassLoader loader ) {
+
+        if (anc == null || anc == loader) {
+            return true ;
+        }
+
+        return AccessController.doPrivileged(
+            new PrivilegedAction<Boolean>() {
+                public Boolean run() {
+                    for (ClassLoader cl = loader; cl != null;
+                        cl = cl.getParent()) {
+
+                        if (cl == anc) {
+                            return true ;
+                        }
+                    }
+
+                    return false ;
+                }
+            } ) ;
+    }
+
+    /** Return the class among classes whose ClassLoader is the same as, or
+     * a descendant of, the ClassLoaders of all the others, or null if there
+     * is no such class, because some of the ClassLoaders are unrelated.
+     * @param classes The classes that an entry refers to.  Must not be
+     * empty.
+     * @return The owner of the entry, or null.
+     */
+    static Class<?> owner( final Collection<Class<?>> classes ) {
+        if (classes.isEmpty()) {
+            return null ;
+        }
+
+        Class<?> result = null ;
+        for (Class<?> cls : classes) {
+            if (result == null || isAncestor( result.getClassLoader(),
+                cls.getClassLoader() )) {
+
+                result = cls ;
+            } else if (!isAncestor( cls.getClassLoader(),
+                result.getClassLoader() )) {
+
+                return null ;
+            }
+        }
+
+        return result ;
+    }
+
+    /** Return the owner of an entry that refers to type: the owner of the
+     * classes of type and of its instantiations.
+     * @param type The type.
+     * @return The owner of the entry, or null if it cannot be cached.
+     */
+    public static Class<?> owner( final EvaluatedType type ) {
+        if (type instanceof EvaluatedClassDeclaration) {
+            final EvaluatedClassDeclaration ecd =
+                (EvaluatedClassDeclaration)type ;
+            final List<EvaluatedType> insts = ecd.instantiations() ;
+            if (insts == null || insts.isEmpty()) {
+                return ecd.cls() ;
+            }
+        }
+
+        final List<Class<?>> classes = new ArrayList<Class<?>>() ;
+        addClasses( type, classes ) ;
+        return owner( classes ) ;
+    }
+
+    /** Add the classes of type and of its instantiations to classes.
+     * @param type The type.
+     * @param classes The classes found so far.
+     */
+    static void addClasses( final EvaluatedType type,
+        final List<Class<?>> classes ) {
+
+        addClasses( type, classes, Collections.newSetFromMap(
+            new IdentityHashMap<EvaluatedType,Boolean>() ) ) ;
+    }
+
+    private static void addClasses( final EvaluatedType type,
+        final List<Class<?>> classes, final Set<EvaluatedType> visited ) {
+
+        if (type == null || !visited.add( type )) {
+            return ;
+        }
+
+        if (type instanceof EvaluatedArrayType) {
+            addClasses( ((EvaluatedArrayType)type).componentType(),
+                classes, visited ) ;
+        } else if (type instanceof EvaluatedClassDeclaration) {
+            final EvaluatedClassDeclaration ecd =
+                (EvaluatedClassDeclaration)type ;
+            if (ecd.cls() != null) {
+                classes.add( ecd.cls() ) ;
+            }
+
+            final List<EvaluatedType> insts = ecd.instantiations() ;
+            if (insts != null) {
+                for (EvaluatedType et : insts) {
+                    addClasses( et, classes, visited ) ;
+                }
+            }
+        }
+    }
+}
@@ -13,6 +13,9 @@ package org.glassfish.gmbal.typelib;
 
 import static java.lang.reflect.Modifier.PUBLIC;
 
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.Method;
@@ -34,7 +37,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
 
 import javax.management.ObjectName;
 
@@ -72,17 +74,18 @@ public class TypeEvaluator {
     
     private TypeEvaluator() {}
 
-    private static Map<Class<?>,EvaluatedType> immutableTypes =
+    // Only modified in the static initializer.
+    private static final Map<Class<?>,EvaluatedType> immutableTypes =
         new HashMap<Class<?>,EvaluatedType>() ;
     
     // Cache of representations of classes with bound type variables.
     // A class may be in many EvalMapKeys with different tvar bindings.
-    // XXX EvaluatedClassDeclaration strongly references Class!
-    // Design sketch: Create a custom Map implementation (or just something
-    // with get/put/iterate) that has two maps: a HashMap for system classes,
-    // and a WeakHashMap for non-system classes.
-    private static Map<EvalMapKey,EvaluatedClassDeclaration> evalClassMap =
-        new HashMap<EvalMapKey,EvaluatedClassDeclaration>() ;
+    // Each entry is kept until the ClassLoaders of the classes in its key
+    // are unloaded.  Only completely evaluated classes are stored here: see
+    // TypeEvaluationVisitor.publish.
+    private static final LoaderScopedMap<EvalMapKey,EvaluatedClassDeclaration>
+        evalClassMap =
+            new LoaderScopedMap<EvalMapKey,EvaluatedClassDeclaration>() ;
 
     private static List<EvaluatedType> emptyETList =
             new ArrayList<EvaluatedType>(0) ;
@@ -93,7 +96,7 @@ public class TypeEvaluator {
         immutableTypes.put( cls, ecd ) ;
 
         EvalMapKey key = new EvalMapKey( cls, emptyETList ) ;
-        evalClassMap.put( key, ecd ) ;
+        evalClassMap.putIfAbsent( cls, key, ecd ) ;
     }
     
     // Initialize the map with a few key classes that we do NOT want to evaluate
@@ -186,12 +189,39 @@ public class TypeEvaluator {
     }
 
     private static class EvalMapKey extends Pair<Class<?>,List<EvaluatedType>> {
+        // The class that owns this key in a LoaderScopedMap: the key refers
+        // to its class, and to the classes of its bindings.  The bindings
+        // have their classes and instantiations when the key is built, so
+        // the owner is computed only once.
+        private final Class<?> owner ;
+
         public EvalMapKey( Class<?> cls, List<EvaluatedType> decls ) {
             super( cls, decls ) ;
+            owner = owner( cls, decls ) ;
         }
 
         public static final EvalMapKey OBJECT_KEY = new EvalMapKey(
              Object.class, new ArrayList<EvaluatedType>(0) ) ;
+
+        private static Class<?> owner( final Class<?> cls,
+            final List<EvaluatedType> decls ) {
+
+            if (decls.isEmpty()) {
+                return cls ;
+            }
+
+            final List<Class<?>> classes = new ArrayList<Class<?>>() ;
+            classes.add( cls ) ;
+            for (EvaluatedType et : decls) {
+                LoaderScopedMap.addClasses( et, classes ) ;
+            }
+
+            return LoaderScopedMap.owner( classes ) ;
+        }
+
+        Class<?> owner() {
+            return owner ;
+        }
     }
 
     private static EvaluatedClassDeclaration getECD( Class cls ) {
@@ -249,17 +279,24 @@ public class TypeEvaluator {
         }
     }
 
-    public synchronized static int evalClassMapSize() {
-        return evalClassMap.size() ;
+    /** The number of evaluated classes that are kept for the life of
+     * gmbal: those of the ClassLoader of gmbal and of its ancestors.
+     * Classes of other ClassLoaders are not counted.
+     * @return The number of classes.
+     */
+    public static int evalClassMapSize() {
+        return evalClassMap.sharedSize() ;
     }
 
-    public synchronized static void dumpEvalClassMap() {
+    /** Print the evaluated classes that are counted by evalClassMapSize.
+     */
+    public static void dumpEvalClassMap() {
         System.out.println( "TypeEvaluator: dumping eval class map") ;
         int numSystem = 0 ;
         int total = 0 ;
 
         for (Map.Entry<EvalMapKey,EvaluatedClassDeclaration> entry
-            : evalClassMap.entrySet() ) {
+            : evalClassMap.sharedEntries().entrySet() ) {
 
             System.out.println( "\tKey:" + entry.getKey() + "=>" ) ;
             System.out.println( "\t\t" + entry.getValue() ) ;
@@ -279,25 +316,30 @@ public class TypeEvaluator {
         // System.out.println( ObjectUtility.defaultObjectToString(evalClassMap) ) ;
     }
 
-    // XXX This is another weak hashmap that strongly references its key!
-    private static Map<Class,EvaluatedType> classMap =
-	new WeakHashMap<Class, EvaluatedType>() ;
+    // The result of getEvaluatedType for each class, kept until the class is
+    // unloaded.
+    private static final LoaderScopedMap<Class<?>,EvaluatedType> classMap =
+	new LoaderScopedMap<Class<?>,EvaluatedType>() ;
 
     /** Given any generic java type, evaluate all of its type bounds and
-     * return an evaluated type.
+     * return an evaluated type.  Unrelated classes may be evaluated
+     * concurrently.  If two threads evaluate the same class at the same time,
+     * both return the same result.
      * 
      * @param cls The java type to evaluate
      * @return The evaluated type
      */
-    public static synchronized EvaluatedType getEvaluatedType( Class cls ) {
-        EvaluatedType etype = null ;
+    public static EvaluatedType getEvaluatedType( Class cls ) {
+        EvaluatedType etype = classMap.get( cls, cls ) ;
+        if (etype != null) {
+            return etype ;
+        }
+
         try {
-            etype = classMap.get( cls ) ;
-            if (etype == null) {
-                TypeEvaluationVisitor visitor = new TypeEvaluationVisitor() ;
-                etype = visitor.evaluateType( cls ) ;
-                classMap.put( cls, etype ) ;
-            }
+            TypeEvaluationVisitor visitor = new TypeEvaluationVisitor() ;
+            etype = visitor.evaluateType( cls ) ;
+            visitor.publish() ;
+            etype = classMap.putIfAbsent( cls, cls, etype ) ;
         } catch (Error err) {
             // Make sure that the OperationTracer context for ANY exception
             // is captured here for offline analysis.
@@ -311,6 +353,82 @@ public class TypeEvaluator {
         return etype ;
     }
 
+    // Evaluate the types of method, which is declared by the class evaluated
+    // as cdecl.  bindings are the bindings of the type variables of cdecl.
+    private static EvaluatedMethodDeclaration evaluateMethod(
+        final EvaluatedClassDeclaration cdecl,
+        final Map<String,EvaluatedType> bindings, final Method method ) {
+
+        try {
+            TypeEvaluationVisitor visitor = new TypeEvaluationVisitor() ;
+            EvaluatedMethodDeclaration result = visitor.evaluateMethod( cdecl,
+                bindings, method ) ;
+            visitor.publish() ;
+            return result ;
+        } catch (Error err) {
+            IllegalStateException thr = Exceptions.self.errorInTypeEval(
+                method.getDeclaringClass(), err ) ;
+
+            dumpEvalClassMap();
+            throw thr ;
+        }
+    }
+
+    // A method whose parameter and return types are only evaluated when they
+    // are first needed.  Most methods are never managed, and evaluating
+    // their types can evaluate many other classes.  The name, modifiers and
+    // annotations are available without any evaluation.
+    private static class LazyMethodDeclaration
+        extends EvaluatedMethodDeclarationBase {
+
+        private final EvaluatedClassDeclaration container ;
+        private final Map<String,EvaluatedType> bindings ;
+        private final Method method ;
+        private EvaluatedMethodDeclaration evaluated = null ;
+
+        LazyMethodDeclaration( final EvaluatedClassDeclaration container,
+            final Map<String,EvaluatedType> bindings, final Method method ) {
+
+            this.container = container ;
+            this.bindings = bindings ;
+            this.method = method ;
+        }
+
+        private synchronized EvaluatedMethodDeclaration evaluated() {
+            if (evaluated == null) {
+                evaluated = evaluateMethod( container, bindings, method ) ;
+            }
+
+            return evaluated ;
+        }
+
+        public String name() { return method.getName() ; }
+
+        public int modifiers() { return method.getModifiers() ; }
+
+        public List<EvaluatedType> parameterTypes() {
+            return evaluated().parameterTypes() ;
+        }
+
+        public EvaluatedType returnType() { return evaluated().returnType() ; }
+
+        public EvaluatedClassDeclaration containingClass() { return container ; }
+
+        public Method method() { return method ; }
+
+        public <T extends Annotation> T annotation( Class<T> annotationType ) {
+            return method.getAnnotation( annotationType ) ;
+        }
+
+        public List<Annotation> annotations() {
+            return Arrays.asList( method.getAnnotations() ) ;
+        }
+
+        public AnnotatedElement element() { return method ; }
+
+        public AccessibleObject accessible() { return method ; }
+    }
+
     // Getting PartialDefinitions right is a bit tricky.
     // We need both the Class and the List<Type> in the key, because otherwise
     // we cannot tell the difference between List<List<String>> and
@@ -388,11 +506,58 @@ public class TypeEvaluator {
     private static class TypeEvaluationVisitor  {
         private final Display<String,EvaluatedType> display ;
         private final PartialDefinitions partialDefinitions ;
+        // The classes evaluated by this visitor.  They are only added to
+        // evalClassMap by publish, after the evaluation is complete, so
+        // that other threads never see a partially evaluated class.
+        private final Map<EvalMapKey,EvaluatedClassDeclaration> evaluated ;
         
         public TypeEvaluationVisitor( ) {
             display = new Display<String,EvaluatedType>() ;
 
             partialDefinitions = new PartialDefinitions() ;
+
+            evaluated = new HashMap<EvalMapKey,EvaluatedClassDeclaration>() ;
+        }
+
+        // Make the classes evaluated by this visitor available to other
+        // evaluations.  If another thread published the same class first,
+        // its declaration is kept: both are equal.
+        public void publish() {
+            for (Map.Entry<EvalMapKey,EvaluatedClassDeclaration> entry
+                : evaluated.entrySet()) {
+
+                final EvalMapKey key = entry.getKey() ;
+                evalClassMap.putIfAbsent( key.owner(), key, entry.getValue() ) ;
+            }
+
+            evaluated.clear() ;
+        }
+
+        private EvaluatedClassDeclaration lookupDeclaration(
+            final EvalMapKey key ) {
+
+            final EvaluatedClassDeclaration result = evaluated.get( key ) ;
+            if (result != null) {
+                return result ;
+            }
+
+            return evalClassMap.get( key.owner(), key ) ;
+        }
+
+        // Entry point for the evaluation of a LazyMethodDeclaration.
+        @TraceTypelibEval
+        public EvaluatedMethodDeclaration evaluateMethod(
+            final EvaluatedClassDeclaration cdecl,
+            final Map<String,EvaluatedType> bindings, final Method method ) {
+
+            display.enterScope() ;
+            display.bind( bindings ) ;
+
+            try {
+                return visitMethodDeclaration( cdecl, method ) ;
+            } finally {
+                display.exitScope() ;
+            }
         }
 
         // External entry point into the Visitor.
@@ -679,11 +844,11 @@ public class TypeEvaluator {
                     newDecl.instantiations( blist ) ;
                 }
 
-                result = evalClassMap.get( key ) ;
+                result = lookupDeclaration( key ) ;
                 if (result == null) {
                     message( "No result in evalClassMap" ) ;
 
-                    evalClassMap.put( key, newDecl ) ;
+                    evaluated.put( key, newDecl ) ;
 
                     processClass( newDecl, bindings.getMap(), decl ) ;
 
@@ -727,13 +892,15 @@ public class TypeEvaluator {
 
                 newDecl.fields( newFields ) ;
 
+                // The types of the methods are evaluated on demand.
                 List<EvaluatedMethodDeclaration> newMethods = Algorithms.map(
                     getDeclaredMethods( decl ),
                     new UnaryFunction<Method,EvaluatedMethodDeclaration>() {
                         public EvaluatedMethodDeclaration evaluate(
                             Method md ) {
 
-                            return visitMethodDeclaration( newDecl, md ) ;
+                            return new LazyMethodDeclaration( newDecl,
+                                bindings, md ) ;
                         } } ) ;
 
                 newDecl.methods( newMethods ) ;
@@ -11,15 +11,26 @@
 
 package org.glassfish.gmbal.test;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Inherited;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -31,19 +42,28 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.management.Attribute;
+import javax.management.AttributeChangeNotification;
 import javax.management.AttributeList;
 import javax.management.AttributeNotFoundException;
 import javax.management.Descriptor;
 import javax.management.InstanceNotFoundException;
 import javax.management.IntrospectionException;
+import javax.management.MBeanAttributeInfo;
 import javax.management.MBeanException;
 import javax.management.MBeanInfo;
 import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
 import javax.management.MalformedObjectNameException;
+import javax.management.Notification;
+import javax.management.NotificationListener;
 import javax.management.ObjectName;
 import javax.management.ReflectionException;
 import javax.management.RuntimeOperationsException;
@@ -54,6 +74,7 @@ import javax.management.openmbean.OpenType;
 import javax.management.openmbean.SimpleType;
 import javax.management.openmbean.TabularData;
 import javax.management.openmbean.TabularType;
+import javax.management.timer.Timer;
 
 import org.glassfish.external.amx.AMX;
 import org.glassfish.external.statistics.BoundedRangeStatistic;
@@ -61,7 +82,9 @@ import org.glassfish.external.statistics.impl.BoundedRangeStatisticImpl;
 import org.glassfish.gmbal.AMXClient;
 import org.glassfish.gmbal.AMXMBeanInterface;
 import org.glassfish.gmbal.AMXMetadata;
+import org.glassfish.gmbal.AttributeSnapshot;
 import org.glassfish.gmbal.Description;
+import org.glassfish.gmbal.DescriptorFields;
 import org.glassfish.gmbal.DescriptorKey;
 import org.glassfish.gmbal.GmbalException;
 import org.glassfish.gmbal.GmbalMBean;
@@ -74,6 +97,8 @@ import org.glassfish.gmbal.ManagedObjectManager;
 import org.glassfish.gmbal.ManagedObjectManagerFactory;
 import org.glassfish.gmbal.ManagedOperation;
 import org.glassfish.gmbal.NameValue;
+import org.glassfish.gmbal.RegistrationStatistics;
+import org.glassfish.gmbal.WarmUpReport;
 import org.glassfish.gmbal.impl.ManagedObjectManagerInternal;
 import org.glassfish.gmbal.impl.TypeConverter;
 import org.glassfish.gmbal.impl.TypeConverterImpl;
@@ -756,6 +781,90 @@ public class GmbalTest extends TestCase {
         managedObjectExampleHelper( rootObject ) ;
     }
     
+    public void testManagedObjectExampleDirectDispatch() {
+        System.out.println( "testManagedObjectExampleDirectDispatch" ) ;
+        final String prop = "org.glassfish.gmbal.directDispatch" ;
+        final String old = System.setProperty( prop, "true" ) ;
+        try {
+            final ManagedObjectExample rootObject =
+                new ManagedObjectExample( 12, "Liskov" ) ;
+            managedObjectExampleHelper( rootObject ) ;
+        } finally {
+            if (old == null) {
+                System.clearProperty( prop ) ;
+            } else {
+                System.setProperty( prop, old ) ;
+            }
+        }
+    }
+
+    @ManagedObject
+    public static class DispatchMO {
+        private int value = 0 ;
+
+        @ManagedAttribute
+        public int getValue() {
+            return value ;
+        }
+
+        @ManagedAttribute
+        public void setValue( int value ) {
+            this.value = value ;
+        }
+
+        @ManagedOperation
+        public int add( int delta ) {
+            return value += delta ;
+        }
+
+        @ManagedOperation
+        public void reset() {
+            value = 0 ;
+        }
+    }
+
+    public void testDirectDispatchSetAndInvoke() throws Exception {
+        System.out.println( "testDirectDispatchSetAndInvoke" ) ;
+        final String prop = "org.glassfish.gmbal.directDispatch" ;
+        final String old = System.setProperty( prop, "true" ) ;
+        ManagedObjectManager mom = null ;
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone( "test" ) ;
+            mom.stripPackagePrefix() ;
+            mom.createRoot() ;
+
+            final DispatchMO obj = new DispatchMO() ;
+            final GmbalMBean mb = mom.registerAtRoot( obj, "dispatch" ) ;
+
+            mb.setAttribute( new Attribute( "Value", 5 ) ) ;
+            assertEquals( 5, obj.getValue() ) ;
+            assertEquals( Integer.valueOf( 5 ), mb.getAttribute( "Value" ) ) ;
+            assertEquals( Integer.valueOf( 8 ), mb.invoke( "add",
+                new Object[] { 3 },
+                new String[] { Integer.class.getName() } ) ) ;
+            assertNull( mb.invoke( "reset", null, null ) ) ;
+            assertEquals( 0, obj.getValue() ) ;
+
+            try {
+                mb.invoke( "add", new Object[] { 3 },
+                    new String[] { "long" } ) ;
+                fail( "Operation with wrong signature was invoked" ) ;
+            } catch (IllegalArgumentException exc) {
+                // expected
+            }
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+
+            if (old == null) {
+                System.clearProperty( prop ) ;
+            } else {
+                System.setProperty( prop, old ) ;
+            }
+        }
+    }
+
     public void testManagedObjectExampleDerived() {
         System.out.println( "testManagedObjectExampleDerived" ) ;
         final int num = 12 ;
@@ -2425,36 +2534,53 @@ public class GmbalTest extends TestCase {
     }
 
     @ManagedObject
-    public interface hasMO{}
+    @Description( "Test for overloaded operations" )
+    public static class OverloadBean {
+        private int total = 0 ;
 
-    @ManagedObject
-    public static class AMO {}
+        @NameValue String myName() { return "OverloadBean" ; }
 
-    public static class InhMO implements hasMO {}
+        @ManagedOperation
+        @Description( "Add one value" )
+        int add( int value ) { return total += value ; }
 
-    public void testIsManagedObject() throws IOException {
-        System.out.println( "testEnumBean" ) ;
+        @ManagedOperation
+        @Description( "Add two values" )
+        int add( int value1, int value2 ) { return total += value1 + value2 ; }
+
+        @ManagedOperation
+        @Description( "Reset the total" )
+        void reset() { total = 0 ; }
+    }
+
+    public void testOverloadedOperations() throws Exception {
+        System.out.println( "testOverloadedOperations" ) ;
 
+        OverloadBean ob = new OverloadBean() ;
         ManagedObjectManager mom = null ;
-        Object obj = new Object() ;
-        Object mo = new AMO() ;
-        Object imo = new InhMO() ;
+        final String[] sig1 = { Integer.class.getName() } ;
+        final String[] sig2 = { Integer.class.getName(),
+            Integer.class.getName() } ;
 
         try {
             mom = ManagedObjectManagerFactory.createStandalone("test") ;
             mom.stripPackagePrefix();
+            mom.createRoot( ob ) ;
+            AMXClient amxc = mom.getAMXClient( ob ) ;
 
-            assertTrue( !mom.isManagedObject(obj)) ;
-            assertTrue( mom.isManagedObject(mo));
-            assertTrue( mom.isManagedObject(imo));
+            assertEquals( 3, amxc.invoke( "add", new Object[] { 3 }, sig1 ) ) ;
+            assertEquals( 10, amxc.invoke( "add", new Object[] { 3, 4 },
+                sig2 ) ) ;
+            assertNull( amxc.invoke( "reset", null, null ) ) ;
+            assertEquals( 0, ob.total ) ;
 
-            mom.createRoot() ;
-            
-            assertTrue( !mom.isManagedObject(obj)) ;
-            assertTrue( mom.isManagedObject(mo));
-            assertTrue( mom.isManagedObject(imo));
-        } catch (GmbalException exc) {
-            fail( "Exception: " + exc ) ;
+            try {
+                amxc.invoke( "add", new Object[] { "3" },
+                    new String[] { String.class.getName() } ) ;
+                fail( "Expected exception for bad signature" ) ;
+            } catch (RuntimeException exc) {
+                System.out.println( "Caught expected exception " + exc ) ;
+            }
         } finally {
             if (mom != null) {
                 mom.close() ;
@@ -2463,88 +2589,1398 @@ public class GmbalTest extends TestCase {
     }
 
     @ManagedObject
-    public static class MultiTestClass {
-        private ManagedObjectManager mom ;
-        private String myName ;
+    @Description( "Test for AttributeSnapshot" )
+    public static class SnapshotBean implements AttributeSnapshot {
+        private int snapshots = 0 ;
+        private boolean inSnapshot = false ;
 
-        public MultiTestClass( final ManagedObjectManager mom,
-            final String name ) {
-            
-            this.mom = mom ;
-            myName = name ;
+        @NameValue String myName() { return "SnapshotBean" ; }
+
+        @ManagedAttribute
+        @Description( "True if read inside a snapshot" )
+        boolean getFirst() { return inSnapshot ; }
+
+        @ManagedAttribute
+        @Description( "True if read inside a snapshot" )
+        boolean getSecond() { return inSnapshot ; }
+
+        public synchronized void snapshot( Runnable reader ) {
+            snapshots++ ;
+            inSnapshot = true ;
+            try {
+                reader.run() ;
+            } finally {
+                inSnapshot = false ;
+            }
         }
+    }
 
-        public String toString() {
-            return "MultiTestClass[" + myName + "]" ;
+    public void testAttributeSnapshot() throws IOException {
+        System.out.println( "testAttributeSnapshot" ) ;
+
+        SnapshotBean sb = new SnapshotBean() ;
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+            mom.createRoot( sb ) ;
+            AMXClient amxc = mom.getAMXClient( sb ) ;
+
+            AttributeList list = amxc.getAttributes(
+                new String[] { "First", "Second", "NoSuchAttribute" } ) ;
+            assertEquals( 1, sb.snapshots ) ;
+            assertEquals( 2, list.size() ) ;
+            for (Attribute attr : list.asList()) {
+                assertEquals( Boolean.TRUE, attr.getValue() ) ;
+            }
+
+            // A single getAttribute does not use the snapshot.
+            assertEquals( Boolean.FALSE, amxc.getAttribute( "First" ) ) ;
+            assertEquals( 1, sb.snapshots ) ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
         }
+    }
 
-        @NameValue
-        public String myString() { return myName ; }
+    @ManagedObject
+    @Description( "Test for cached attributes" )
+    public static class CachedBean {
+        private int reads = 0 ;
+        private int value = 0 ;
 
-        public void testRegister( boolean shouldComplete ) {
-            try {
-                mom.registerAtRoot( this );
-                if (!shouldComplete) {
-                    fail( "Register should not succeed for " + this ) ;
-                }
-            } catch (IllegalArgumentException exc) {
-                if (shouldComplete) {
-                    fail( "Register should not throw exception "
-                        + exc + " for " + this ) ;
+        @NameValue String myName() { return "CachedBean" ; }
+
+        @ManagedAttribute
+        @DescriptorFields( "maxAge=600000" )
+        @Description( "A cached value" )
+        int getValue() { reads++ ; return value ; }
+
+        @ManagedAttribute
+        @Description( "A cached value" )
+        void setValue( int value ) { this.value = value ; }
+    }
+
+    public void testCachedAttribute() throws Exception {
+        System.out.println( "testCachedAttribute" ) ;
+
+        CachedBean cb = new CachedBean() ;
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+            mom.createRoot( cb ) ;
+            AMXClient amxc = mom.getAMXClient( cb ) ;
+
+            assertEquals( 0, amxc.getAttribute( "Value" ) ) ;
+            assertEquals( 0, amxc.getAttribute( "Value" ) ) ;
+            assertEquals( 1, cb.reads ) ;
+
+            cb.value = 5 ;
+            assertEquals( 0, amxc.getAttribute( "Value" ) ) ;
+
+            amxc.setAttribute( new Attribute( "Value", 7 ) ) ;
+            assertEquals( 7, amxc.getAttribute( "Value" ) ) ;
+            assertEquals( 7, amxc.getAttribute( "Value" ) ) ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    @ManagedObject
+    @Description( "Test for refreshing cached attributes" )
+    public static class SlowCachedBean {
+        private final AtomicInteger reads = new AtomicInteger() ;
+        private volatile int value = 0 ;
+        // The next read blocks until release is counted down.
+        private final AtomicBoolean block = new AtomicBoolean() ;
+        private final CountDownLatch entered = new CountDownLatch( 1 ) ;
+        private final CountDownLatch release = new CountDownLatch( 1 ) ;
+
+        @NameValue String myName() { return "SlowCachedBean" ; }
+
+        @ManagedAttribute
+        @DescriptorFields( "maxAge=1" )
+        @Description( "A cached value that is slow to read" )
+        int getValue() throws InterruptedException {
+            reads.incrementAndGet() ;
+            if (block.getAndSet( false )) {
+                entered.countDown() ;
+                release.await() ;
+            }
+            return value ;
+        }
+    }
+
+    public void testCachedAttributeRefresh() throws Exception {
+        System.out.println( "testCachedAttributeRefresh" ) ;
+
+        final SlowCachedBean cb = new SlowCachedBean() ;
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+            mom.createRoot( cb ) ;
+            final AMXClient amxc = mom.getAMXClient( cb ) ;
+
+            assertEquals( 0, amxc.getAttribute( "Value" ) ) ;
+            assertEquals( 1, cb.reads.get() ) ;
+
+            cb.value = 5 ;
+            cb.block.set( true ) ;
+            Thread.sleep( 10 ) ; // let the cached value expire
+
+            final Object[] refreshed = new Object[1] ;
+            final Thread refresher = new Thread() {
+                @Override
+                public void run() {
+                    refreshed[0] = amxc.getAttribute( "Value" ) ;
                 }
-            } catch (Throwable thr) {
-                fail( "Unexpected exception " + thr
-                    + " for register of " + this ) ;
+            } ;
+            refresher.start() ;
+            assertTrue( cb.entered.await( 10, TimeUnit.SECONDS ) ) ;
+
+            // While one caller refreshes the value, the others get the old
+            // value without calling the getter.
+            for (int ctr=0; ctr<10; ctr++) {
+                assertEquals( 0, amxc.getAttribute( "Value" ) ) ;
+            }
+            assertEquals( 2, cb.reads.get() ) ;
+
+            cb.release.countDown() ;
+            refresher.join( 10000 ) ;
+            assertEquals( 5, refreshed[0] ) ;
+            assertEquals( 2, cb.reads.get() ) ;
+        } finally {
+            cb.release.countDown() ;
+            if (mom != null) {
+                mom.close() ;
             }
         }
+    }
 
-        public void testUnregister( boolean shouldComplete ) {
-            try {
-                mom.unregister( this );
-                if (!shouldComplete) {
-                    fail( "Unregister should not succeed for " + this ) ;
+    @ManagedObject
+    @Description( "Test for attribute change notification" )
+    public static class NotifyBean {
+        private int reads = 0 ;
+        private int value = 0 ;
+
+        @NameValue String myName() { return "NotifyBean" ; }
+
+        @ManagedAttribute
+        @Description( "A value" )
+        synchronized int getValue() { reads++ ; return value ; }
+
+        @ManagedAttribute
+        @Description( "A value" )
+        synchronized void setValue( int value ) { this.value = value ; }
+    }
+
+    public void testAttributeChangeNotification() throws Exception {
+        System.out.println( "testAttributeChangeNotification" ) ;
+
+        NotifyBean nb = new NotifyBean() ;
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+            mom.createRoot( nb ) ;
+            AMXClient amxc = mom.getAMXClient( nb ) ;
+
+            // No listeners: the old value is not read.
+            amxc.setAttribute( new Attribute( "Value", 1 ) ) ;
+            assertEquals( 0, nb.reads ) ;
+
+            final CountDownLatch latch = new CountDownLatch( 1 ) ;
+            final List<Notification> received = new ArrayList<Notification>() ;
+            NotificationListener listener = new NotificationListener() {
+                public void handleNotification( Notification notification,
+                    Object handback ) {
+                    synchronized (received) {
+                        received.add( notification ) ;
+                    }
+                    latch.countDown() ;
                 }
-            } catch (IllegalArgumentException exc) {
-                if (shouldComplete) {
-                    fail( "Unregister should not throw exception "
-                        + exc + " for " + this ) ;
+            } ;
+
+            mom.getMBeanServer().addNotificationListener(
+                mom.getObjectName( nb ), listener, null, null ) ;
+            amxc.setAttribute( new Attribute( "Value", 2 ) ) ;
+            assertEquals( 1, nb.reads ) ;
+            assertTrue( latch.await( 10, TimeUnit.SECONDS ) ) ;
+
+            synchronized (received) {
+                AttributeChangeNotification acn =
+                    (AttributeChangeNotification)received.get( 0 ) ;
+                assertEquals( "Value", acn.getAttributeName() ) ;
+                assertEquals( 1, acn.getOldValue() ) ;
+                assertEquals( 2, acn.getNewValue() ) ;
+            }
+
+            mom.getMBeanServer().removeNotificationListener(
+                mom.getObjectName( nb ), listener ) ;
+            amxc.setAttribute( new Attribute( "Value", 3 ) ) ;
+            assertEquals( 1, nb.reads ) ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    public void testAttributeChangeListenerError() throws Exception {
+        System.out.println( "testAttributeChangeListenerError" ) ;
+
+        NotifyBean nb = new NotifyBean() ;
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+            mom.createRoot( nb ) ;
+            AMXClient amxc = mom.getAMXClient( nb ) ;
+
+            // The first notification ends the worker thread with an Error.
+            final AtomicBoolean fail = new AtomicBoolean( true ) ;
+            final CountDownLatch latch = new CountDownLatch( 2 ) ;
+            NotificationListener listener = new NotificationListener() {
+                public void handleNotification( Notification notification,
+                    Object handback ) {
+                    latch.countDown() ;
+                    if (fail.getAndSet( false )) {
+                        throw new Error( "Expected Error from listener" ) ;
+                    }
                 }
-            } catch (Throwable thr) {
-                fail( "Unexpected exception " + thr
-                    + " for unregister of " + this ) ;
+            } ;
+
+            mom.getMBeanServer().addNotificationListener(
+                mom.getObjectName( nb ), listener, null, null ) ;
+            amxc.setAttribute( new Attribute( "Value", 1 ) ) ;
+            while (fail.get()) {
+                Thread.sleep( 10 ) ;
+            }
+
+            // A later change must still be delivered, on a new worker.
+            amxc.setAttribute( new Attribute( "Value", 2 ) ) ;
+            assertTrue( latch.await( 10, TimeUnit.SECONDS ) ) ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
             }
         }
     }
 
-    public void testMultiRegistration() throws IOException {
-        System.out.println( "testMultiRegistration" ) ;
+    @ManagedObject
+    @Description( "Test for exceptions from attribute methods" )
+    public static class FailingBean {
+        @NameValue String myName() { return "FailingBean" ; }
+
+        @ManagedAttribute
+        @Description( "A value" )
+        public int getValue() {
+            throw new IllegalStateException( "Expected getter failure" ) ;
+        }
+
+        @ManagedAttribute
+        @Description( "A value" )
+        public void setValue( int value ) throws IOException {
+            throw new IOException( "Expected setter failure" ) ;
+        }
+    }
+
+    // The getter and setter exceptions are wrapped as FacetAccessorImpl
+    // wraps them for a reflective invocation.
+    private static void checkWrapped( Throwable thr,
+        Class<? extends Throwable> expected ) {
+
+        while (thr != null && !(thr instanceof IllegalArgumentException)) {
+            thr = thr.getCause() ;
+        }
+
+        assertNotNull( thr ) ;
+        assertEquals( "Exception on invocation", thr.getMessage() ) ;
+        assertTrue( thr.getCause() instanceof InvocationTargetException ) ;
+        assertTrue( expected.isInstance( thr.getCause().getCause() ) ) ;
+    }
 
+    public void testAttributeMethodException() throws Exception {
+        System.out.println( "testAttributeMethodException" ) ;
+
+        FailingBean fb = new FailingBean() ;
         ManagedObjectManager mom = null ;
 
         try {
             mom = ManagedObjectManagerFactory.createStandalone("test") ;
             mom.stripPackagePrefix();
-            mom.createRoot() ;
-            MultiTestClass obj1 = new MultiTestClass( mom, "1" ) ;
-            MultiTestClass obj1too = new MultiTestClass( mom, "1" ) ;
-            MultiTestClass obj2 = new MultiTestClass( mom, "2" ) ;
+            mom.createRoot( fb ) ;
+            final ObjectName oname = mom.getObjectName( fb ) ;
 
-            obj1.testRegister( true ) ;
-            obj1.testRegister( false ) ;
-            obj1too.testRegister( false ) ;
-            obj2.testRegister( true ) ;
+            try {
+                mom.getMBeanServer().getAttribute( oname, "Value" ) ;
+                fail( "Expected getAttribute to fail" ) ;
+            } catch (Exception exc) {
+                checkWrapped( exc, IllegalStateException.class ) ;
+            }
 
-            obj1.testUnregister( true ) ;
-            obj1.testUnregister( false ) ;
-            obj1too.testUnregister( false ) ;
-            obj2.testUnregister( true ) ;
+            try {
+                mom.getMBeanServer().setAttribute( oname,
+                    new Attribute( "Value", 1 ) ) ;
+                fail( "Expected setAttribute to fail" ) ;
+            } catch (Exception exc) {
+                checkWrapped( exc, IOException.class ) ;
+            }
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
 
-            obj1.testRegister( true ) ;
-            obj1.testRegister( false ) ;
-            obj1too.testRegister( false ) ;
-            obj2.testRegister( true ) ;
-        } catch (GmbalException exc) {
-            fail( "Exception: " + exc ) ;
+    @ManagedObject
+    public interface hasMO{}
+
+    @ManagedObject
+    public static class AMO {}
+
+    public static class InhMO implements hasMO {}
+
+    public void testIsManagedObject() throws IOException {
+        System.out.println( "testEnumBean" ) ;
+
+        ManagedObjectManager mom = null ;
+        Object obj = new Object() ;
+        Object mo = new AMO() ;
+        Object imo = new InhMO() ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+
+            assertTrue( !mom.isManagedObject(obj)) ;
+            assertTrue( mom.isManagedObject(mo));
+            assertTrue( mom.isManagedObject(imo));
+
+            mom.createRoot() ;
+            
+            assertTrue( !mom.isManagedObject(obj)) ;
+            assertTrue( mom.isManagedObject(mo));
+            assertTrue( mom.isManagedObject(imo));
+        } catch (GmbalException exc) {
+            fail( "Exception: " + exc ) ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    public static class AddedMO {}
+
+    public static class AddedMOSub extends AddedMO {}
+
+    public void testAddAnnotationAfterLookup() throws IOException {
+        System.out.println( "testAddAnnotationAfterLookup" ) ;
+
+        ManagedObjectManager mom = null ;
+        Object obj = new AddedMOSub() ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+
+            // The annotations of AddedMOSub are looked up before and after
+            // an annotation is added to its superclass.
+            assertTrue( !mom.isManagedObject(obj)) ;
+            mom.addAnnotation( AddedMO.class,
+                AMO.class.getAnnotation( ManagedObject.class ) ) ;
+            assertTrue( mom.isManagedObject(obj)) ;
+        } catch (GmbalException exc) {
+            fail( "Exception: " + exc ) ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    @ManagedObject
+    public static class BadWarmUpMO {
+        @ManagedAttribute
+        public int getValue( int arg ) { return arg ; }
+    }
+
+    public void testWarmUp() throws IOException {
+        System.out.println( "testWarmUp" ) ;
+
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+
+            final List<Class<?>> classes = new ArrayList<Class<?>>() ;
+            classes.add( AMO.class ) ;
+            classes.add( MultiTestClass.class ) ;
+            classes.add( BadWarmUpMO.class ) ;
+            final WarmUpReport report = mom.warmUp( classes ) ;
+
+            assertEquals( 2, report.getTimes().size() ) ;
+            assertTrue( report.getTimes().containsKey(
+                AMO.class.getName() ) ) ;
+            assertTrue( report.getTimes().containsKey(
+                MultiTestClass.class.getName() ) ) ;
+            assertEquals( 1, report.getErrors().size() ) ;
+            assertTrue( report.getErrors().containsKey(
+                BadWarmUpMO.class.getName() ) ) ;
+
+            // Registration uses the skeletons built by the warm up.
+            mom.createRoot() ;
+            GmbalMBean mb = mom.registerAtRoot( new AMO(), "amo" ) ;
+            assertNotNull( mb ) ;
+        } catch (GmbalException exc) {
+            fail( "Exception: " + exc ) ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    public static class MissingType {}
+
+    @ManagedObject
+    public static class LinkageMO {
+        @ManagedAttribute
+        public MissingType getMissing() { return null ; }
+    }
+
+    // Reads the class index from dir, and defines LinkageMO itself, so that
+    // LinkageMO refers to a MissingType that this loader cannot find.
+    private static class IndexClassLoader extends URLClassLoader {
+        IndexClassLoader( File dir ) throws IOException {
+            super( new URL[] { dir.toURI().toURL() },
+                GmbalTest.class.getClassLoader() ) ;
+        }
+
+        @Override
+        protected Class<?> loadClass( String name, boolean resolve )
+            throws ClassNotFoundException {
+
+            synchronized (getClassLoadingLock( name )) {
+                if (name.equals( MissingType.class.getName() )) {
+                    throw new ClassNotFoundException( name ) ;
+                }
+
+                if (!name.equals( LinkageMO.class.getName() )) {
+                    return super.loadClass( name, resolve ) ;
+                }
+
+                Class<?> result = findLoadedClass( name ) ;
+                if (result == null) {
+                    try {
+                        final InputStream is = getParent().getResourceAsStream(
+                            name.replace( '.', '/' ) + ".class" ) ;
+                        try {
+                            final byte[] bytes = is.readAllBytes() ;
+                            result = defineClass( name, bytes, 0,
+                                bytes.length ) ;
+                        } finally {
+                            is.close() ;
+                        }
+                    } catch (IOException exc) {
+                        throw new ClassNotFoundException( name, exc ) ;
+                    }
+                }
+
+                return result ;
+            }
+        }
+    }
+
+    @ManagedObject
+    @Description( "A class loaded by a ClassLoader that can be unloaded" )
+    public static class UnloadMO {
+        @ManagedAttribute
+        @Description( "A value" )
+        public int getValue() { return 1 ; }
+    }
+
+    // Defines the class named name itself, instead of delegating to the
+    // parent.
+    private static class DefiningClassLoader extends ClassLoader {
+        private final String name ;
+
+        DefiningClassLoader( String name ) {
+            super( GmbalTest.class.getClassLoader() ) ;
+            this.name = name ;
+        }
+
+        @Override
+        protected Class<?> loadClass( String cname, boolean resolve )
+            throws ClassNotFoundException {
+
+            if (!cname.equals( name )) {
+                return super.loadClass( cname, resolve ) ;
+            }
+
+            synchronized (getClassLoadingLock( cname )) {
+                Class<?> result = findLoadedClass( cname ) ;
+                if (result == null) {
+                    try {
+                        final InputStream is = getParent().getResourceAsStream(
+                            cname.replace( '.', '/' ) + ".class" ) ;
+                        try {
+                            final byte[] bytes = is.readAllBytes() ;
+                            result = defineClass( cname, bytes, 0,
+                                bytes.length ) ;
+                        } finally {
+                            is.close() ;
+                        }
+                    } catch (IOException exc) {
+                        throw new ClassNotFoundException( cname, exc ) ;
+                    }
+                }
+
+                return result ;
+            }
+        }
+    }
+
+    // Register and unregister an UnloadMO from a new ClassLoader, and
+    // return a reference to that ClassLoader.
+    private static WeakReference<ClassLoader> registerUnloadable(
+        ManagedObjectManager mom ) throws Exception {
+
+        final ClassLoader loader = new DefiningClassLoader(
+            UnloadMO.class.getName() ) ;
+        final Class<?> cls = loader.loadClass( UnloadMO.class.getName() ) ;
+        assertNotSame( UnloadMO.class, cls ) ;
+
+        final Object obj = cls.getDeclaredConstructor().newInstance() ;
+        mom.registerAtRoot( obj, "unload" ) ;
+        assertEquals( 1, mom.getMBeanServer().getAttribute(
+            mom.getObjectName( obj ), "Value" ) ) ;
+        mom.unregister( obj ) ;
+
+        return new WeakReference<ClassLoader>( loader ) ;
+    }
+
+    public void testClassUnloading() throws Exception {
+        System.out.println( "testClassUnloading" ) ;
+
+        ManagedObjectManager mom = null ;
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+            mom.createRoot() ;
+
+            // The skeletons and TypeConverters of the class must not keep
+            // its ClassLoader reachable while the ManagedObjectManager is
+            // still in use.
+            final WeakReference<ClassLoader> ref = registerUnloadable( mom ) ;
+            for (int ctr=0; ctr<100 && ref.get() != null; ctr++) {
+                System.gc() ;
+                Thread.sleep( 10 ) ;
+            }
+
+            assertNull( ref.get() ) ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    public void testWarmUpClassLoader() throws IOException {
+        System.out.println( "testWarmUpClassLoader" ) ;
+
+        final File dir = Files.createTempDirectory( "gmbal-warmup" ).toFile() ;
+        final File index = new File( dir, "META-INF/gmbal/managed-classes" ) ;
+        assertTrue( index.getParentFile().mkdirs() ) ;
+        Files.write( index.toPath(), Arrays.asList(
+            "# Classes to warm up",
+            AMO.class.getName(),
+            "",
+            "  " + MultiTestClass.class.getName() + "  ",
+            "org.glassfish.gmbal.test.NoSuchClass",
+            LinkageMO.class.getName() ), StandardCharsets.UTF_8 ) ;
+
+        ManagedObjectManager mom = null ;
+        final IndexClassLoader loader = new IndexClassLoader( dir ) ;
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+
+            final WarmUpReport report = mom.warmUp( loader ) ;
+
+            assertEquals( new HashSet<String>( Arrays.asList(
+                AMO.class.getName(), MultiTestClass.class.getName() ) ),
+                report.getTimes().keySet() ) ;
+            assertEquals( 2, report.getErrors().size() ) ;
+            assertTrue( report.getErrors().get(
+                "org.glassfish.gmbal.test.NoSuchClass" ).getCause()
+                instanceof ClassNotFoundException ) ;
+            assertTrue( report.getErrors().get(
+                LinkageMO.class.getName() ).getCause()
+                instanceof NoClassDefFoundError ) ;
+            assertTrue( report.getTotalTime() > 0 ) ;
+        } catch (GmbalException exc) {
+            fail( "Exception: " + exc ) ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+
+            loader.close() ;
+            Files.delete( index.toPath() ) ;
+            Files.delete( index.getParentFile().toPath() ) ;
+            Files.delete( index.getParentFile().getParentFile().toPath() ) ;
+            Files.delete( dir.toPath() ) ;
+        }
+    }
+
+    @ManagedObject
+    public static class MultiTestClass {
+        private ManagedObjectManager mom ;
+        private String myName ;
+
+        public MultiTestClass( final ManagedObjectManager mom,
+            final String name ) {
+            
+            this.mom = mom ;
+            myName = name ;
+        }
+
+        public String toString() {
+            return "MultiTestClass[" + myName + "]" ;
+        }
+
+        @NameValue
+        public String myString() { return myName ; }
+
+        public void testRegister( boolean shouldComplete ) {
+            try {
+                mom.registerAtRoot( this );
+                if (!shouldComplete) {
+                    fail( "Register should not succeed for " + this ) ;
+                }
+            } catch (IllegalArgumentException exc) {
+                if (shouldComplete) {
+                    fail( "Register should not throw exception "
+                        + exc + " for " + this ) ;
+                }
+            } catch (Throwable thr) {
+                fail( "Unexpected exception " + thr
+                    + " for register of " + this ) ;
+            }
+        }
+
+        public void testUnregister( boolean shouldComplete ) {
+            try {
+                mom.unregister( this );
+                if (!shouldComplete) {
+                    fail( "Unregister should not succeed for " + this ) ;
+                }
+            } catch (IllegalArgumentException exc) {
+                if (shouldComplete) {
+                    fail( "Unregister should not throw exception "
+                        + exc + " for " + this ) ;
+                }
+            } catch (Throwable thr) {
+                fail( "Unexpected exception " + thr
+                    + " for unregister of " + this ) ;
+            }
+        }
+    }
+
+    public void testMultiRegistration() throws IOException {
+        System.out.println( "testMultiRegistration" ) ;
+
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+            mom.createRoot() ;
+            MultiTestClass obj1 = new MultiTestClass( mom, "1" ) ;
+            MultiTestClass obj1too = new MultiTestClass( mom, "1" ) ;
+            MultiTestClass obj2 = new MultiTestClass( mom, "2" ) ;
+
+            obj1.testRegister( true ) ;
+            obj1.testRegister( false ) ;
+            obj1too.testRegister( false ) ;
+            obj2.testRegister( true ) ;
+
+            obj1.testUnregister( true ) ;
+            obj1.testUnregister( false ) ;
+            obj1too.testUnregister( false ) ;
+            obj2.testUnregister( true ) ;
+
+            obj1.testRegister( true ) ;
+            obj1.testRegister( false ) ;
+            obj1too.testRegister( false ) ;
+            obj2.testRegister( true ) ;
+        } catch (GmbalException exc) {
+            fail( "Exception: " + exc ) ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    public void testRegisterAll() throws Exception {
+        System.out.println( "testRegisterAll" ) ;
+
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+            mom.createRoot() ;
+
+            MultiTestClass parent = new MultiTestClass( mom, "parent" ) ;
+            mom.registerAtRoot( parent ) ;
+
+            List<Object> objs = new ArrayList<Object>() ;
+            for (int ctr=0; ctr<10; ctr++) {
+                objs.add( new MultiTestClass( mom, "child" + ctr ) ) ;
+            }
+
+            // Two failures: a duplicate name, and a String.
+            MultiTestClass duplicate = new MultiTestClass( mom, "child3" ) ;
+            objs.add( duplicate ) ;
+            objs.add( "child11" ) ;
+
+            Map<Object,RuntimeException> errors = mom.registerAll( parent,
+                objs ) ;
+
+            assertEquals( 2, errors.size() ) ;
+            assertTrue( errors.containsKey( duplicate ) ) ;
+            assertTrue( errors.containsKey( "child11" ) ) ;
+            assertNull( mom.getObjectName( duplicate ) ) ;
+
+            for (Object obj : objs.subList( 0, 10 )) {
+                ObjectName oname = mom.getObjectName( obj ) ;
+                assertNotNull( oname ) ;
+                assertTrue( mom.getMBeanServer().isRegistered( oname ) ) ;
+            }
+
+            mom.unregister( parent ) ;
+            for (Object obj : objs.subList( 0, 10 )) {
+                assertNull( mom.getObjectName( obj ) ) ;
+            }
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    private List<Object> registerChildren( ManagedObjectManager mom,
+        Object parent, int count ) {
+
+        List<Object> result = new ArrayList<Object>() ;
+        for (int ctr=0; ctr<count; ctr++) {
+            result.add( new MultiTestClass( mom, "child" + ctr ) ) ;
+        }
+
+        assertTrue( mom.registerAll( parent, result ).isEmpty() ) ;
+        return result ;
+    }
+
+    public void testUnregisterLargeSubtree() throws Exception {
+        System.out.println( "testUnregisterLargeSubtree" ) ;
+
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+            mom.createRoot() ;
+
+            // Large enough to be unregistered in parallel.
+            MultiTestClass parent = new MultiTestClass( mom, "parent" ) ;
+            mom.registerAtRoot( parent ) ;
+            List<ObjectName> onames = new ArrayList<ObjectName>() ;
+            for (Object obj : registerChildren( mom, parent, 1000 )) {
+                onames.add( mom.getObjectName( obj ) ) ;
+            }
+
+            mom.unregister( parent ) ;
+            for (ObjectName oname : onames) {
+                assertFalse( mom.getMBeanServer().isRegistered( oname ) ) ;
+                assertNull( mom.getObject( oname ) ) ;
+            }
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    public void testDiscard() throws Exception {
+        System.out.println( "testDiscard" ) ;
+
+        ManagedObjectManager mom = null ;
+        MBeanServer server = MBeanServerFactory.newMBeanServer() ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.setMBeanServer( server ) ;
+            mom.stripPackagePrefix();
+            mom.createRoot() ;
+
+            MultiTestClass parent = new MultiTestClass( mom, "parent" ) ;
+            mom.registerAtRoot( parent ) ;
+            Object child = registerChildren( mom, parent, 10 ).get( 0 ) ;
+            ObjectName oname = mom.getObjectName( child ) ;
+
+            // The MBeans are forgotten, but left in the private server.
+            mom.discard() ;
+            assertNull( mom.getRoot() ) ;
+            assertTrue( server.isRegistered( oname ) ) ;
+
+            mom.createRoot() ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    public void testDeferredRegistrationFlush() throws Exception {
+        System.out.println( "testDeferredRegistrationFlush" ) ;
+
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+            mom.createRoot() ;
+            MBeanServer server = mom.getMBeanServer() ;
+            RegistrationStatistics stats = mom.getRegistrationStatistics() ;
+            int flushes = stats.getFlushCount() ;
+
+            mom.suspendJMXRegistration() ;
+            MultiTestClass parent = new MultiTestClass( mom, "parent" ) ;
+            mom.registerAtRoot( parent ) ;
+
+            // Enough children to flush in parallel.
+            List<Object> children = registerChildren( mom, parent, 1000 ) ;
+            Object removed = children.get( 500 ) ;
+            mom.unregister( removed ) ;
+
+            ObjectName parentName = mom.getObjectName( parent ) ;
+            ObjectName childName = mom.getObjectName( children.get( 0 ) ) ;
+            assertFalse( server.isRegistered( parentName ) ) ;
+            assertEquals( 1000, stats.getDeferredRegistrationCount() ) ;
+
+            mom.resumeJMXRegistration() ;
+            assertTrue( server.isRegistered( parentName ) ) ;
+            assertTrue( server.isRegistered( childName ) ) ;
+            assertNull( mom.getObjectName( removed ) ) ;
+            assertEquals( 0, stats.getDeferredRegistrationCount() ) ;
+            assertEquals( 1000, stats.getFlushSize() ) ;
+            assertEquals( 1000, stats.getFlushProgress() ) ;
+            assertEquals( flushes + 1, stats.getFlushCount() ) ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    // An MBeanServer that records the order of registrations, and blocks
+    // the registration of blockName until release is counted down.
+    private static class BlockingServerHandler implements InvocationHandler {
+        private final MBeanServer delegate =
+            MBeanServerFactory.newMBeanServer() ;
+        final List<ObjectName> registered = new ArrayList<ObjectName>() ;
+        final CountDownLatch entered = new CountDownLatch( 1 ) ;
+        final CountDownLatch release = new CountDownLatch( 1 ) ;
+        volatile ObjectName blockName = null ;
+
+        public Object invoke( Object proxy, Method method, Object[] args )
+            throws Throwable {
+
+            if (method.getName().equals( "registerMBean" )) {
+                final ObjectName oname = (ObjectName)args[1] ;
+                if (oname.equals( blockName )) {
+                    entered.countDown() ;
+                    assertTrue( release.await( 10, TimeUnit.SECONDS ) ) ;
+                }
+
+                synchronized (registered) {
+                    registered.add( oname ) ;
+                }
+            }
+
+            try {
+                return method.invoke( delegate, args ) ;
+            } catch (InvocationTargetException exc) {
+                throw exc.getCause() ;
+            }
+        }
+    }
+
+    public void testRegisterDuringFlush() throws Exception {
+        System.out.println( "testRegisterDuringFlush" ) ;
+
+        final BlockingServerHandler handler = new BlockingServerHandler() ;
+        final MBeanServer server = (MBeanServer)Proxy.newProxyInstance(
+            MBeanServer.class.getClassLoader(),
+            new Class<?>[] { MBeanServer.class }, handler ) ;
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.setMBeanServer( server ) ;
+            mom.stripPackagePrefix();
+            mom.createRoot() ;
+
+            // The flush registers first, and then parent.
+            mom.suspendJMXRegistration() ;
+            MultiTestClass first = new MultiTestClass( mom, "first" ) ;
+            mom.registerAtRoot( first ) ;
+            MultiTestClass parent = new MultiTestClass( mom, "parent" ) ;
+            mom.registerAtRoot( parent ) ;
+            ObjectName parentName = mom.getObjectName( parent ) ;
+            handler.blockName = mom.getObjectName( first ) ;
+
+            // Flush on another thread, which blocks while registering first.
+            final ManagedObjectManager fmom = mom ;
+            Thread flusher = new Thread() {
+                @Override
+                public void run() {
+                    fmom.resumeJMXRegistration() ;
+                }
+            } ;
+            flusher.start() ;
+            assertTrue( handler.entered.await( 10, TimeUnit.SECONDS ) ) ;
+
+            // The child must wait for its parent, which has not been
+            // flushed yet.
+            MultiTestClass child = new MultiTestClass( mom, "child" ) ;
+            mom.register( parent, child ) ;
+            ObjectName childName = mom.getObjectName( child ) ;
+            assertFalse( server.isRegistered( childName ) ) ;
+
+            handler.release.countDown() ;
+            flusher.join( 10000 ) ;
+            assertFalse( flusher.isAlive() ) ;
+
+            assertTrue( server.isRegistered( parentName ) ) ;
+            assertTrue( server.isRegistered( childName ) ) ;
+            synchronized (handler.registered) {
+                assertTrue( handler.registered.indexOf( parentName )
+                    < handler.registered.indexOf( childName ) ) ;
+            }
+            assertEquals( 0,
+                mom.getRegistrationStatistics().getDeferredRegistrationCount() ) ;
+        } finally {
+            handler.release.countDown() ;
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    public void testRegisterUnderUnregisteredParent() throws Exception {
+        System.out.println( "testRegisterUnderUnregisteredParent" ) ;
+
+        final BlockingServerHandler handler = new BlockingServerHandler() ;
+        final MBeanServer server = (MBeanServer)Proxy.newProxyInstance(
+            MBeanServer.class.getClassLoader(),
+            new Class<?>[] { MBeanServer.class }, handler ) ;
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.setMBeanServer( server ) ;
+            mom.stripPackagePrefix();
+            mom.createRoot() ;
+
+            MultiTestClass first = new MultiTestClass( mom, "first" ) ;
+            mom.registerAtRoot( first ) ;
+            final ObjectName parentName = new ObjectName(
+                mom.getObjectName( first ).toString().replace( "first",
+                    "parent" ) ) ;
+            handler.blockName = parentName ;
+
+            // Register parent on another thread, which blocks in JMX.
+            final MultiTestClass parent = new MultiTestClass( mom, "parent" ) ;
+            final ManagedObjectManager fmom = mom ;
+            Thread registrar = new Thread() {
+                @Override
+                public void run() {
+                    fmom.registerAtRoot( parent ) ;
+                }
+            } ;
+            registrar.start() ;
+            assertTrue( handler.entered.await( 10, TimeUnit.SECONDS ) ) ;
+
+            // parent cannot be used before it is registered.
+            MultiTestClass child = new MultiTestClass( mom, "child" ) ;
+            try {
+                mom.register( parent, child ) ;
+                fail( "Child registered before its parent" ) ;
+            } catch (IllegalArgumentException exc) {
+                // expected
+            }
+            assertNull( mom.getObjectName( parent ) ) ;
+
+            handler.release.countDown() ;
+            registrar.join( 10000 ) ;
+            assertFalse( registrar.isAlive() ) ;
+
+            assertEquals( parentName, mom.getObjectName( parent ) ) ;
+            mom.register( parent, child ) ;
+            ObjectName childName = mom.getObjectName( child ) ;
+            synchronized (handler.registered) {
+                assertTrue( handler.registered.indexOf( parentName )
+                    < handler.registered.indexOf( childName ) ) ;
+            }
+        } finally {
+            handler.release.countDown() ;
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    public void testRegisterUnderDuplicateParent() throws Exception {
+        System.out.println( "testRegisterUnderDuplicateParent" ) ;
+
+        final MBeanServer server = MBeanServerFactory.newMBeanServer() ;
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.setMBeanServer( server ) ;
+            mom.stripPackagePrefix();
+            mom.createRoot() ;
+            mom.registerAtRoot( new MultiTestClass( mom, "dup" ) ) ;
+            final int count = server.getMBeanCount() ;
+
+            // Each dup has the ObjectName of the registered MBean, so a
+            // child registered under it while it is being registered must
+            // fail, and leave nothing behind.
+            final ManagedObjectManager fmom = mom ;
+            for (int ctr=0; ctr<200; ctr++) {
+                final MultiTestClass dup = new MultiTestClass( mom, "dup" ) ;
+                final MultiTestClass child = new MultiTestClass( mom,
+                    "child" + ctr ) ;
+                final CountDownLatch start = new CountDownLatch( 1 ) ;
+                final AtomicBoolean dupRegistered = new AtomicBoolean() ;
+                Thread registrar = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await() ;
+                            fmom.registerAtRoot( dup ) ;
+                            dupRegistered.set( true ) ;
+                        } catch (InterruptedException exc) {
+                            // ends the test below
+                        } catch (RuntimeException exc) {
+                            // expected
+                        }
+                    }
+                } ;
+                registrar.start() ;
+
+                start.countDown() ;
+                while (registrar.isAlive()) {
+                    try {
+                        mom.register( dup, child ) ;
+                        fail( "Child registered under a duplicate parent" ) ;
+                    } catch (IllegalArgumentException exc) {
+                        // expected
+                    }
+                }
+
+                assertFalse( dupRegistered.get() ) ;
+                assertNull( mom.getObjectName( dup ) ) ;
+                assertNull( mom.getObjectName( child ) ) ;
+            }
+
+            assertEquals( count, (int)server.getMBeanCount() ) ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    public void testFederatedActivation() throws Exception {
+        System.out.println( "testFederatedActivation" ) ;
+
+        ManagedObjectManager mom = null ;
+        MBeanServer server = MBeanServerFactory.newMBeanServer() ;
+        ObjectName rootParentName = new ObjectName( ROOT_PARENT_NAME ) ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createFederated(
+                rootParentName ) ;
+            mom.setMBeanServer( server ) ;
+            mom.stripPackagePrefix();
+            mom.createRoot() ;
+
+            MultiTestClass parent = new MultiTestClass( mom, "parent" ) ;
+            mom.registerAtRoot( parent ) ;
+            List<Object> children = registerChildren( mom, parent, 1000 ) ;
+            ObjectName childName = mom.getObjectName( children.get( 999 ) ) ;
+            assertFalse( server.isRegistered( childName ) ) ;
+
+            // Any MBean will do as the root parent.
+            server.registerMBean( new Timer(), rootParentName ) ;
+            assertTrue( server.isRegistered(
+                mom.getObjectName( mom.getRoot() ) ) ) ;
+            assertTrue( server.isRegistered( mom.getObjectName( parent ) ) ) ;
+            assertTrue( server.isRegistered( childName ) ) ;
+
+            // The whole tree goes away with the root parent, and comes back
+            // with it.
+            server.unregisterMBean( rootParentName ) ;
+            assertFalse( server.isRegistered( mom.getObjectName( parent ) ) ) ;
+            assertFalse( server.isRegistered( childName ) ) ;
+
+            server.registerMBean( new Timer(), rootParentName ) ;
+            assertTrue( server.isRegistered( childName ) ) ;
+
+            // A child registered after activation is registered at once.
+            Object late = new MultiTestClass( mom, "late" ) ;
+            mom.register( parent, late ) ;
+            assertTrue( server.isRegistered( mom.getObjectName( late ) ) ) ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    public void testVirtualRegistration() throws Exception {
+        System.out.println( "testVirtualRegistration" ) ;
+
+        ManagedObjectManager mom = null ;
+        MBeanServer server = MBeanServerFactory.newMBeanServer() ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.setMBeanServer( server ) ;
+            MBeanServer fwd = mom.enableVirtualRegistration() ;
+            mom.stripPackagePrefix();
+            mom.createRoot() ;
+
+            MultiTestClass parent = new MultiTestClass( mom, "parent" ) ;
+            mom.registerAtRoot( parent ) ;
+            ObjectName oname = mom.getObjectName( parent ) ;
+
+            // Only the forwarder knows about the MBean.
+            assertFalse( server.isRegistered( oname ) ) ;
+            assertTrue( fwd.isRegistered( oname ) ) ;
+            assertEquals( "parent", fwd.getAttribute( oname, "Name" ) ) ;
+            assertNotNull( fwd.getMBeanInfo( oname ) ) ;
+            assertTrue( fwd.queryNames( new ObjectName( "test:*" ), null )
+                .contains( oname ) ) ;
+
+            mom.unregister( parent ) ;
+            assertFalse( fwd.isRegistered( oname ) ) ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    public void testConcurrentSkeletons() throws Exception {
+        System.out.println( "testConcurrentSkeletons" ) ;
+
+        final int numThreads = 8 ;
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+            mom.createRoot() ;
+
+            // All threads start at once, so that the skeletons of both
+            // classes are requested concurrently.
+            final ManagedObjectManager fmom = mom ;
+            final CountDownLatch start = new CountDownLatch( 1 ) ;
+            final List<Throwable> errors = new ArrayList<Throwable>() ;
+            final MultiTestClass[] objs = new MultiTestClass[numThreads] ;
+            final Thread[] threads = new Thread[numThreads] ;
+            for (int ctr=0; ctr<numThreads; ctr++) {
+                final int index = ctr ;
+                objs[ctr] = new MultiTestClass( mom, "M" + ctr ) ;
+                threads[ctr] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await() ;
+                            fmom.registerAtRoot( objs[index] ) ;
+                            fmom.registerAtRoot(
+                                new NamedRootObject( "N" + index, index ) ) ;
+                        } catch (Throwable thr) {
+                            synchronized (errors) {
+                                errors.add( thr ) ;
+                            }
+                        }
+                    }
+                } ;
+                threads[ctr].start() ;
+            }
+
+            start.countDown() ;
+            for (Thread thread : threads) {
+                thread.join() ;
+            }
+
+            assertTrue( errors.toString(), errors.isEmpty() ) ;
+
+            // Every MBean has the same skeleton, composed with the AMX one.
+            final MBeanServer server = mom.getMBeanServer() ;
+            final MBeanInfo info = server.getMBeanInfo(
+                mom.getObjectName( objs[0] ) ) ;
+            for (MultiTestClass obj : objs) {
+                ObjectName oname = mom.getObjectName( obj ) ;
+                assertEquals( info, server.getMBeanInfo( oname ) ) ;
+                assertEquals( obj.myString(),
+                    server.getAttribute( oname, "Name" ) ) ;
+            }
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    public static class MetadataBeanSub extends MetadataBean {
+        public MetadataBeanSub( String name ) {
+            super( name ) ;
+        }
+    }
+
+    private static Set<String> attributeNames( MBeanInfo info ) {
+        final Set<String> result = new HashSet<String>() ;
+        for (MBeanAttributeInfo ainfo : info.getAttributes()) {
+            result.add( ainfo.getName() ) ;
+        }
+        return result ;
+    }
+
+    public void testGeneratedMetadata() throws Exception {
+        System.out.println( "testGeneratedMetadata" ) ;
+
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+            mom.createRoot() ;
+
+            // MetadataBean_GmbalMetadata does not list getHidden.
+            final MetadataBean bean = new MetadataBean( "withMetadata" ) ;
+            mom.registerAtRoot( bean ) ;
+            final ObjectName oname = mom.getObjectName( bean ) ;
+            final MBeanServer server = mom.getMBeanServer() ;
+            final Set<String> names = attributeNames(
+                server.getMBeanInfo( oname ) ) ;
+            assertTrue( names.contains( "Count" ) ) ;
+            assertFalse( names.contains( "Hidden" ) ) ;
+            assertEquals( "withMetadata", server.getAttribute( oname, "Name" ) ) ;
+            assertEquals( 3, server.invoke( oname, "increment",
+                new Object[] { 3 },
+                new String[] { Integer.class.getName() } ) ) ;
+
+            // The subclass has no metadata, so all of its members are
+            // analyzed.
+            final MetadataBean sub = new MetadataBeanSub( "withoutMetadata" ) ;
+            mom.registerAtRoot( sub ) ;
+            final Set<String> subNames = attributeNames(
+                server.getMBeanInfo( mom.getObjectName( sub ) ) ) ;
+            assertTrue( subNames.contains( "Count" ) ) ;
+            assertTrue( subNames.contains( "Hidden" ) ) ;
+        } finally {
+            if (mom != null) {
+                mom.close() ;
+            }
+        }
+    }
+
+    public void testConcurrentRegistration() throws Exception {
+        System.out.println( "testConcurrentRegistration" ) ;
+
+        final int numParents = 4 ;
+        final int numChildren = 100 ;
+        ManagedObjectManager mom = null ;
+
+        try {
+            mom = ManagedObjectManagerFactory.createStandalone("test") ;
+            mom.stripPackagePrefix();
+            mom.createRoot() ;
+
+            final ManagedObjectManager fmom = mom ;
+            final MultiTestClass[] parents = new MultiTestClass[numParents] ;
+            final MultiTestClass[][] children =
+                new MultiTestClass[numParents][numChildren] ;
+            for (int ctr=0; ctr<numParents; ctr++) {
+                parents[ctr] = new MultiTestClass( mom, "P" + ctr ) ;
+                mom.registerAtRoot( parents[ctr] ) ;
+                for (int ctr2=0; ctr2<numChildren; ctr2++) {
+                    children[ctr][ctr2] = new MultiTestClass( mom,
+                        "C" + ctr + "_" + ctr2 ) ;
+                }
+            }
+
+            // Register the children of each parent in its own thread.
+            final List<Throwable> errors = new ArrayList<Throwable>() ;
+            final Thread[] threads = new Thread[numParents] ;
+            for (int ctr=0; ctr<numParents; ctr++) {
+                final int index = ctr ;
+                threads[ctr] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (MultiTestClass child : children[index]) {
+                                fmom.register( parents[index], child ) ;
+                                assertNotNull( fmom.getObjectName( child ) ) ;
+                            }
+                        } catch (Throwable thr) {
+                            synchronized (errors) {
+                                errors.add( thr ) ;
+                            }
+                        }
+                    }
+                } ;
+                threads[ctr].start() ;
+            }
+
+            for (Thread thread : threads) {
+                thread.join() ;
+            }
+
+            assertTrue( errors.toString(), errors.isEmpty() ) ;
+
+            for (int ctr=0; ctr<numParents; ctr++) {
+                for (MultiTestClass child : children[ctr]) {
+                    ObjectName oname = mom.getObjectName( child ) ;
+                    assertTrue( mom.getMBeanServer().isRegistered( oname ) ) ;
+                    assertSame( child, mom.getObject( oname ) ) ;
+                }
+
+                mom.unregister( parents[ctr] ) ;
+                for (MultiTestClass child : children[ctr]) {
+                    assertNull( mom.getObjectName( child ) ) ;
+                }
+            }
         } finally {
             if (mom != null) {
                 mom.close() ;
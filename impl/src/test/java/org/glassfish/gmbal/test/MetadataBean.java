@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.test;
+
+import org.glassfish.gmbal.Description;
+import org.glassfish.gmbal.ManagedAttribute;
+import org.glassfish.gmbal.ManagedObject;
+import org.glassfish.gmbal.ManagedOperation;
+import org.glassfish.gmbal.NameValue;
+
+/** A managed class with hand written generated metadata: see
+ * MetadataBean_GmbalMetadata.
+ */
+@ManagedObject
+@Description( "Managed class with generated metadata" )
+public class MetadataBean {
+    private final String name ;
+    private int count = 0 ;
+
+    public MetadataBean( String name ) {
+        this.name = name ;
+    }
+
+    @NameValue
+    public String name() {
+        return name ;
+    }
+
+    @ManagedAttribute
+    @Description( "A counter" )
+    public synchronized int getCount() {
+        return count ;
+    }
+
+    @ManagedAttribute
+    @Description( "Not listed in the metadata" )
+    public String getHidden() {
+        return "hidden" ;
+    }
+
+    @ManagedOperation
+    @Description( "Increment the counter by delta" )
+    public synchronized int increment( int delta ) {
+        count += delta ;
+        return count ;
+    }
+}
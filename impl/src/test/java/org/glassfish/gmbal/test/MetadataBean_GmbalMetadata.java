@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.test;
+
+/** The metadata that gmbal-processor would generate for MetadataBean, except
+ * that getHidden is left out, so that a test can tell whether gmbal used
+ * this metadata.
+ */
+public final class MetadataBean_GmbalMetadata {
+    private MetadataBean_GmbalMetadata() {}
+
+    public static final int VERSION = 1 ;
+
+    public static final String[] CLASSES = {
+        "org.glassfish.gmbal.test.MetadataBean",
+        "java.lang.Object",
+    } ;
+
+    public static final String[] MEMBERS = {
+        "org.glassfish.gmbal.test.MetadataBean.name()",
+        "org.glassfish.gmbal.test.MetadataBean.getCount()",
+        "org.glassfish.gmbal.test.MetadataBean.increment(int)",
+    } ;
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.test.typelib;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import org.glassfish.gmbal.typelib.DeclarationFactory;
+import org.glassfish.gmbal.typelib.EvaluatedClassAnalyzer;
+import org.glassfish.gmbal.typelib.EvaluatedClassDeclaration;
+import org.glassfish.gmbal.typelib.EvaluatedFieldDeclaration;
+import org.glassfish.gmbal.typelib.EvaluatedMethodDeclaration;
+import org.glassfish.gmbal.typelib.TypeEvaluator;
+
+import junit.framework.TestCase;
+
+/** Tests for the linearization that EvaluatedClassAnalyzer keeps with the
+ * first class it analyzes.
+ */
+public class EvaluatedClassAnalyzerTest extends TestCase {
+    public EvaluatedClassAnalyzerTest(String testName) {
+        super(testName);
+    }
+
+    private static final Predicate<EvaluatedClassDeclaration>
+        ALL_CLASSES = new Predicate<EvaluatedClassDeclaration>() {
+            public boolean test( EvaluatedClassDeclaration arg ) {
+                return true ;
+            }
+        } ;
+
+    private static final Predicate<EvaluatedMethodDeclaration>
+        GETTERS = new Predicate<EvaluatedMethodDeclaration>() {
+            public boolean test( EvaluatedMethodDeclaration arg ) {
+                return arg.name().startsWith( "get" ) ;
+            }
+        } ;
+
+    private static final Predicate<EvaluatedFieldDeclaration>
+        ALL_FIELDS = new Predicate<EvaluatedFieldDeclaration>() {
+            public boolean test( EvaluatedFieldDeclaration arg ) {
+                return true ;
+            }
+        } ;
+
+    private static EvaluatedClassDeclaration ecdecl( String name,
+        List<EvaluatedClassDeclaration> inheritance ) {
+
+        return DeclarationFactory.ecdecl( Modifier.PUBLIC, name, inheritance,
+            new ArrayList<EvaluatedMethodDeclaration>(),
+            new ArrayList<EvaluatedFieldDeclaration>(), Object.class,
+            false ) ;
+    }
+
+    public void testLinearizationReused() {
+        System.out.println( "testLinearizationReused" ) ;
+
+        final EvaluatedClassDeclaration sup = ecdecl( "Sup",
+            new ArrayList<EvaluatedClassDeclaration>() ) ;
+        final EvaluatedClassDeclaration other = ecdecl( "Other",
+            new ArrayList<EvaluatedClassDeclaration>() ) ;
+        final List<EvaluatedClassDeclaration> inh =
+            new ArrayList<EvaluatedClassDeclaration>() ;
+        final EvaluatedClassDeclaration cls = ecdecl( "Cls", inh ) ;
+
+        assertEquals( Arrays.asList( cls ),
+            new EvaluatedClassAnalyzer( cls ).findClasses( ALL_CLASSES ) ) ;
+
+        // Change the inheritance without telling cls: an analyzer for the
+        // same roots reuses the old linearization, so it does not see sup.
+        inh.add( sup ) ;
+        assertEquals( Arrays.asList( cls ),
+            new EvaluatedClassAnalyzer( cls ).findClasses( ALL_CLASSES ) ) ;
+
+        // Different roots starting with cls are linearized separately.
+        final List<EvaluatedClassDeclaration> both =
+            new EvaluatedClassAnalyzer( Arrays.asList( cls, other ) )
+                .findClasses( ALL_CLASSES ) ;
+        assertEquals( 3, both.size() ) ;
+        assertTrue( both.containsAll( Arrays.asList( cls, sup, other ) ) ) ;
+
+        // Setting the inheritance discards the linearizations of cls.
+        cls.inheritance( inh ) ;
+        assertEquals( Arrays.asList( cls, sup ),
+            new EvaluatedClassAnalyzer( cls ).findClasses( ALL_CLASSES ) ) ;
+    }
+
+    public interface Named {
+        String getName() ;
+    }
+
+    // TypeEvaluator only keeps final fields of immutable types.
+    public static class Base implements Named {
+        public final int baseField = 0 ;
+        public String getName() { return "base" ; }
+        public int getBase() { return 1 ; }
+        public void reset() {}
+    }
+
+    public static class Derived extends Base {
+        public final int derivedField = 0 ;
+        public int getDerived() { return 2 ; }
+    }
+
+    // Another root, as listed by @IncludeSubclass.
+    public static class Included implements Named {
+        public final int includedField = 0 ;
+        public String getName() { return "included" ; }
+        public int getIncluded() { return 3 ; }
+    }
+
+    public void testFindMembersMatchesPerClassSearch() {
+        System.out.println( "testFindMembersMatchesPerClassSearch" ) ;
+
+        final List<EvaluatedClassDeclaration> roots = Arrays.asList(
+            (EvaluatedClassDeclaration)TypeEvaluator.getEvaluatedType(
+                Derived.class ),
+            (EvaluatedClassDeclaration)TypeEvaluator.getEvaluatedType(
+                Included.class ) ) ;
+
+        // Search twice, so that the second search uses the members kept
+        // with the linearization.
+        for (int ctr=0; ctr<2; ctr++) {
+            final EvaluatedClassAnalyzer ca =
+                new EvaluatedClassAnalyzer( roots ) ;
+            final List<EvaluatedClassDeclaration> classes =
+                ca.findClasses( ALL_CLASSES ) ;
+
+            // The search before linearizations were kept: each class
+            // in turn, in linearized order.
+            final List<EvaluatedMethodDeclaration> methods =
+                new ArrayList<EvaluatedMethodDeclaration>() ;
+            final List<EvaluatedFieldDeclaration> fields =
+                new ArrayList<EvaluatedFieldDeclaration>() ;
+            for (EvaluatedClassDeclaration cls : classes) {
+                for (EvaluatedMethodDeclaration m : cls.methods()) {
+                    if (GETTERS.test( m )) {
+                        methods.add( m ) ;
+                    }
+                }
+
+                fields.addAll( cls.fields() ) ;
+            }
+
+            assertEquals( methods, ca.findMethods( GETTERS ) ) ;
+            assertEquals( fields, ca.findFields( ALL_FIELDS ) ) ;
+            assertEquals( 6, methods.size() ) ;
+            assertEquals( 3, fields.size() ) ;
+        }
+    }
+}
@@ -11,7 +11,17 @@
 
 package org.glassfish.gmbal.test.typelib;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.glassfish.gmbal.typelib.EvaluatedClassDeclaration;
+import org.glassfish.gmbal.typelib.EvaluatedMethodDeclaration;
 import org.glassfish.gmbal.typelib.EvaluatedType;
+import org.glassfish.gmbal.typelib.ForceTypelibError;
 import org.glassfish.gmbal.typelib.TypeEvaluator;
 
 import junit.framework.TestCase;
@@ -129,6 +139,92 @@ public class MoreTypeEvalTests extends TestCase {
             type.toString() ) ;
     }
 
+    public static class Concurrent1 {
+        public List<Concurrent2> getThing() { return null ; }
+    }
+
+    public static class Concurrent2 extends ArrayList<Concurrent1> {
+        public Concurrent1[] getThing() { return null ; }
+    }
+
+    public static class Concurrent3<T extends Concurrent3<T>> {
+        public T getThing() { return null ; }
+    }
+
+    public static class Concurrent4 extends Concurrent3<Concurrent4> {
+        public Concurrent2 getOther() { return null ; }
+    }
+
+    public void testConcurrentEvaluation() throws Exception {
+        System.out.println( "testConcurrentEvaluation") ;
+        final Class<?>[] classes = { Concurrent1.class, Concurrent2.class,
+            Concurrent3.class, Concurrent4.class } ;
+        final int threads = 8 ;
+        final CyclicBarrier barrier = new CyclicBarrier( threads ) ;
+        final ExecutorService exec = Executors.newFixedThreadPool( threads ) ;
+        try {
+            final List<Future<EvaluatedType[]>> futures =
+                new ArrayList<Future<EvaluatedType[]>>() ;
+            for (int ctr=0; ctr<threads; ctr++) {
+                final int offset = ctr ;
+                futures.add( exec.submit( new Callable<EvaluatedType[]>() {
+                    public EvaluatedType[] call() throws Exception {
+                        final EvaluatedType[] result =
+                            new EvaluatedType[classes.length] ;
+                        barrier.await() ;
+                        for (int ctr2=0; ctr2<classes.length; ctr2++) {
+                            final int index = (ctr2 + offset) % classes.length ;
+                            result[index] = TypeEvaluator.getEvaluatedType(
+                                classes[index] ) ;
+                        }
+                        return result ;
+                    }
+                } ) ) ;
+            }
+
+            final EvaluatedType[] first = futures.get( 0 ).get() ;
+            for (Future<EvaluatedType[]> future : futures) {
+                final EvaluatedType[] result = future.get() ;
+                for (int ctr=0; ctr<classes.length; ctr++) {
+                    assertSame( first[ctr], result[ctr] ) ;
+                    assertSame( first[ctr],
+                        TypeEvaluator.getEvaluatedType( classes[ctr] ) ) ;
+                }
+            }
+        } finally {
+            exec.shutdown() ;
+        }
+    }
+
+    @ForceTypelibError
+    public static class Unevaluated {
+    }
+
+    public static class LazyMembers {
+        public int getThing() { return 0 ; }
+
+        public Unevaluated getOther() { return null ; }
+    }
+
+    public void testLazyMethodEvaluation() {
+        System.out.println( "testLazyMethodEvaluation") ;
+        // Evaluating the class must not evaluate Unevaluated.
+        EvaluatedClassDeclaration ecd = (EvaluatedClassDeclaration)
+            TypeEvaluator.getEvaluatedType( LazyMembers.class ) ;
+        EvaluatedMethodDeclaration thing =
+            TestTypelibDecls.getMethod( ecd, "getThing" ) ;
+        EvaluatedMethodDeclaration other =
+            TestTypelibDecls.getMethod( ecd, "getOther" ) ;
+        assertNotNull( other ) ;
+        assertEquals( EvaluatedType.EINT, thing.returnType() ) ;
+
+        try {
+            other.returnType() ;
+            fail( "Expected an exception" ) ;
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
     public void testComplexType() {
         try {
             System.out.println( "testComplexType1") ;
@@ -0,0 +1,15 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+module org.glassfish.gmbal.processor {
+    requires java.compiler;
+
+    provides javax.annotation.processing.Processor with org.glassfish.gmbal.processor.MetadataProcessor;
+}
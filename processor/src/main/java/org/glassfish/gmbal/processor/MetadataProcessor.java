@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.processor;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/** Generates the metadata that lets gmbal find the managed members of a
+ * class without searching all of the members of its superclasses.  For
+ * each class C whose inheritance contains a class annotated with
+ * @ManagedObject or @ManagedData, this processor writes a class
+ * C_GmbalMetadata in the package of C, which lists the names of the
+ * classes in the inheritance of C, and the methods and fields in those
+ * classes that are annotated with @ManagedAttribute, @ManagedOperation or
+ * @NameValue.  See org.glassfish.gmbal.impl.GeneratedMetadata for the
+ * format.
+ * <P>
+ * No metadata is written for classes whose inheritance uses
+ * @IncludeSubclass, @InheritedAttribute or @InheritedAttributes; gmbal
+ * analyzes those classes completely at runtime, as it does all classes
+ * that were compiled without this processor.
+ * <P>
+ * The binary names of all of these classes, including those without
+ * metadata, are also written to the resource META-INF/gmbal/managed-classes,
+ * one per line, which ManagedObjectManager.warmUp( ClassLoader ) reads.
+ */
+@SupportedAnnotationTypes( "*" )
+public class MetadataProcessor extends AbstractProcessor {
+    static final String SUFFIX = "_GmbalMetadata" ;
+    static final int VERSION = 1 ;
+    static final String CLASS_INDEX = "META-INF/gmbal/managed-classes" ;
+
+    private static final String PACKAGE = "org.glassfish.gmbal." ;
+
+    private static final Set<String> MANAGED_TYPES = new HashSet<String>(
+        Arrays.asList( PACKAGE + "ManagedObject", PACKAGE + "ManagedData" ) ) ;
+
+    private static final Set<String> MANAGED_MEMBERS = new HashSet<String>(
+        Arrays.asList( PACKAGE + "ManagedAttribute",
+            PACKAGE + "ManagedOperation", PACKAGE + "NameValue" ) ) ;
+
+    private static final Set<String> UNSUPPORTED_TYPES = new HashSet<String>(
+        Arrays.asList( PACKAGE + "IncludeSubclass",
+            PACKAGE + "InheritedAttribute", PACKAGE + "InheritedAttributes" ) ) ;
+
+    private Elements elements ;
+    private Types types ;
+    // Binary names of the classes whose metadata has already been written.
+    private final Set<String> written = new HashSet<String>() ;
+    // Binary names of all managed classes, for the CLASS_INDEX.
+    private final Set<String> managedClasses = new TreeSet<String>() ;
+
+    @Override
+    public synchronized void init( ProcessingEnvironment env ) {
+        super.init( env ) ;
+        elements = env.getElementUtils() ;
+        types = env.getTypeUtils() ;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported() ;
+    }
+
+    @Override
+    public boolean process( Set<? extends TypeElement> annotations,
+        RoundEnvironment roundEnv ) {
+
+        for (Element elem : roundEnv.getRootElements()) {
+            processType( elem ) ;
+        }
+
+        if (roundEnv.processingOver() && !managedClasses.isEmpty()) {
+            writeClassIndex() ;
+        }
+
+        // Never claim the annotations: other processors may need them too.
+        return false ;
+    }
+
+    private void processType( final Element elem ) {
+        if (!elem.getKind().isClass() && !elem.getKind().isInterface()) {
+            return ;
+        }
+
+        final TypeElement type = (TypeElement)elem ;
+        if (type.getKind() != ElementKind.ANNOTATION_TYPE) {
+            writeMetadata( type ) ;
+        }
+
+        for (Element member : type.getEnclosedElements()) {
+            processType( member ) ;
+        }
+    }
+
+    private static boolean hasAnnotation( final Element elem,
+        final Set<String> names ) {
+
+        for (AnnotationMirror am : elem.getAnnotationMirrors()) {
+            final TypeElement atype =
+                (TypeElement)am.getAnnotationType().asElement() ;
+            if (names.contains( atype.getQualifiedName().toString() )) {
+                return true ;
+            }
+        }
+
+        return false ;
+    }
+
+    // The class and all of its superclasses and superinterfaces, in the
+    // same way as Class.getGenericSuperclass and getGenericInterfaces.
+    private void addInheritance( final TypeElement type,
+        final Set<TypeElement> result ) {
+
+        if (!result.add( type )) {
+            return ;
+        }
+
+        final List<TypeMirror> supers = new ArrayList<TypeMirror>() ;
+        supers.add( type.getSuperclass() ) ;
+        supers.addAll( type.getInterfaces() ) ;
+        for (TypeMirror sup : supers) {
+            if (sup.getKind() == TypeKind.DECLARED) {
+                addInheritance( (TypeElement)((DeclaredType)sup).asElement(),
+                    result ) ;
+            }
+        }
+    }
+
+    private String binaryName( final TypeElement type ) {
+        return elements.getBinaryName( type ).toString() ;
+    }
+
+    // Same as Class.getTypeName() for the erasure of type.
+    private String typeName( final TypeMirror type ) {
+        final TypeMirror erased = types.erasure( type ) ;
+        switch (erased.getKind()) {
+            case ARRAY :
+                return typeName( ((ArrayType)erased).getComponentType() )
+                    + "[]" ;
+            case DECLARED :
+                return binaryName(
+                    (TypeElement)((DeclaredType)erased).asElement() ) ;
+            default :
+                return erased.toString() ;
+        }
+    }
+
+    private String memberName( final TypeElement type, final Element member ) {
+        final StringBuilder sb = new StringBuilder() ;
+        sb.append( binaryName( type ) ) ;
+        sb.append( '.' ) ;
+        sb.append( member.getSimpleName() ) ;
+        if (member.getKind() == ElementKind.METHOD) {
+            sb.append( '(' ) ;
+            boolean first = true ;
+            for (VariableElement param
+                : ((ExecutableElement)member).getParameters()) {
+
+                if (first) {
+                    first = false ;
+                } else {
+                    sb.append( ',' ) ;
+                }
+                sb.append( typeName( param.asType() ) ) ;
+            }
+            sb.append( ')' ) ;
+        }
+
+        return sb.toString() ;
+    }
+
+    private void writeMetadata( final TypeElement type ) {
+        final Set<TypeElement> inheritance =
+            new LinkedHashSet<TypeElement>() ;
+        addInheritance( type, inheritance ) ;
+
+        boolean managed = false ;
+        boolean unsupported = false ;
+        for (TypeElement te : inheritance) {
+            unsupported |= hasAnnotation( te, UNSUPPORTED_TYPES ) ;
+            managed |= hasAnnotation( te, MANAGED_TYPES ) ;
+        }
+
+        final String name = binaryName( type ) ;
+        if (!managed) {
+            return ;
+        }
+
+        managedClasses.add( name ) ;
+        if (unsupported || !written.add( name )) {
+            return ;
+        }
+
+        final List<String> classes = new ArrayList<String>() ;
+        final List<String> members = new ArrayList<String>() ;
+        for (TypeElement te : inheritance) {
+            classes.add( binaryName( te ) ) ;
+            for (Element member : te.getEnclosedElements()) {
+                final ElementKind kind = member.getKind() ;
+                if ((kind == ElementKind.METHOD || kind == ElementKind.FIELD)
+                    && hasAnnotation( member, MANAGED_MEMBERS )) {
+
+                    members.add( memberName( te, member ) ) ;
+                }
+            }
+        }
+
+        final PackageElement pkg = elements.getPackageOf( type ) ;
+        final String pkgName = pkg.isUnnamed() ? ""
+            : pkg.getQualifiedName().toString() ;
+        final String className = (pkgName.length() == 0 ? name
+            : name.substring( pkgName.length() + 1 )) + SUFFIX ;
+
+        try {
+            final JavaFileObject file = processingEnv.getFiler()
+                .createSourceFile( name + SUFFIX, type ) ;
+            final PrintWriter pw = new PrintWriter( file.openWriter() ) ;
+            try {
+                write( pw, pkgName, className, type, classes, members ) ;
+            } finally {
+                pw.close() ;
+            }
+        } catch (IOException exc) {
+            processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR,
+                "Could not write gmbal metadata for " + name + ": " + exc,
+                type ) ;
+        }
+    }
+
+    private void writeClassIndex() {
+        try {
+            final FileObject file = processingEnv.getFiler().createResource(
+                StandardLocation.CLASS_OUTPUT, "", CLASS_INDEX ) ;
+            final PrintWriter pw = new PrintWriter( new OutputStreamWriter(
+                file.openOutputStream(), StandardCharsets.UTF_8 ) ) ;
+            try {
+                pw.println( "# Generated by " + MetadataProcessor.class.getName()
+                    + ".  Do not edit." ) ;
+                for (String name : managedClasses) {
+                    pw.println( name ) ;
+                }
+            } finally {
+                pw.close() ;
+            }
+        } catch (IOException exc) {
+            processingEnv.getMessager().printMessage( Diagnostic.Kind.ERROR,
+                "Could not write " + CLASS_INDEX + ": " + exc ) ;
+        }
+    }
+
+    private static void writeArray( final PrintWriter pw, final String name,
+        final List<String> values ) {
+
+        pw.println( "    public static final String[] " + name + " = {" ) ;
+        for (String value : values) {
+            pw.println( "        \"" + value + "\"," ) ;
+        }
+        pw.println( "    } ;" ) ;
+    }
+
+    private static void write( final PrintWriter pw, final String pkgName,
+        final String className, final TypeElement type,
+        final List<String> classes, final List<String> members ) {
+
+        if (pkgName.length() > 0) {
+            pw.println( "package " + pkgName + " ;" ) ;
+            pw.println() ;
+        }
+
+        pw.println( "/** gmbal metadata for " + type.getQualifiedName()
+            + ", generated by " + MetadataProcessor.class.getName() + "." ) ;
+        pw.println( " * Do not edit." ) ;
+        pw.println( " */" ) ;
+        pw.println( "public final class " + className + " {" ) ;
+        pw.println( "    private " + className + "() {}" ) ;
+        pw.println() ;
+        pw.println( "    public static final int VERSION = " + VERSION + " ;" ) ;
+        pw.println() ;
+        writeArray( pw, "CLASSES", classes ) ;
+        pw.println() ;
+        writeArray( pw, "MEMBERS", members ) ;
+        pw.println( "}" ) ;
+    }
+}
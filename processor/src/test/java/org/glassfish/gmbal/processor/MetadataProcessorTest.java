@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Distribution License v. 1.0, which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package org.glassfish.gmbal.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import junit.framework.TestCase;
+
+/** Compiles a few classes with MetadataProcessor, and checks the generated
+ * metadata classes and class index.  The processor only matches the names
+ * of the gmbal annotations, so the compiled sources declare their own
+ * copies of the annotations that they use.
+ */
+public class MetadataProcessorTest extends TestCase {
+    private static final String[][] SOURCES = {
+        { "org/glassfish/gmbal/ManagedObject.java",
+            "package org.glassfish.gmbal ;\n"
+            + "import java.lang.annotation.* ;\n"
+            + "@Retention( RetentionPolicy.RUNTIME )\n"
+            + "public @interface ManagedObject {}\n" },
+        { "org/glassfish/gmbal/ManagedAttribute.java",
+            "package org.glassfish.gmbal ;\n"
+            + "public @interface ManagedAttribute {}\n" },
+        { "org/glassfish/gmbal/ManagedOperation.java",
+            "package org.glassfish.gmbal ;\n"
+            + "public @interface ManagedOperation {}\n" },
+        { "org/glassfish/gmbal/NameValue.java",
+            "package org.glassfish.gmbal ;\n"
+            + "public @interface NameValue {}\n" },
+        { "org/glassfish/gmbal/IncludeSubclass.java",
+            "package org.glassfish.gmbal ;\n"
+            + "public @interface IncludeSubclass { Class<?>[] value() ; }\n" },
+        { "p/Base.java",
+            "package p ;\n"
+            + "import org.glassfish.gmbal.* ;\n"
+            + "@ManagedObject\n"
+            + "public class Base {\n"
+            + "    @ManagedAttribute public int getCount() { return 0 ; }\n"
+            + "    public int getHidden() { return 0 ; }\n"
+            + "    @NameValue public String name() { return \"base\" ; }\n"
+            + "}\n" },
+        { "p/Sub.java",
+            "package p ;\n"
+            + "import org.glassfish.gmbal.* ;\n"
+            + "public class Sub extends Base implements Runnable {\n"
+            + "    @ManagedOperation\n"
+            + "    public int op( int x, String[] y ) { return x ; }\n"
+            + "    public void run() {}\n"
+            + "}\n" },
+        { "p/Included.java",
+            "package p ;\n"
+            + "import org.glassfish.gmbal.* ;\n"
+            + "@ManagedObject\n"
+            + "@IncludeSubclass( { Sub.class } )\n"
+            + "public class Included {}\n" },
+        { "p/Plain.java",
+            "package p ;\n"
+            + "public class Plain {}\n" },
+    } ;
+
+    private File dir ;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory( "gmbal-processor" ).toFile() ;
+    }
+
+    @Override
+    protected void tearDown() {
+        delete( dir ) ;
+    }
+
+    private static void delete( File file ) {
+        final File[] files = file.listFiles() ;
+        if (files != null) {
+            for (File child : files) {
+                delete( child ) ;
+            }
+        }
+        file.delete() ;
+    }
+
+    // Compile SOURCES with the processor, and return the output directory.
+    private File compile() throws IOException {
+        final File src = new File( dir, "src" ) ;
+        final File gen = new File( dir, "gen" ) ;
+        final File out = new File( dir, "out" ) ;
+        assertTrue( gen.mkdirs() ) ;
+        assertTrue( out.mkdirs() ) ;
+
+        final List<File> files = new ArrayList<File>() ;
+        for (String[] source : SOURCES) {
+            final File file = new File( src, source[0] ) ;
+            file.getParentFile().mkdirs() ;
+            Files.write( file.toPath(),
+                source[1].getBytes( StandardCharsets.UTF_8 ) ) ;
+            files.add( file ) ;
+        }
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler() ;
+        final StandardJavaFileManager fm = compiler.getStandardFileManager(
+            null, null, StandardCharsets.UTF_8 ) ;
+        try {
+            final StringWriter log = new StringWriter() ;
+            final Iterable<? extends JavaFileObject> units =
+                fm.getJavaFileObjectsFromFiles( files ) ;
+            final JavaCompiler.CompilationTask task = compiler.getTask( log,
+                fm, null, Arrays.asList( "-d", out.getPath(),
+                    "-s", gen.getPath() ),
+                null, units ) ;
+            task.setProcessors( Collections.singletonList(
+                new MetadataProcessor() ) ) ;
+            assertTrue( log.toString(), task.call() ) ;
+        } finally {
+            fm.close() ;
+        }
+
+        return out ;
+    }
+
+    private static Set<String> stringSet( Class<?> cls, String name )
+        throws ReflectiveOperationException {
+
+        return new HashSet<String>( Arrays.asList(
+            (String[])cls.getField( name ).get( null ) ) ) ;
+    }
+
+    public void testMetadata() throws Exception {
+        final File out = compile() ;
+        final URLClassLoader loader = new URLClassLoader(
+            new URL[] { out.toURI().toURL() },
+            getClass().getClassLoader() ) ;
+        try {
+            final Class<?> md = loader.loadClass( "p.Sub"
+                + MetadataProcessor.SUFFIX ) ;
+            assertEquals( MetadataProcessor.VERSION,
+                md.getField( "VERSION" ).getInt( null ) ) ;
+            assertEquals( new HashSet<String>( Arrays.asList( "p.Sub",
+                "p.Base", "java.lang.Object", "java.lang.Runnable" ) ),
+                stringSet( md, "CLASSES" ) ) ;
+            assertEquals( new HashSet<String>( Arrays.asList(
+                "p.Base.getCount()", "p.Base.name()",
+                "p.Sub.op(int,java.lang.String[])" ) ),
+                stringSet( md, "MEMBERS" ) ) ;
+
+            assertNotNull( loader.loadClass( "p.Base"
+                + MetadataProcessor.SUFFIX ) ) ;
+        } finally {
+            loader.close() ;
+        }
+
+        // No metadata for unmanaged classes, for classes that use
+        // @IncludeSubclass, or for the annotations themselves.
+        final File pkg = new File( out, "p" ) ;
+        assertFalse( new File( pkg, "Plain" + MetadataProcessor.SUFFIX
+            + ".class" ).exists() ) ;
+        assertFalse( new File( pkg, "Included" + MetadataProcessor.SUFFIX
+            + ".class" ).exists() ) ;
+        assertFalse( new File( out, "org/glassfish/gmbal/ManagedObject"
+            + MetadataProcessor.SUFFIX + ".class" ).exists() ) ;
+    }
+
+    public void testClassIndex() throws Exception {
+        final File out = compile() ;
+        final List<String> lines = Files.readAllLines(
+            new File( out, MetadataProcessor.CLASS_INDEX ).toPath(),
+            StandardCharsets.UTF_8 ) ;
+
+        assertTrue( lines.get( 0 ).startsWith( "#" ) ) ;
+        assertEquals( Arrays.asList( "p.Base", "p.Included", "p.Sub" ),
+            lines.subList( 1, lines.size() ) ) ;
+    }
+}